@@ -6,8 +6,14 @@
 
 package cs412.dinghyprop;
 
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+import cs412.dinghyprop.interpreter.CompiledProgram;
+import cs412.dinghyprop.interpreter.EffectAnalysis;
 import cs412.dinghyprop.interpreter.Interpreter;
+import cs412.dinghyprop.interpreter.LockstepInterpreter;
 import cs412.dinghyprop.interpreter.ParsingException;
+import cs412.dinghyprop.interpreter.ProgramCache;
+import cs412.dinghyprop.interpreter.Verifier;
 import cs412.dinghyprop.simulator.ISimulator;
 
 import java.net.MalformedURLException;
@@ -15,6 +21,8 @@ import java.rmi.Naming;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Evaluation client
@@ -26,6 +34,11 @@ import java.rmi.server.UnicastRemoteObject;
 public class ClientImpl extends UnicastRemoteObject implements IClient {
     private static final long serialVersionUID = 7075703919341311722L;
 
+    /**
+     * The number of compiled programs kept between evaluations
+     */
+    private static final int CACHE_CAPACITY = 1024;
+
     /**
      * The complete RMI address of the server
      */
@@ -41,6 +54,16 @@ public class ClientImpl extends UnicastRemoteObject implements IClient {
      */
     private transient ISimulator[] simulators = null;
 
+    /**
+     * The evaluation strategy of the server's GP run
+     */
+    private transient EvaluationStrategy strategy = null;
+
+    /**
+     * Compiled forms of recently evaluated programs
+     */
+    private transient ProgramCache cache = null;
+
     /**
      * The current status message of this client
      */
@@ -60,6 +83,30 @@ public class ClientImpl extends UnicastRemoteObject implements IClient {
      */
     private int count = 0;
 
+    /**
+     * A running total of the programs this client did not need to simulate
+     * because they could not affect the simulation
+     */
+    private int skipped = 0;
+
+    /**
+     * A running total of the programs this client rejected because they use
+     * symbols the simulator does not know
+     */
+    private int rejected = 0;
+
+    /**
+     * A running total of the programs this client stopped because they
+     * exceeded the node-visit budget
+     */
+    private int overBudget = 0;
+
+    /**
+     * The work done by all of this client's evaluations, or null unless
+     * profiling is enabled
+     */
+    private final Profile profile = Profile.ENABLED ? new Profile() : null;
+
     /**
      * Create a new client evaluator with a set of simulation environments.
      *
@@ -85,30 +132,143 @@ public class ClientImpl extends UnicastRemoteObject implements IClient {
         master = (IMaster) Naming.lookup(masterAddress);
         status = "Obtaining environments...";
         simulators = master.getEvaluationSimulators();
+        strategy = master.getEvaluationStrategy();
+        cache = new ProgramCache(CACHE_CAPACITY, Interpreter.configuredMode(), strategy, true);
         status = "Registering with server...";
         master.registerClient(this);
         status = "Awaiting program";
     }
 
     @Override
-    public int evaluateProgram(String program) throws RemoteException {
+    public Evaluation evaluateProgram(String program) throws RemoteException {
         int fitness = 0;
+        long cost = 0;
+        count++;
 
-        for (ISimulator simulator : simulators) {
-            try {
-                status = "Creating interpreter";
-                Interpreter interpreter = new Interpreter(simulator.clone(), program);
-                status = "Evaluating...";
-                interpreter.run(100);
-                fitness += interpreter.getFitness();
-            } catch (ParsingException ignored) { }
-            catch (CloneNotSupportedException ignored) { }
+        CompiledProgram compiled;
+        try {
+            status = "Creating interpreter";
+            compiled = cache.get(program);
+        } catch (ParsingException ignored) {
+            status = "Awaiting program";
+            return new Evaluation(fitness, cost, false);
         }
+
+        if (compiled.getVerification() != Verifier.RESULT.VALID) {
+            Verifier.logRejection(program, compiled.getVerification());
+            rejected++;
+            status = "Awaiting program";
+            return new Evaluation(fitness, cost, false);
+        }
+
+        if (EffectAnalysis.classify(compiled) == EffectAnalysis.EFFECT.INERT) {
+            for (ISimulator simulator : simulators)
+                fitness += simulator.getFitness();
+            skipped++;
+            status = "Awaiting program";
+            return new Evaluation(fitness, cost, false);
+        }
+
+        Profile evaluationProfile = Profile.ENABLED ? new Profile() : null;
+        status = "Evaluating...";
+        Evaluation evaluation;
+        if (compiled.getMode() == Interpreter.MODE.TREE)
+            evaluation = evaluateInLockstep(compiled, evaluationProfile);
+        else
+            evaluation = evaluateInTurn(compiled, evaluationProfile);
+        if (evaluation.overBudget)
+            overBudget++;
         status = "Awaiting program";
+        return evaluation;
+    }
 
-        count++;
+    /**
+     * Evaluates a program in batches of simulators run in lockstep.
+     *
+     * @param compiled             the program to evaluate
+     * @param evaluationProfile    where to count the evaluation's work, or
+     *                             null
+     * @return  the program's evaluation
+     */
+    private Evaluation evaluateInLockstep(CompiledProgram compiled, Profile evaluationProfile) {
+        LockstepInterpreter interpreter = new LockstepInterpreter(compiled);
+        interpreter.setProfile(evaluationProfile);
+        int fitness = 0;
+        long cost = 0;
+        for (int start = 0; start < simulators.length; start += LockstepInterpreter.MAX_LANES) {
+            int end = Math.min(start + LockstepInterpreter.MAX_LANES, simulators.length);
+            interpreter.reset(cloneSimulators(start, end));
+            interpreter.setBudget(Evaluation.NODE_BUDGET - cost);
+            interpreter.run(100);
+            cost += interpreter.getCost();
+            if (interpreter.isOverBudget())
+                return new Evaluation(0, cost, true, recordProfile(evaluationProfile));
+            fitness += interpreter.getFitness();
+        }
+        return new Evaluation(fitness, cost, false, recordProfile(evaluationProfile));
+    }
+
+    /**
+     * Evaluates a program in one simulator after another, for the modes the
+     * lockstep interpreter does not run.
+     *
+     * @param compiled             the program to evaluate
+     * @param evaluationProfile    where to count the evaluation's work, or
+     *                             null
+     * @return  the program's evaluation
+     */
+    private Evaluation evaluateInTurn(CompiledProgram compiled, Profile evaluationProfile) {
+        Interpreter interpreter = null;
+        int fitness = 0;
+        long cost = 0;
+        for (ISimulator simulator : cloneSimulators(0, simulators.length)) {
+            if (interpreter == null) {
+                interpreter = compiled.bind(simulator);
+                interpreter.setProfile(evaluationProfile);
+            } else {
+                interpreter.reset(simulator);
+            }
+            interpreter.setBudget(Evaluation.NODE_BUDGET - cost);
+            interpreter.run(100);
+            cost += interpreter.getCost();
+            if (interpreter.isOverBudget())
+                return new Evaluation(0, cost, true, recordProfile(evaluationProfile));
+            fitness += interpreter.getFitness();
+        }
+        return new Evaluation(fitness, cost, false, recordProfile(evaluationProfile));
+    }
 
-        return fitness;
+    /**
+     * Clones a range of the server's simulators, skipping any that cannot be
+     * cloned.
+     *
+     * @param start    the index of the first simulator
+     * @param end      the index after the last simulator
+     * @return  the clones
+     */
+    private ISimulator[] cloneSimulators(int start, int end) {
+        List<ISimulator> clones = new ArrayList<ISimulator>(end - start);
+        for (int i = start; i < end; i++) {
+            try {
+                clones.add(simulators[i].clone());
+            } catch (CloneNotSupportedException ignored) { }
+        }
+        return clones.toArray(new ISimulator[clones.size()]);
+    }
+
+    /**
+     * Adds an evaluation's profile to this client's totals.
+     *
+     * @param evaluationProfile    the evaluation's profile, or null
+     * @return  {@code evaluationProfile}
+     */
+    private Profile recordProfile(Profile evaluationProfile) {
+        if (evaluationProfile != null) {
+            synchronized (profile) {
+                profile.merge(evaluationProfile);
+            }
+        }
+        return evaluationProfile;
     }
 
     @Override
@@ -125,6 +285,45 @@ public class ClientImpl extends UnicastRemoteObject implements IClient {
         return count;
     }
 
+    /**
+     * @return  the cumulative total number of programs this client did not
+     * need to simulate
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return  the cumulative total number of programs this client rejected
+     * without simulating
+     */
+    public int getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return  the cumulative total number of programs this client stopped
+     * for exceeding the node-visit budget
+     */
+    public int getOverBudget() {
+        return overBudget;
+    }
+
+    /**
+     * @return  the work done by all of this client's evaluations, or null
+     * unless profiling is enabled
+     */
+    public Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return  the cache of compiled programs, or null before initialization
+     */
+    public ProgramCache getCache() {
+        return cache;
+    }
+
     /**
      * @return  the current status of this client
      */
@@ -155,6 +354,7 @@ public class ClientImpl extends UnicastRemoteObject implements IClient {
     @Override
     public String toString() {
         return "ClientImpl rmi://" + masterAddress +
-                " (" + " processed: " + count + " -- " + status + ')';
+                " (" + " processed: " + count + ", skipped: " + skipped + ", rejected: " + rejected
+                + ", over budget: " + overBudget + " -- " + status + ')';
     }
 }
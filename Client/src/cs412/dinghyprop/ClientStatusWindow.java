@@ -14,13 +14,14 @@ import java.awt.*;
  *
  * Creates and displays a small JFrame for displaying the server address,
  * client status, and the number of programs the client has processed for the
- * server.
+ * server, including those it skipped without simulating.
  */
 public class ClientStatusWindow extends JFrame {
     private static final long serialVersionUID = 4245107449408098871L;
 
     private JLabel statusLabel;
     private JLabel processedLabel;
+    private JLabel skippedLabel;
 
     private ClientImpl clientImpl;
 
@@ -32,13 +33,16 @@ public class ClientStatusWindow extends JFrame {
         this.clientImpl = clientImpl;
 
         processedLabel = new JLabel("0");
+        skippedLabel = new JLabel("0");
         statusLabel = new JLabel("Initializing");
 
-        setLayout(new GridLayout(3, 2));
+        setLayout(new GridLayout(4, 2));
         getContentPane().add(new JLabel("Server: ", SwingConstants.RIGHT));
         getContentPane().add(new JLabel(clientImpl.getServerAddress() + "    "));
         getContentPane().add(new JLabel("Processed: ", SwingConstants.RIGHT));
         getContentPane().add(processedLabel);
+        getContentPane().add(new JLabel("Skipped: ", SwingConstants.RIGHT));
+        getContentPane().add(skippedLabel);
         getContentPane().add(new JLabel("Status: ", SwingConstants.RIGHT));
         getContentPane().add(statusLabel);
 
@@ -75,6 +79,7 @@ public class ClientStatusWindow extends JFrame {
             @Override
             public void run() {
                 processedLabel.setText(Integer.toString(clientImpl.getCount()));
+                skippedLabel.setText(Integer.toString(clientImpl.getSkipped()));
                 statusLabel.setText(clientImpl.getStatus());
                 repaint();
             }
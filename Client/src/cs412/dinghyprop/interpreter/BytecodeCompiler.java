@@ -0,0 +1,859 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.simulator.Symbols;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compiles an Expression tree into a JVM class.
+ * <p>
+ * The generated class extends {@link CompiledExpression} and evaluates the
+ * tree in the same order as {@link Interpreter}'s tree walk: operands left to
+ * right, every operand of every node on every evaluation.  Simulator
+ * references and invocations become direct interface calls, by
+ * {@link cs412.dinghyprop.simulator.Symbols} ID where possible, and arithmetic
+ * becomes inline int instructions.  Each node's result type is inferred at
+ * compile time, so integers and booleans stay unboxed; only the results of
+ * {@code if} nodes whose branches have different types are carried in the
+ * packed form described in {@link CompiledExpression}.
+ * <p>
+ * Lazy programs branch around the operands that the lazy tree walk skips.
+ */
+final class BytecodeCompiler {
+    private static Logger log = Logger.getLogger("BytecodeCompiler");
+
+    private static final String SIMULATOR = "cs412/dinghyprop/simulator/ISimulator";
+    private static final String SUPERCLASS = "cs412/dinghyprop/interpreter/CompiledExpression";
+    private static final String CLASS_PREFIX = "cs412/dinghyprop/interpreter/CompiledExpression$";
+
+    /**
+     * The largest method body that is emitted.  Keeping within the signed
+     * 16-bit range keeps every branch offset valid.
+     */
+    private static final int MAX_CODE_LENGTH = Short.MAX_VALUE;
+
+    // access flags
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    // opcodes
+    private static final int ICONST_0 = 3;
+    private static final int ICONST_1 = 4;
+    private static final int BIPUSH = 16;
+    private static final int SIPUSH = 17;
+    private static final int LDC = 18;
+    private static final int LDC_W = 19;
+    private static final int LDC2_W = 20;
+    private static final int ILOAD = 21;
+    private static final int LLOAD = 22;
+    private static final int ALOAD_0 = 42;
+    private static final int ALOAD_1 = 43;
+    private static final int ISTORE = 54;
+    private static final int LSTORE = 55;
+    private static final int POP = 87;
+    private static final int POP2 = 88;
+    private static final int IADD = 96;
+    private static final int ISUB = 100;
+    private static final int IMUL = 104;
+    private static final int LAND = 127;
+    private static final int LOR = 129;
+    private static final int I2L = 133;
+    private static final int L2I = 136;
+    private static final int LCMP = 148;
+    private static final int IFEQ = 153;
+    private static final int IFNE = 154;
+    private static final int IFLE = 158;
+    private static final int IF_ICMPLT = 161;
+    private static final int IF_ICMPGE = 162;
+    private static final int IF_ICMPGT = 163;
+    private static final int IF_ICMPLE = 164;
+    private static final int GOTO = 167;
+    private static final int LRETURN = 173;
+    private static final int RETURN = 177;
+    private static final int INVOKESPECIAL = 183;
+    private static final int INVOKESTATIC = 184;
+    private static final int INVOKEINTERFACE = 185;
+    private static final int WIDE = 196;
+
+    /**
+     * The compile-time types of node results.  INTEGER and BOOLEAN results
+     * occupy one int on the operand stack, NULL results occupy nothing, and
+     * PACKED results occupy one long.
+     */
+    private static enum Kind { NULL, INTEGER, BOOLEAN, PACKED }
+
+    /**
+     * Suffixes for generated class names
+     */
+    private static final AtomicInteger classCount = new AtomicInteger();
+
+    private final ClassFileWriter writer = new ClassFileWriter();
+    private final ClassFileWriter.ByteVector code = new ClassFileWriter.ByteVector(256);
+
+    // operand stack depth tracking
+    private int depth = 0;
+    private int maxDepth = 0;
+
+    // local variable slots: 0 is this, 1 is the simulator
+    private int locals = 2;
+    private int maxLocals = 2;
+
+    // whether if and comparisons short-circuit
+    private final boolean lazy;
+
+    private BytecodeCompiler(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Compiles an expression tree and instantiates the result.
+     *
+     * @param expression    the program's root
+     * @param lazy          whether {@code if} and comparisons short-circuit
+     * @return  an object evaluating {@code expression}, or null if the program
+     * is too large to be compiled into a single method
+     */
+    static CompiledExpression compile(Expression expression, boolean lazy) {
+        BytecodeCompiler compiler = new BytecodeCompiler(lazy);
+        String className = CLASS_PREFIX + classCount.incrementAndGet();
+        byte[] bytes = compiler.assemble(expression, className);
+        if (bytes == null)
+            return null;
+
+        try {
+            Class<?> cls = new Loader().define(className.replace('/', '.'), bytes);
+            return (CompiledExpression) cls.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            log.log(Level.WARNING, "Could not instantiate compiled program", e);
+        } catch (LinkageError e) {
+            log.log(Level.WARNING, "Compiled program rejected: " + expression, e);
+        }
+        return null;
+    }
+
+    /**
+     * Generates the class file for an expression.
+     *
+     * @param expression    the program's root
+     * @param className     the internal name of the class to generate
+     * @return  the class file or null if the method body would be too large
+     */
+    private byte[] assemble(Expression expression, String className) {
+        // constructor
+        code.putByte(ALOAD_0);
+        code.putByte(INVOKESPECIAL);
+        code.putShort(writer.methodRef(SUPERCLASS, "<init>", "()V"));
+        code.putByte(RETURN);
+        writer.addMethod(ACC_PUBLIC, "<init>", "()V", 1, 1, code.data, code.length);
+
+        // evaluate(ISimulator)
+        code.length = 0;
+        toPacked(compileExpression(expression));
+        code.putByte(LRETURN);
+        if (code.length > MAX_CODE_LENGTH)
+            return null;
+        writer.addMethod(ACC_PUBLIC | ACC_FINAL, "evaluate", "(L" + SIMULATOR + ";)J",
+                maxDepth, maxLocals, code.data, code.length);
+
+        return writer.toByteArray(ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, SUPERCLASS);
+    }
+
+    /**
+     * Emits code for an operand, leaving its result on the stack.
+     *
+     * @param operand    an Expression, Value, or symbol String
+     * @return  the kind of the result
+     */
+    private Kind compile(Object operand) {
+        if (operand instanceof Expression) {
+            return compileExpression((Expression) operand);
+        } else if (operand instanceof Value) {
+            Value value = (Value) operand;
+            if (value.isInt()) {
+                pushInt(value.addend());
+                return Kind.INTEGER;
+            } else if (value.isBool()) {
+                pushInt(value.bool() ? 1 : 0);
+                return Kind.BOOLEAN;
+            }
+        } else if (operand instanceof String) {
+            String name = (String) operand;
+            int variableId = Symbols.variableId(name);
+            emit(ALOAD_1, 1);
+            if (variableId == Symbols.UNKNOWN) {
+                pushString(name);
+                invokeInterface("reference", "(Ljava/lang/String;)I", 2, 1);
+            } else {
+                pushInt(variableId);
+                invokeInterface("reference", "(I)I", 2, 1);
+            }
+            return Kind.INTEGER;
+        }
+        return Kind.NULL;
+    }
+
+    /**
+     * Emits code for an Expression node.
+     *
+     * @param expr    the node
+     * @return  the kind of the node's result
+     */
+    private Kind compileExpression(Expression expr) {
+        String operator = expr.getOperator();
+        Object[] operands = expr.getOperands();
+
+        if (operands.length == 0) {
+            int functionId = Symbols.functionId(operator);
+            emit(ALOAD_1, 1);
+            if (functionId == Symbols.UNKNOWN) {
+                pushString(operator);
+                invokeInterface("invoke", "(Ljava/lang/String;)V", 2, 0);
+            } else {
+                pushInt(functionId);
+                invokeInterface("invoke", "(I)V", 2, 0);
+            }
+            return Kind.NULL;
+        }
+
+        if (operator.equals("if")) {
+            return compileIf(operands);
+        } else if (operator.equals("+")) {
+            return compileArithmetic(operands, true, IADD);
+        } else if (operator.equals("-")) {
+            return compileArithmetic(operands, true, ISUB);
+        } else if (operator.equals("*")) {
+            return compileArithmetic(operands, false, IMUL);
+        } else if (operator.equals("/")) {
+            return compileArithmetic(operands, false, INVOKESTATIC);
+        } else if (operator.equals("^")) {
+            return compileExponent(operands);
+        } else if (operator.equals("<")) {
+            return compileOrdering(operands, IF_ICMPGE);
+        } else if (operator.equals("<=")) {
+            return compileOrdering(operands, IF_ICMPGT);
+        } else if (operator.equals(">")) {
+            return compileOrdering(operands, IF_ICMPLE);
+        } else if (operator.equals(">=")) {
+            return compileOrdering(operands, IF_ICMPLT);
+        } else if (operator.equals("==")) {
+            return compileEquality(operands, false);
+        } else if (operator.equals("!=")) {
+            return compileEquality(operands, true);
+        }
+
+        // unknown operators still evaluate their operands
+        for (Object operand : operands)
+            pop(compile(operand));
+        return Kind.NULL;
+    }
+
+    /**
+     * Emits a left associative chain of an int operation.  Division uses the
+     * safe division helper.
+     *
+     * @param operands    the operands
+     * @param addend      whether operands are coerced as addends (otherwise as
+     *                    multiplicands)
+     * @param opcode      the int instruction, or INVOKESTATIC for division
+     * @return  INTEGER
+     */
+    private Kind compileArithmetic(Object[] operands, boolean addend, int opcode) {
+        for (int i = 0; i < operands.length; i++) {
+            Kind kind = compile(operands[i]);
+            if (addend)
+                toAddend(kind);
+            else
+                toMultiplicand(kind);
+            if (i > 0) {
+                if (opcode == INVOKESTATIC)
+                    invokeHelper("divide", "(II)I", -1);
+                else
+                    emit(opcode, -1);
+            }
+        }
+        return Kind.INTEGER;
+    }
+
+    /**
+     * Emits the interpreter's exponentiation: the first operand's addend,
+     * reset to 1 by any later zero multiplicand.
+     *
+     * @param operands    the operands
+     * @return  INTEGER
+     */
+    private Kind compileExponent(Object[] operands) {
+        toAddend(compile(operands[0]));
+        for (int i = 1; i < operands.length; i++) {
+            toMultiplicand(compile(operands[i]));
+            invokeHelper("exponentiate", "(II)I", -1);
+        }
+        return Kind.INTEGER;
+    }
+
+    /**
+     * Emits an ordering comparison over all adjacent pairs of operands.
+     *
+     * @param operands    the operands
+     * @param failure     the int comparison branch taken when a pair fails
+     * @return  BOOLEAN
+     */
+    private Kind compileOrdering(Object[] operands, int failure) {
+        int base = locals;
+        Label fail = new Label();
+        for (int i = 0; i < operands.length; i++) {
+            toAddend(compile(operands[i]));
+            store(Kind.INTEGER, allocate(Kind.INTEGER));
+            if (lazy && i > 0)
+                testOrder(base + i, failure, fail);
+        }
+        for (int i = 1; i < operands.length && !lazy; i++)
+            testOrder(base + i, failure, fail);
+        pushBooleanResult(fail);
+
+        locals = base;
+        return Kind.BOOLEAN;
+    }
+
+    /**
+     * Emits the test of an operand against the one before it.
+     *
+     * @param slot       the local variable slot of the later operand
+     * @param failure    the int comparison branch taken when the pair fails
+     * @param fail       the label to branch to
+     */
+    private void testOrder(int slot, int failure, Label fail) {
+        load(Kind.INTEGER, slot - 1);
+        load(Kind.INTEGER, slot);
+        jump(failure, fail, -2);
+    }
+
+    /**
+     * Emits an equality comparison.  Values are compared in packed form, so
+     * both type and value must match.
+     *
+     * @param operands    the operands
+     * @param distinct    false to test that adjacent operands are equal, true
+     *                    to test that all operands are pairwise different
+     * @return  BOOLEAN
+     */
+    private Kind compileEquality(Object[] operands, boolean distinct) {
+        int base = locals;
+        Label fail = new Label();
+        for (int i = 0; i < operands.length; i++) {
+            toPacked(compile(operands[i]));
+            store(Kind.PACKED, allocate(Kind.PACKED));
+            if (lazy)
+                testEquality(base, i, distinct, fail);
+        }
+        for (int i = 1; i < operands.length && !lazy; i++)
+            testEquality(base, i, distinct, fail);
+        pushBooleanResult(fail);
+
+        locals = base;
+        return Kind.BOOLEAN;
+    }
+
+    /**
+     * Emits the tests of an operand against the operands before it: only
+     * the previous one for equality, all of them for distinctness.
+     *
+     * @param base        the local variable slot of the first operand
+     * @param index       the index of the operand to test
+     * @param distinct    whether the operands must be pairwise different
+     * @param fail        the label to branch to when a test fails
+     */
+    private void testEquality(int base, int index, boolean distinct, Label fail) {
+        for (int j = distinct ? 0 : Math.max(index - 1, 0); j < index; j++) {
+            load(Kind.PACKED, base + 2 * j);
+            load(Kind.PACKED, base + 2 * index);
+            emit(LCMP, -3);
+            jump(distinct ? IFEQ : IFNE, fail, -1);
+        }
+    }
+
+    /**
+     * Emits an if construct.  As in the interpreter, the condition and both
+     * branches are evaluated before a branch's result is selected, unless
+     * the program is lazy.
+     *
+     * @param operands    the condition, true branch, and optional false branch
+     * @return  the kind shared by both branches, or PACKED if they differ
+     */
+    private Kind compileIf(Object[] operands) {
+        Kind trueKind = (operands.length > 1) ? kindOf(operands[1]) : Kind.NULL;
+        Kind falseKind = (operands.length > 2) ? kindOf(operands[2]) : Kind.NULL;
+        Kind result = (trueKind == falseKind) ? trueKind : Kind.PACKED;
+        if (lazy)
+            return compileLazyIf(operands, result);
+
+        int base = locals;
+        int condition = allocate(Kind.INTEGER);
+        toTruth(compile(operands[0]));
+        store(Kind.INTEGER, condition);
+
+        int trueSlot = allocate(result);
+        if (operands.length > 1)
+            convert(compile(operands[1]), result);
+        else
+            convert(Kind.NULL, result);
+        store(result, trueSlot);
+
+        int falseSlot = allocate(result);
+        if (operands.length > 2)
+            convert(compile(operands[2]), result);
+        else
+            convert(Kind.NULL, result);
+        store(result, falseSlot);
+
+        for (int i = 3; i < operands.length; i++)
+            pop(compile(operands[i]));
+
+        if (result != Kind.NULL) {
+            Label otherwise = new Label();
+            Label end = new Label();
+            load(Kind.INTEGER, condition);
+            jump(IFLE, otherwise, -1);
+            load(result, trueSlot);
+            jump(GOTO, end, 0);
+            depth -= slots(result);
+            mark(otherwise);
+            load(result, falseSlot);
+            mark(end);
+        }
+
+        locals = base;
+        return result;
+    }
+
+    /**
+     * Emits an if construct that evaluates only the taken branch.
+     *
+     * @param operands    the condition, true branch, and optional false branch
+     * @param result      the kind of the construct's result
+     * @return  {@code result}
+     */
+    private Kind compileLazyIf(Object[] operands, Kind result) {
+        Label otherwise = new Label();
+        Label end = new Label();
+        toTruth(compile(operands[0]));
+        jump(IFLE, otherwise, -1);
+        if (operands.length > 1)
+            convert(compile(operands[1]), result);
+        else
+            convert(Kind.NULL, result);
+        jump(GOTO, end, 0);
+        depth -= slots(result);
+        mark(otherwise);
+        if (operands.length > 2)
+            convert(compile(operands[2]), result);
+        else
+            convert(Kind.NULL, result);
+        mark(end);
+        return result;
+    }
+
+    /**
+     * Infers the kind of an operand's result without emitting code.
+     *
+     * @param operand    an Expression, Value, or symbol String
+     * @return  the kind {@link #compile(Object)} would return
+     */
+    private static Kind kindOf(Object operand) {
+        if (operand instanceof String)
+            return Kind.INTEGER;
+        if (operand instanceof Value) {
+            Value value = (Value) operand;
+            if (value.isInt())
+                return Kind.INTEGER;
+            return value.isBool() ? Kind.BOOLEAN : Kind.NULL;
+        }
+        if (!(operand instanceof Expression))
+            return Kind.NULL;
+
+        Expression expr = (Expression) operand;
+        String operator = expr.getOperator();
+        Object[] operands = expr.getOperands();
+        if (operands.length == 0)
+            return Kind.NULL;
+        if (operator.equals("if")) {
+            Kind trueKind = (operands.length > 1) ? kindOf(operands[1]) : Kind.NULL;
+            Kind falseKind = (operands.length > 2) ? kindOf(operands[2]) : Kind.NULL;
+            return (trueKind == falseKind) ? trueKind : Kind.PACKED;
+        }
+        if (operator.equals("+") || operator.equals("-") || operator.equals("*")
+                || operator.equals("/") || operator.equals("^"))
+            return Kind.INTEGER;
+        if (operator.equals("<") || operator.equals("<=") || operator.equals(">")
+                || operator.equals(">=") || operator.equals("==") || operator.equals("!="))
+            return Kind.BOOLEAN;
+        return Kind.NULL;
+    }
+
+    /**
+     * Replaces a result with its addend.
+     *
+     * @param kind    the kind of the result on the stack
+     */
+    private void toAddend(Kind kind) {
+        switch (kind) {
+            case NULL:
+                emit(ICONST_0, 1);
+                break;
+            case BOOLEAN:
+                emit(POP, -1);
+                emit(ICONST_0, 1);
+                break;
+            case PACKED:
+                invokeHelper("addend", "(J)I", -1);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Replaces a result with its multiplicand.
+     *
+     * @param kind    the kind of the result on the stack
+     */
+    private void toMultiplicand(Kind kind) {
+        switch (kind) {
+            case NULL:
+                emit(ICONST_1, 1);
+                break;
+            case BOOLEAN:
+                emit(POP, -1);
+                emit(ICONST_1, 1);
+                break;
+            case PACKED:
+                invokeHelper("multiplicand", "(J)I", -1);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Replaces a result with an int that is positive exactly when the result
+     * is true according to {@link Value#bool()}.
+     *
+     * @param kind    the kind of the result on the stack
+     */
+    private void toTruth(Kind kind) {
+        switch (kind) {
+            case NULL:
+                emit(ICONST_0, 1);
+                break;
+            case PACKED:
+                emit(L2I, -1);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Replaces a result with its packed form.
+     *
+     * @param kind    the kind of the result on the stack
+     */
+    private void toPacked(Kind kind) {
+        switch (kind) {
+            case NULL:
+                pushLong(Value.PACKED_NULL);
+                break;
+            case INTEGER:
+                emit(I2L, 1);
+                pushLong(0xFFFFFFFFL);
+                emit(LAND, -2);
+                pushLong(Value.pack(Value.TYPE.INTEGER, 0));
+                emit(LOR, -2);
+                break;
+            case BOOLEAN:
+                emit(I2L, 1);
+                pushLong(Value.pack(Value.TYPE.BOOLEAN, 0));
+                emit(LOR, -2);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Converts a result to the kind expected by a consumer.  Only identity
+     * conversions and conversions to PACKED are needed.
+     *
+     * @param from    the kind of the result on the stack
+     * @param to      the required kind
+     */
+    private void convert(Kind from, Kind to) {
+        if (to == Kind.PACKED)
+            toPacked(from);
+    }
+
+    /**
+     * Discards a result.
+     *
+     * @param kind    the kind of the result on the stack
+     */
+    private void pop(Kind kind) {
+        if (kind == Kind.PACKED)
+            emit(POP2, -2);
+        else if (kind != Kind.NULL)
+            emit(POP, -1);
+    }
+
+    /**
+     * Emits the tail of a comparison: push true, or false if {@code fail} was
+     * taken.
+     *
+     * @param fail    the label branched to by failing comparisons
+     */
+    private void pushBooleanResult(Label fail) {
+        Label end = new Label();
+        emit(ICONST_1, 1);
+        jump(GOTO, end, 0);
+        depth--;
+        mark(fail);
+        emit(ICONST_0, 1);
+        mark(end);
+    }
+
+    /**
+     * @param kind    a result kind
+     * @return  the number of stack or local slots a result occupies
+     */
+    private static int slots(Kind kind) {
+        switch (kind) {
+            case NULL:
+                return 0;
+            case PACKED:
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Reserves local variable slots.
+     *
+     * @param kind    the kind of result to be stored
+     * @return  the first reserved slot
+     */
+    private int allocate(Kind kind) {
+        int slot = locals;
+        locals += slots(kind);
+        maxLocals = Math.max(maxLocals, locals);
+        return slot;
+    }
+
+    /**
+     * @param kind    the kind of the result on the stack
+     * @param slot    the local variable slot to store into
+     */
+    private void store(Kind kind, int slot) {
+        if (kind == Kind.PACKED)
+            localInstruction(LSTORE, slot, -2);
+        else if (kind != Kind.NULL)
+            localInstruction(ISTORE, slot, -1);
+    }
+
+    /**
+     * @param kind    the kind of the result to load
+     * @param slot    the local variable slot to load from
+     */
+    private void load(Kind kind, int slot) {
+        if (kind == Kind.PACKED)
+            localInstruction(LLOAD, slot, 2);
+        else if (kind != Kind.NULL)
+            localInstruction(ILOAD, slot, 1);
+    }
+
+    /**
+     * Emits a load or store, widened if the slot requires it.
+     *
+     * @param opcode    the instruction
+     * @param slot      the local variable slot
+     * @param delta     the instruction's effect on the stack depth
+     */
+    private void localInstruction(int opcode, int slot, int delta) {
+        if (slot > 0xFF) {
+            code.putByte(WIDE);
+            code.putByte(opcode);
+            code.putShort(slot);
+        } else {
+            code.putByte(opcode);
+            code.putByte(slot);
+        }
+        adjustDepth(delta);
+    }
+
+    /**
+     * @param value    the int constant to push
+     */
+    private void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            code.putByte(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.putByte(BIPUSH);
+            code.putByte(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            code.putByte(SIPUSH);
+            code.putShort(value);
+        } else {
+            constant(writer.integer(value));
+            return;
+        }
+        adjustDepth(1);
+    }
+
+    /**
+     * @param value    the long constant to push
+     */
+    private void pushLong(long value) {
+        code.putByte(LDC2_W);
+        code.putShort(writer.longConstant(value));
+        adjustDepth(2);
+    }
+
+    /**
+     * @param value    the string constant to push
+     */
+    private void pushString(String value) {
+        constant(writer.string(value));
+    }
+
+    /**
+     * Pushes a single-slot constant from the constant pool.
+     *
+     * @param index    the constant pool index
+     */
+    private void constant(int index) {
+        if (index > 0xFF) {
+            code.putByte(LDC_W);
+            code.putShort(index);
+        } else {
+            code.putByte(LDC);
+            code.putByte(index);
+        }
+        adjustDepth(1);
+    }
+
+    /**
+     * Calls a method on the simulator.
+     *
+     * @param name          the ISimulator method
+     * @param descriptor    its descriptor
+     * @param argSlots      the receiver and argument slots consumed
+     * @param resultSlots   the result slots produced
+     */
+    private void invokeInterface(String name, String descriptor, int argSlots, int resultSlots) {
+        code.putByte(INVOKEINTERFACE);
+        code.putShort(writer.interfaceMethodRef(SIMULATOR, name, descriptor));
+        code.putByte(argSlots);
+        code.putByte(0);
+        adjustDepth(resultSlots - argSlots);
+    }
+
+    /**
+     * Calls a static helper in {@link CompiledExpression}.
+     *
+     * @param name          the helper
+     * @param descriptor    its descriptor
+     * @param delta         the call's effect on the stack depth
+     */
+    private void invokeHelper(String name, String descriptor, int delta) {
+        code.putByte(INVOKESTATIC);
+        code.putShort(writer.methodRef(SUPERCLASS, name, descriptor));
+        adjustDepth(delta);
+    }
+
+    /**
+     * @param opcode    an instruction without operands
+     * @param delta     its effect on the stack depth
+     */
+    private void emit(int opcode, int delta) {
+        code.putByte(opcode);
+        adjustDepth(delta);
+    }
+
+    /**
+     * Emits a branch instruction.
+     *
+     * @param opcode    the branch instruction
+     * @param target    the branch target
+     * @param delta     the instruction's effect on the stack depth
+     */
+    private void jump(int opcode, Label target, int delta) {
+        int position = code.length;
+        code.putByte(opcode);
+        code.putShort(0);
+        target.reference(position);
+        adjustDepth(delta);
+    }
+
+    /**
+     * Binds a label to the current position.
+     *
+     * @param label    the label
+     */
+    private void mark(Label label) {
+        label.position = code.length;
+        for (int branch : label.references)
+            code.setShort(branch + 1, label.position - branch);
+    }
+
+    /**
+     * @param delta    the change in stack depth
+     */
+    private void adjustDepth(int delta) {
+        depth += delta;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    /**
+     * A branch target.  Only forward branches are emitted, so references are
+     * patched when the label is marked.
+     */
+    private static final class Label {
+        int position = -1;
+        final List<Integer> references = new ArrayList<Integer>(2);
+
+        /**
+         * @param branch    the offset of a branch instruction to this label
+         */
+        void reference(int branch) {
+            references.add(branch);
+        }
+    }
+
+    /**
+     * Defines generated classes.  Each program gets its own loader so that
+     * its class can be unloaded once the program is no longer used.
+     */
+    private static final class Loader extends ClassLoader {
+        Loader() {
+            super(CompiledExpression.class.getClassLoader());
+        }
+
+        /**
+         * @param name     the binary name of the class
+         * @param bytes    the class file
+         * @return  the defined class
+         */
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal class file assembler used by {@link BytecodeCompiler}.
+ * <p>
+ * Only the constant pool entries and attributes needed for classes without
+ * fields are supported.  Classes are written in the Java 5 format so that no
+ * stack map frames have to be computed; the JVM verifies them by type
+ * inference instead.
+ */
+final class ClassFileWriter {
+    /**
+     * Java 5 class file major version
+     */
+    private static final int MAJOR_VERSION = 49;
+
+    // constant pool tags
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    /**
+     * Serialized constant pool entries
+     */
+    private final ByteVector pool = new ByteVector(256);
+
+    /**
+     * Indices of the entries already in the pool, keyed by tag and contents
+     */
+    private final Map<String, Integer> poolIndices = new HashMap<String, Integer>();
+
+    /**
+     * The next free constant pool index
+     */
+    private int poolCount = 1;
+
+    /**
+     * Serialized methods
+     */
+    private final ByteVector methods = new ByteVector(256);
+
+    /**
+     * The number of methods written
+     */
+    private int methodCount = 0;
+
+    /**
+     * @param value    a string constant's text
+     * @return  the constant pool index of a UTF-8 entry holding {@code value}
+     */
+    int utf8(String value) {
+        String key = CONSTANT_UTF8 + value;
+        Integer index = poolIndices.get(key);
+        if (index != null)
+            return index;
+        pool.putByte(CONSTANT_UTF8);
+        pool.putUtf8(value);
+        return addEntry(key, 1);
+    }
+
+    /**
+     * @param value    an int constant
+     * @return  the constant pool index of an integer entry
+     */
+    int integer(int value) {
+        String key = CONSTANT_INTEGER + Integer.toString(value);
+        Integer index = poolIndices.get(key);
+        if (index != null)
+            return index;
+        pool.putByte(CONSTANT_INTEGER);
+        pool.putInt(value);
+        return addEntry(key, 1);
+    }
+
+    /**
+     * @param value    a long constant
+     * @return  the constant pool index of a long entry
+     */
+    int longConstant(long value) {
+        String key = CONSTANT_LONG + Long.toString(value);
+        Integer index = poolIndices.get(key);
+        if (index != null)
+            return index;
+        pool.putByte(CONSTANT_LONG);
+        pool.putInt((int) (value >>> 32));
+        pool.putInt((int) value);
+        return addEntry(key, 2);
+    }
+
+    /**
+     * @param internalName    a class name in internal (slash separated) form
+     * @return  the constant pool index of a class entry
+     */
+    int classRef(String internalName) {
+        String key = CONSTANT_CLASS + internalName;
+        Integer index = poolIndices.get(key);
+        if (index != null)
+            return index;
+        int name = utf8(internalName);
+        pool.putByte(CONSTANT_CLASS);
+        pool.putShort(name);
+        return addEntry(key, 1);
+    }
+
+    /**
+     * @param value    a string literal
+     * @return  the constant pool index of a string entry
+     */
+    int string(String value) {
+        String key = CONSTANT_STRING + value;
+        Integer index = poolIndices.get(key);
+        if (index != null)
+            return index;
+        int text = utf8(value);
+        pool.putByte(CONSTANT_STRING);
+        pool.putShort(text);
+        return addEntry(key, 1);
+    }
+
+    /**
+     * @param owner         the internal name of the declaring class
+     * @param name          the method name
+     * @param descriptor    the method descriptor
+     * @return  the constant pool index of a method reference
+     */
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    /**
+     * @param owner         the internal name of the declaring interface
+     * @param name          the method name
+     * @param descriptor    the method descriptor
+     * @return  the constant pool index of an interface method reference
+     */
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_INTERFACE_METHODREF, owner, name, descriptor);
+    }
+
+    /**
+     * Adds a method with a Code attribute and no exception handlers.
+     *
+     * @param access        the access flags
+     * @param name          the method name
+     * @param descriptor    the method descriptor
+     * @param maxStack      the maximum operand stack depth of {@code code}
+     * @param maxLocals     the number of local variable slots used
+     * @param code          the method's bytecode
+     * @param codeLength    the number of valid bytes in {@code code}
+     */
+    void addMethod(int access, String name, String descriptor, int maxStack,
+                   int maxLocals, byte[] code, int codeLength) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int codeIndex = utf8("Code");
+
+        methods.putShort(access);
+        methods.putShort(nameIndex);
+        methods.putShort(descriptorIndex);
+        methods.putShort(1); // attributes: Code
+        methods.putShort(codeIndex);
+        methods.putInt(12 + codeLength);
+        methods.putShort(maxStack);
+        methods.putShort(maxLocals);
+        methods.putInt(codeLength);
+        methods.putBytes(code, codeLength);
+        methods.putShort(0); // exception table
+        methods.putShort(0); // attributes
+        methodCount++;
+    }
+
+    /**
+     * Assembles the class file.
+     *
+     * @param access        the class access flags
+     * @param thisClass     the internal name of the class
+     * @param superClass    the internal name of its superclass
+     * @return  the class file's bytes
+     */
+    byte[] toByteArray(int access, String thisClass, String superClass) {
+        int thisIndex = classRef(thisClass);
+        int superIndex = classRef(superClass);
+
+        ByteVector out = new ByteVector(pool.length + methods.length + 32);
+        out.putInt(0xCAFEBABE);
+        out.putShort(0);
+        out.putShort(MAJOR_VERSION);
+        out.putShort(poolCount);
+        out.putBytes(pool.data, pool.length);
+        out.putShort(access);
+        out.putShort(thisIndex);
+        out.putShort(superIndex);
+        out.putShort(0); // interfaces
+        out.putShort(0); // fields
+        out.putShort(methodCount);
+        out.putBytes(methods.data, methods.length);
+        out.putShort(0); // attributes
+
+        byte[] bytes = new byte[out.length];
+        System.arraycopy(out.data, 0, bytes, 0, out.length);
+        return bytes;
+    }
+
+    /**
+     * Adds a method or interface method reference.
+     *
+     * @param tag           the constant pool tag
+     * @param owner         the internal name of the declaring type
+     * @param name          the method name
+     * @param descriptor    the method descriptor
+     * @return  the constant pool index of the reference
+     */
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        String key = tag + owner + '.' + name + descriptor;
+        Integer index = poolIndices.get(key);
+        if (index != null)
+            return index;
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        pool.putByte(tag);
+        pool.putShort(ownerIndex);
+        pool.putShort(nameAndType);
+        return addEntry(key, 1);
+    }
+
+    /**
+     * @param name          a member name
+     * @param descriptor    a member descriptor
+     * @return  the constant pool index of a name and type entry
+     */
+    private int nameAndType(String name, String descriptor) {
+        String key = CONSTANT_NAME_AND_TYPE + name + ' ' + descriptor;
+        Integer index = poolIndices.get(key);
+        if (index != null)
+            return index;
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        pool.putByte(CONSTANT_NAME_AND_TYPE);
+        pool.putShort(nameIndex);
+        pool.putShort(descriptorIndex);
+        return addEntry(key, 1);
+    }
+
+    /**
+     * Records the index of the entry just written to the pool.
+     *
+     * @param key      the entry's lookup key
+     * @param slots    the number of pool slots the entry occupies
+     * @return  the entry's index
+     */
+    private int addEntry(String key, int slots) {
+        int index = poolCount;
+        poolIndices.put(key, index);
+        poolCount += slots;
+        return index;
+    }
+
+    /**
+     * A growable big-endian byte buffer.
+     */
+    static final class ByteVector {
+        /**
+         * The buffer contents
+         */
+        byte[] data;
+
+        /**
+         * The number of bytes written
+         */
+        int length = 0;
+
+        /**
+         * @param capacity    the initial capacity
+         */
+        ByteVector(int capacity) {
+            data = new byte[capacity];
+        }
+
+        /**
+         * @param value    the byte to append
+         */
+        void putByte(int value) {
+            ensureCapacity(1);
+            data[length++] = (byte) value;
+        }
+
+        /**
+         * @param value    the 16-bit value to append
+         */
+        void putShort(int value) {
+            ensureCapacity(2);
+            data[length++] = (byte) (value >>> 8);
+            data[length++] = (byte) value;
+        }
+
+        /**
+         * @param value    the 32-bit value to append
+         */
+        void putInt(int value) {
+            ensureCapacity(4);
+            data[length++] = (byte) (value >>> 24);
+            data[length++] = (byte) (value >>> 16);
+            data[length++] = (byte) (value >>> 8);
+            data[length++] = (byte) value;
+        }
+
+        /**
+         * @param bytes     the source array
+         * @param count     the number of bytes of {@code bytes} to append
+         */
+        void putBytes(byte[] bytes, int count) {
+            ensureCapacity(count);
+            System.arraycopy(bytes, 0, data, length, count);
+            length += count;
+        }
+
+        /**
+         * Appends a length-prefixed string in the class file's modified UTF-8
+         * encoding.
+         *
+         * @param value    the string to append
+         */
+        void putUtf8(String value) {
+            int start = length;
+            putShort(0);
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x0001 && c <= 0x007F) {
+                    putByte(c);
+                } else if (c <= 0x07FF) {
+                    putByte(0xC0 | (c >> 6));
+                    putByte(0x80 | (c & 0x3F));
+                } else {
+                    putByte(0xE0 | (c >> 12));
+                    putByte(0x80 | ((c >> 6) & 0x3F));
+                    putByte(0x80 | (c & 0x3F));
+                }
+            }
+            int encoded = length - start - 2;
+            data[start] = (byte) (encoded >>> 8);
+            data[start + 1] = (byte) encoded;
+        }
+
+        /**
+         * Overwrites a 16-bit value.
+         *
+         * @param position    the offset of the value
+         * @param value       the new value
+         */
+        void setShort(int position, int value) {
+            data[position] = (byte) (value >>> 8);
+            data[position + 1] = (byte) value;
+        }
+
+        /**
+         * @param count    the number of bytes about to be appended
+         */
+        private void ensureCapacity(int count) {
+            if (length + count > data.length) {
+                int capacity = Math.max(data.length * 2, length + count);
+                byte[] larger = new byte[capacity];
+                System.arraycopy(data, 0, larger, 0, length);
+                data = larger;
+            }
+        }
+    }
+}
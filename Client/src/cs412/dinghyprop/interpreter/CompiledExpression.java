@@ -0,0 +1,84 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.simulator.ExecutionException;
+import cs412.dinghyprop.simulator.ISimulator;
+
+/**
+ * Base class of the classes generated by {@link BytecodeCompiler}.
+ * <p>
+ * A generated subclass evaluates its program's expression tree once per call
+ * to {@link #evaluate(ISimulator)}, with the same results and simulator side
+ * effects as {@link Interpreter}'s tree walk.  The static helpers cover the
+ * parts of {@link Value}'s semantics that are too awkward to emit inline; they
+ * are small enough to be inlined by the JIT.
+ * <p>
+ * Values whose type cannot be determined at compile time are carried in the
+ * packed form produced by {@link Value#pack(Value.TYPE, int)}.
+ */
+public abstract class CompiledExpression {
+
+    /**
+     * For use by generated subclasses only.
+     */
+    protected CompiledExpression() { }
+
+    /**
+     * Evaluate the program once.
+     *
+     * @param simulator    the simulator to forward references and invocations
+     *                     to
+     * @return  the packed value of the program's root
+     * @throws ExecutionException if the simulator rejects a reference or
+     * invocation
+     */
+    public abstract long evaluate(ISimulator simulator) throws ExecutionException;
+
+    /**
+     * @param value    a packed value
+     * @return  the packed value as by {@link Value#addend()}
+     */
+    protected static int addend(long value) {
+        return Value.addend(value);
+    }
+
+    /**
+     * @param value    a packed value
+     * @return  the packed value as by {@link Value#multiplicand()}
+     */
+    protected static int multiplicand(long value) {
+        return Value.multiplicand(value);
+    }
+
+    /**
+     * One step of the interpreter's safe division.
+     *
+     * @param dividend    the accumulated value
+     * @param divisor     the next operand's multiplicand
+     * @return  the quotient, or 0 if {@code divisor} is 0
+     */
+    protected static int divide(int dividend, int divisor) {
+        if (divisor != 0)
+            return dividend / divisor;
+        return 0;
+    }
+
+    /**
+     * One step of the interpreter's exponentiation.  The interpreter leaves the
+     * accumulated value unchanged for non-zero exponents.
+     *
+     * @param accum       the accumulated value
+     * @param exponent    the next operand's multiplicand
+     * @return  {@code accum}, or 1 if {@code exponent} is 0
+     */
+    protected static int exponentiate(int accum, int exponent) {
+        if (exponent != 0)
+            return accum;
+        return 1;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+import cs412.dinghyprop.simulator.ISimulator;
+
+import java.util.logging.Logger;
+
+/**
+ * A program parsed, optimized and prepared for one evaluation mode and
+ * strategy.
+ * <p>
+ * A CompiledProgram is immutable and may be shared between threads.  Binding
+ * it to a simulator creates an {@link Interpreter} without parsing the
+ * program again, and {@link Interpreter#reset(ISimulator)} moves that
+ * interpreter on to further simulators.
+ */
+public final class CompiledProgram {
+    private static Logger log = Logger.getLogger("CompiledProgram");
+
+    /**
+     * The original program text
+     */
+    private final String text;
+
+    /**
+     * The optimized AST; never modified after construction
+     */
+    private final Expression tree;
+
+    /**
+     * How the program is evaluated
+     */
+    private final Interpreter.MODE mode;
+
+    /**
+     * Whether {@code if} and comparisons short-circuit
+     */
+    private final EvaluationStrategy strategy;
+
+    /**
+     * The program's instructions, or null unless in STACK_MACHINE mode
+     */
+    private final Instructions instructions;
+
+    /**
+     * The program's generated class instance, or null unless in COMPILED
+     * mode.  Generated classes have no fields, so the instance is shareable.
+     */
+    private final CompiledExpression compiled;
+
+    /**
+     * Whether the program always evaluates a symbol the simulator does not
+     * know
+     */
+    private final Verifier.RESULT verification;
+
+    /**
+     * @param tree        the AST to evaluate as given
+     * @param text        the program's text, for logging
+     * @param mode        how to evaluate the program
+     * @param strategy    whether to short-circuit {@code if} and comparisons
+     */
+    CompiledProgram(Expression tree, String text, Interpreter.MODE mode,
+                    EvaluationStrategy strategy) {
+        this.text = text;
+        this.tree = tree;
+        this.strategy = strategy;
+        verification = Verifier.verify(tree, strategy);
+        boolean lazy = (strategy == EvaluationStrategy.LAZY);
+
+        Instructions instructions = null;
+        CompiledExpression compiled = null;
+        if (mode == Interpreter.MODE.STACK_MACHINE) {
+            instructions = Instructions.encode(tree, strategy);
+        } else if (mode == Interpreter.MODE.COMPILED) {
+            compiled = BytecodeCompiler.compile(tree, lazy);
+            if (compiled == null) {
+                log.fine("Could not compile, walking AST instead: " + text);
+                mode = Interpreter.MODE.TREE;
+            }
+        }
+        this.mode = mode;
+        this.instructions = instructions;
+        this.compiled = compiled;
+    }
+
+    /**
+     * Parses, optimizes and prepares a program.  If the program cannot be
+     * compiled, it will be evaluated by walking its AST.
+     *
+     * @param program     the program text
+     * @param mode        how to evaluate the program
+     * @param strategy    whether to short-circuit {@code if} and comparisons
+     * @return  the prepared program
+     * @throws ParsingException if the program cannot be parsed
+     */
+    public static CompiledProgram compile(String program, Interpreter.MODE mode,
+                                          EvaluationStrategy strategy) throws ParsingException {
+        return compile(program, mode, strategy, false);
+    }
+
+    /**
+     * Parses, optimizes and prepares a program, optionally stripping the
+     * parts that cannot affect a simulation (see {@link IntronStripper}).  A
+     * stripped program reaches the same simulator states and fitness, but its
+     * root may evaluate to a different value.  If the program cannot be
+     * compiled, it will be evaluated by walking its AST.
+     *
+     * @param program         the program text
+     * @param mode            how to evaluate the program
+     * @param strategy        whether to short-circuit {@code if} and
+     *                        comparisons
+     * @param stripIntrons    whether to strip the program
+     * @return  the prepared program
+     * @throws ParsingException if the program cannot be parsed
+     */
+    public static CompiledProgram compile(String program, Interpreter.MODE mode,
+                                          EvaluationStrategy strategy, boolean stripIntrons)
+            throws ParsingException {
+        Expression tree = Optimizer.optimize(new Parser(program).parse(), strategy);
+        if (stripIntrons)
+            tree = IntronStripper.strip(tree, strategy);
+        return new CompiledProgram(tree, program, mode, strategy);
+    }
+
+    /**
+     * Creates an interpreter running this program in a simulator.
+     *
+     * @param simulator    the Simulator that provides context
+     * @return  a new interpreter
+     */
+    public Interpreter bind(ISimulator simulator) {
+        return new Interpreter(this, simulator);
+    }
+
+    /**
+     * @return  the original program text
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return  how the program is evaluated; TREE if it could not be compiled
+     */
+    public Interpreter.MODE getMode() {
+        return mode;
+    }
+
+    /**
+     * @return  whether {@code if} and comparisons short-circuit
+     */
+    public EvaluationStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return  VALID, or why the program will raise an exception on its first
+     * pass
+     */
+    public Verifier.RESULT getVerification() {
+        return verification;
+    }
+
+    /**
+     * @return  the optimized AST, which must not be modified
+     */
+    Expression getTree() {
+        return tree;
+    }
+
+    /**
+     * @return  the program's instructions, or null unless in STACK_MACHINE
+     * mode
+     */
+    Instructions getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * @return  the program's generated class instance, or null unless in
+     * COMPILED mode
+     */
+    CompiledExpression getCompiled() {
+        return compiled;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+import cs412.dinghyprop.simulator.Symbols;
+
+/**
+ * Classifies programs by how they can affect a simulation.
+ * <p>
+ * A program with no move or turn invocations can never change a simulator's
+ * state, so its fitness is the simulator's fitness before it runs and the
+ * simulation can be skipped.
+ */
+public final class EffectAnalysis {
+    /**
+     * The ways a program can affect a simulation: not at all, by moving or
+     * turning the same way regardless of its surroundings, or by moving or
+     * turning depending on variable references.
+     */
+    public static enum EFFECT { INERT, MOVEMENT_ONLY, SENSOR_DEPENDENT }
+
+    /**
+     * Whether an action has been seen
+     */
+    private boolean acts = false;
+
+    /**
+     * Whether a variable reference has been seen
+     */
+    private boolean senses = false;
+
+    private EffectAnalysis() {}
+
+    /**
+     * Classifies a program as it will be evaluated, that is, after
+     * optimization.
+     *
+     * @param program     the program text
+     * @param strategy    the strategy the program will be evaluated with
+     * @return  the program's effect
+     * @throws ParsingException if the program cannot be parsed
+     */
+    public static EFFECT classify(String program, EvaluationStrategy strategy)
+            throws ParsingException {
+        return classify(Optimizer.optimize(new Parser(program).parse(), strategy));
+    }
+
+    /**
+     * Classifies a prepared program.
+     *
+     * @param program    the program
+     * @return  the program's effect
+     */
+    public static EFFECT classify(CompiledProgram program) {
+        return classify(program.getTree());
+    }
+
+    /**
+     * Classifies a program tree.
+     *
+     * @param program    the program's root
+     * @return  the program's effect
+     */
+    public static EFFECT classify(Expression program) {
+        EffectAnalysis analysis = new EffectAnalysis();
+        analysis.visit(program);
+        if (!analysis.acts)
+            return EFFECT.INERT;
+        return analysis.senses ? EFFECT.SENSOR_DEPENDENT : EFFECT.MOVEMENT_ONLY;
+    }
+
+    /**
+     * Records the actions and references in an operand.
+     *
+     * @param operand    an Expression, Value, or symbol String
+     */
+    private void visit(Object operand) {
+        if (operand instanceof String) {
+            senses = true;
+        } else if (operand instanceof Expression) {
+            Expression expr = (Expression) operand;
+            int operandCount = expr.getOperandCount();
+            // unknown functions only raise, which leaves the simulator as is
+            if (operandCount == 0 && Symbols.functionId(expr.getOperator()) != Symbols.UNKNOWN)
+                acts = true;
+            for (int i = 0; i < operandCount; i++)
+                visit(expr.getOperand(i));
+        }
+    }
+}
@@ -6,22 +6,52 @@
 
 package cs412.dinghyprop.interpreter;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Represents a node in the AST of a generated program.
+ * <p>
+ * Operands are kept in an array, and the subtree's size, depth and hash code
+ * are computed as operands are added, so none of them walk the tree.  An
+ * Expression is built by its constructor and {@link #addOperand(Object)};
+ * an operand must be complete when it is added, and an Expression must not
+ * be changed once it is an operand or is being evaluated.
  */
 public final class Expression {
+    /**
+     * An empty operand array shared by nodes without operands
+     */
+    private static final Object[] NO_OPERANDS = new Object[0];
+
     /**
      * Node contents
      */
-    private String operator;
+    private final String operator;
 
     /**
-     * Subtrees
+     * Subtrees; only the first {@code operandCount} slots are used
      */
-    private List<Object> operands;
+    private Object[] operands = NO_OPERANDS;
+
+    /**
+     * The number of operands
+     */
+    private int operandCount = 0;
+
+    /**
+     * The number of nodes, including terminal operands, in this subtree
+     */
+    private int size = 1;
+
+    /**
+     * The number of nodes on the longest path from this node to a terminal
+     */
+    private int depth = 1;
+
+    /**
+     * Structural hash code of this subtree
+     */
+    private int hash;
 
     /**
      * Creates an Expression object from an S-expression.
@@ -42,7 +72,20 @@ public final class Expression {
      */
     public Expression(String operator) {
         this.operator = operator;
-        operands = new ArrayList<Object>(3);
+        hash = operator.hashCode();
+    }
+
+    /**
+     * Creates a new expression tree node with its operands.
+     *
+     * @param operator    the operator at this node
+     * @param operands    the complete subtrees, values and symbols to add
+     */
+    public Expression(String operator, Object... operands) {
+        this(operator);
+        this.operands = (operands.length == 0) ? NO_OPERANDS : new Object[operands.length];
+        for (Object operand : operands)
+            addOperand(operand);
     }
 
     /**
@@ -53,7 +96,19 @@ public final class Expression {
      * @param operand    the subtree or value to add
      */
     public void addOperand(Object operand) {
-        operands.add(operand);
+        if (operandCount == operands.length)
+            operands = Arrays.copyOf(operands, Math.max(3, 2 * operandCount));
+        operands[operandCount++] = operand;
+
+        if (operand instanceof Expression) {
+            Expression expr = (Expression) operand;
+            size += expr.size;
+            depth = Math.max(depth, expr.depth + 1);
+        } else {
+            size++;
+            depth = Math.max(depth, 2);
+        }
+        hash = 31 * hash + ((operand == null) ? 0 : operand.hashCode());
     }
 
     /**
@@ -64,10 +119,43 @@ public final class Expression {
     }
 
     /**
-     * @return  an array of this expression operands
+     * @return  the number of operands of this node
+     */
+    public int getOperandCount() {
+        return operandCount;
+    }
+
+    /**
+     * @param index    the operand's position
+     * @return  the operand at {@code index}
+     */
+    public Object getOperand(int index) {
+        if (index >= operandCount)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + operandCount);
+        return operands[index];
+    }
+
+    /**
+     * @return  a copy of this expression's operands
      */
     public Object[] getOperands() {
-        return operands.toArray();
+        return Arrays.copyOf(operands, operandCount);
+    }
+
+    /**
+     * @return  the number of nodes, including terminal operands, in this
+     * subtree
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return  the number of nodes on the longest path from this node to a
+     * terminal, counting both; 1 for a node without operands
+     */
+    public int getDepth() {
+        return depth;
     }
 
     /**
@@ -75,34 +163,49 @@ public final class Expression {
      */
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder('(' + operator);
-        for (Object obj : getOperands()) {
+        StringBuilder sb = new StringBuilder();
+        appendTo(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Appends this expression's S-expression representation.
+     *
+     * @param sb    the builder to append to
+     */
+    private void appendTo(StringBuilder sb) {
+        sb.append('(').append(operator);
+        for (int i = 0; i < operandCount; i++) {
             sb.append(' ');
-            try {
-                Expression internal = (Expression) obj;
-                sb.append(internal.toString());
-            } catch (ClassCastException cce) {
-                sb.append(obj);
-            }
+            if (operands[i] instanceof Expression)
+                ((Expression) operands[i]).appendTo(sb);
+            else
+                sb.append(operands[i]);
         }
         sb.append(')');
-        return sb.toString();
     }
 
     @Override
     public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
         if (!(obj instanceof Expression))
             return false;
 
         Expression other = (Expression) obj;
-        return operator.equals(other.operator)
-                && operands.size() == other.operands.size()
-                && operands.equals(other.operands);
-
+        if (hash != other.hash || size != other.size || operandCount != other.operandCount
+                || !operator.equals(other.operator))
+            return false;
+        for (int i = 0; i < operandCount; i++) {
+            Object operand = operands[i];
+            if (operand == null ? other.operands[i] != null : !operand.equals(other.operands[i]))
+                return false;
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return operator.hashCode() * operands.hashCode();
+        return hash;
     }
 }
@@ -0,0 +1,443 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+import cs412.dinghyprop.simulator.Symbols;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flat, postfix encoding of a program for {@link StackMachine}.
+ * <p>
+ * The program is a single {@code int[]} of opcodes, each followed by at most
+ * one operand.  Operands of a node are encoded before the node itself, so
+ * executing the instructions in order evaluates the tree exactly as
+ * {@link Interpreter}'s tree walk does.  Variables and functions are resolved
+ * to their {@link Symbols} IDs; names missing from that table are stored once
+ * in a separate table and referred to by index.
+ * <p>
+ * Lazy programs use forward jumps, to absolute positions in the instruction
+ * stream, to skip the operands that the lazy tree walk skips.
+ * <p>
+ * Objects of this class are immutable and may be shared between threads.
+ */
+public final class Instructions implements Serializable {
+    private static final long serialVersionUID = -6310724590872043377L;
+
+    // opcodes followed by a value, symbol ID, or symbol table index
+    static final int PUSH_INT = 0;
+    static final int SENSOR = 1;
+    static final int ACTION = 2;
+    static final int REFERENCE = 3;
+    static final int INVOKE = 4;
+
+    // opcodes without an operand
+    static final int PUSH_NULL = 5;
+    static final int PUSH_TRUE = 6;
+    static final int PUSH_FALSE = 7;
+
+    // opcodes followed by the number of operands they consume
+    static final int ADD = 8;
+    static final int SUB = 9;
+    static final int MULT = 10;
+    static final int DIV = 11;
+    static final int EXP = 12;
+    static final int LESS = 13;
+    static final int LESS_OR_EQUAL = 14;
+    static final int GREATER = 15;
+    static final int GREATER_OR_EQUAL = 16;
+    static final int EQUAL = 17;
+    static final int NOT_EQUAL = 18;
+    static final int IF = 19;
+    static final int DISCARD = 20;
+
+    // opcodes for lazy programs, followed by a jump target
+    static final int JUMP = 21;
+    static final int JUMP_UNLESS = 22;
+    // [.., a, b] becomes [.., b] if the pair holds, else [.., false] and jump
+    static final int LESS_STEP = 23;
+    static final int LESS_OR_EQUAL_STEP = 24;
+    static final int GREATER_STEP = 25;
+    static final int GREATER_OR_EQUAL_STEP = 26;
+    static final int EQUAL_STEP = 27;
+    // followed by a count and a jump target: unless the top value differs
+    // from the count - 1 values below it, the count values become false
+    static final int DISTINCT_STEP = 28;
+    // followed by a count: the count values become true
+    static final int DROP_TRUE = 29;
+
+    /**
+     * Opcode mnemonics, indexed by opcode
+     */
+    private static final String[] NAMES = {
+            "push", "sensor", "action", "reference", "invoke", "null", "true",
+            "false", "+", "-", "*", "/", "^", "<", "<=", ">", ">=", "==", "!=",
+            "if", "discard", "jump", "jump-unless", "<-step", "<=-step",
+            ">-step", ">=-step", "==-step", "!=-step", "drop-true"
+    };
+
+    /**
+     * The number of ints following each opcode, indexed by opcode
+     */
+    private static final int[] OPERAND_COUNTS = {
+            1, 1, 1, 1, 1, 0, 0, 0, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+            1, 1, 1, 1, 1, 1, 2, 1
+    };
+
+    /**
+     * The instruction stream
+     */
+    final int[] code;
+
+    /**
+     * Unresolved symbol names referred to by REFERENCE and INVOKE
+     */
+    final String[] symbols;
+
+    /**
+     * The largest number of values on the stack during execution
+     */
+    final int maxStack;
+
+    /**
+     * @param code        the instruction stream
+     * @param symbols     the symbol table
+     * @param maxStack    the maximum stack depth
+     */
+    private Instructions(int[] code, String[] symbols, int maxStack) {
+        this.code = code;
+        this.symbols = symbols;
+        this.maxStack = maxStack;
+    }
+
+    /**
+     * Encodes an Expression tree for eager evaluation.
+     *
+     * @param expression    the program's root
+     * @return  the equivalent instructions
+     */
+    public static Instructions encode(Expression expression) {
+        return encode(expression, EvaluationStrategy.EAGER);
+    }
+
+    /**
+     * Encodes an Expression tree.
+     *
+     * @param expression    the program's root
+     * @param strategy      the evaluation strategy to encode
+     * @return  the equivalent instructions
+     */
+    public static Instructions encode(Expression expression, EvaluationStrategy strategy) {
+        Encoder encoder = new Encoder(strategy == EvaluationStrategy.LAZY);
+        encoder.encode(expression);
+        int[] code = new int[encoder.length];
+        System.arraycopy(encoder.code, 0, code, 0, encoder.length);
+        String[] symbols = encoder.symbols.toArray(new String[encoder.symbols.size()]);
+        return new Instructions(code, symbols, encoder.maxDepth);
+    }
+
+    /**
+     * @return  the number of ints in the instruction stream
+     */
+    public int size() {
+        return code.length;
+    }
+
+    /**
+     * @return  a listing of the instructions, one per line
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        int pc = 0;
+        while (pc < code.length) {
+            int opcode = code[pc++];
+            sb.append(NAMES[opcode]);
+            if (opcode == SENSOR) {
+                sb.append(' ').append(Symbols.variableName(code[pc++]));
+            } else if (opcode == ACTION) {
+                sb.append(' ').append(Symbols.functionName(code[pc++]));
+            } else if (opcode == REFERENCE || opcode == INVOKE) {
+                sb.append(' ').append(symbols[code[pc++]]);
+            } else {
+                for (int i = 0; i < OPERAND_COUNTS[opcode]; i++)
+                    sb.append(' ').append(code[pc++]);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Builds an instruction stream from an Expression tree.
+     */
+    private static final class Encoder {
+        final boolean lazy;
+        int[] code = new int[64];
+        int length = 0;
+        final List<String> symbols = new ArrayList<String>();
+        int depth = 0;
+        int maxDepth = 0;
+
+        /**
+         * @param lazy    whether {@code if} and comparisons short-circuit
+         */
+        Encoder(boolean lazy) {
+            this.lazy = lazy;
+        }
+
+        /**
+         * Encodes an operand, leaving one value on the stack.
+         *
+         * @param operand    an Expression, Value, or symbol String
+         */
+        void encode(Object operand) {
+            if (operand instanceof Expression) {
+                encodeExpression((Expression) operand);
+            } else if (operand instanceof Value) {
+                Value value = (Value) operand;
+                if (value.isInt())
+                    emit(PUSH_INT, value.addend());
+                else if (value.isBool())
+                    emit(value.bool() ? PUSH_TRUE : PUSH_FALSE);
+                else
+                    emit(PUSH_NULL);
+                push();
+            } else if (operand instanceof String) {
+                String name = (String) operand;
+                int variableId = Symbols.variableId(name);
+                if (variableId == Symbols.UNKNOWN)
+                    emit(REFERENCE, symbol(name));
+                else
+                    emit(SENSOR, variableId);
+                push();
+            } else {
+                emit(PUSH_NULL);
+                push();
+            }
+        }
+
+        /**
+         * Encodes an Expression node.
+         *
+         * @param expr    the node
+         */
+        private void encodeExpression(Expression expr) {
+            String operator = expr.getOperator();
+            Object[] operands = expr.getOperands();
+            if (operands.length == 0) {
+                int functionId = Symbols.functionId(operator);
+                if (functionId == Symbols.UNKNOWN)
+                    emit(INVOKE, symbol(operator));
+                else
+                    emit(ACTION, functionId);
+                push();
+                return;
+            }
+
+            int opcode = opcode(operator);
+            if (lazy && opcode == IF) {
+                encodeLazyIf(operands);
+                return;
+            } else if (lazy && opcode == NOT_EQUAL) {
+                encodeLazyDistinct(operands);
+                return;
+            } else if (lazy && opcode >= LESS && opcode <= EQUAL) {
+                encodeLazyChain(operands, opcode - LESS + LESS_STEP);
+                return;
+            }
+
+            for (Object operand : operands)
+                encode(operand);
+            emit(opcode, operands.length);
+            depth -= operands.length;
+            push();
+        }
+
+        /**
+         * Encodes an if construct that evaluates only the taken branch.
+         *
+         * @param operands    the condition, true branch, and optional false
+         *                    branch
+         */
+        private void encodeLazyIf(Object[] operands) {
+            encode(operands[0]);
+            int otherwise = emitJump(JUMP_UNLESS);
+            depth--;
+            encodeOptional(operands, 1);
+            int end = emitJump(JUMP);
+            depth--;
+            code[otherwise] = length;
+            encodeOptional(operands, 2);
+            code[end] = length;
+        }
+
+        /**
+         * Encodes an operand, or null if it is missing.
+         *
+         * @param operands    the operands
+         * @param index       the operand's index
+         */
+        private void encodeOptional(Object[] operands, int index) {
+            if (index < operands.length) {
+                encode(operands[index]);
+            } else {
+                emit(PUSH_NULL);
+                push();
+            }
+        }
+
+        /**
+         * Encodes an adjacent-pair comparison that stops at the first failing
+         * pair.
+         *
+         * @param operands    the operands
+         * @param step        the step opcode testing one pair
+         */
+        private void encodeLazyChain(Object[] operands, int step) {
+            int[] exits = new int[operands.length];
+            encode(operands[0]);
+            for (int i = 1; i < operands.length; i++) {
+                encode(operands[i]);
+                exits[i] = emitJump(step);
+                depth--;
+            }
+            emit(DROP_TRUE, 1);
+            for (int i = 1; i < operands.length; i++)
+                code[exits[i]] = length;
+        }
+
+        /**
+         * Encodes a pairwise distinctness test that stops at the first
+         * repeated value.
+         *
+         * @param operands    the operands
+         */
+        private void encodeLazyDistinct(Object[] operands) {
+            int[] exits = new int[operands.length];
+            encode(operands[0]);
+            for (int i = 1; i < operands.length; i++) {
+                encode(operands[i]);
+                emit(DISTINCT_STEP, i + 1);
+                exits[i] = emitTarget();
+            }
+            emit(DROP_TRUE, operands.length);
+            depth -= operands.length;
+            push();
+            for (int i = 1; i < operands.length; i++)
+                code[exits[i]] = length;
+        }
+
+        /**
+         * @param operator    an operator name
+         * @return  the operator's opcode, or DISCARD if it is unknown
+         */
+        private static int opcode(String operator) {
+            if (operator.equals("if")) {
+                return IF;
+            } else if (operator.equals("+")) {
+                return ADD;
+            } else if (operator.equals("-")) {
+                return SUB;
+            } else if (operator.equals("*")) {
+                return MULT;
+            } else if (operator.equals("/")) {
+                return DIV;
+            } else if (operator.equals("^")) {
+                return EXP;
+            } else if (operator.equals("<")) {
+                return LESS;
+            } else if (operator.equals("<=")) {
+                return LESS_OR_EQUAL;
+            } else if (operator.equals(">")) {
+                return GREATER;
+            } else if (operator.equals(">=")) {
+                return GREATER_OR_EQUAL;
+            } else if (operator.equals("==")) {
+                return EQUAL;
+            } else if (operator.equals("!=")) {
+                return NOT_EQUAL;
+            }
+            return DISCARD;
+        }
+
+        /**
+         * @param name    a symbol name
+         * @return  the symbol's index in the symbol table
+         */
+        private int symbol(String name) {
+            int index = symbols.indexOf(name);
+            if (index == -1) {
+                index = symbols.size();
+                symbols.add(name);
+            }
+            return index;
+        }
+
+        /**
+         * Records a value pushed onto the stack.
+         */
+        private void push() {
+            depth++;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        /**
+         * @param opcode    an opcode without an operand
+         */
+        private void emit(int opcode) {
+            ensureCapacity(1);
+            code[length++] = opcode;
+        }
+
+        /**
+         * @param opcode     an opcode
+         * @param operand    its operand
+         */
+        private void emit(int opcode, int operand) {
+            ensureCapacity(2);
+            code[length++] = opcode;
+            code[length++] = operand;
+        }
+
+        /**
+         * Emits a jump whose target is patched later.
+         *
+         * @param opcode    an opcode followed by a jump target
+         * @return  the position of the target
+         */
+        private int emitJump(int opcode) {
+            emit(opcode, -1);
+            return length - 1;
+        }
+
+        /**
+         * Emits a jump target, to be patched later, for the preceding opcode.
+         *
+         * @return  the position of the target
+         */
+        private int emitTarget() {
+            ensureCapacity(1);
+            code[length++] = -1;
+            return length - 1;
+        }
+
+        /**
+         * @param count    the number of ints about to be appended
+         */
+        private void ensureCapacity(int count) {
+            if (length + count > code.length) {
+                int[] larger = new int[Math.max(code.length * 2, length + count)];
+                System.arraycopy(code, 0, larger, 0, length);
+                code = larger;
+            }
+        }
+    }
+}
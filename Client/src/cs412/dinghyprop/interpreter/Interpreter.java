@@ -6,8 +6,11 @@
 
 package cs412.dinghyprop.interpreter;
 
+import cs412.dinghyprop.Profile;
+import cs412.dinghyprop.genetics.EvaluationStrategy;
 import cs412.dinghyprop.simulator.ExecutionException;
 import cs412.dinghyprop.simulator.ISimulator;
+import cs412.dinghyprop.simulator.Symbols;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -23,20 +26,112 @@ import java.util.logging.Logger;
  *     <li>Function invocations and variable references are passed to a
  *     simulator</li>
  * </ul>
+ * Intermediate values are packed into longs (see
+ * {@link Value#pack(Value.TYPE, int)}) and kept on a reusable stack, so once
+ * the stack has grown to the program's needs, evaluation does not allocate.
+ * <p>
+ * Alternatively, the AST can be converted once into a form that is cheaper to
+ * evaluate repeatedly: a tree of operator-specific nodes in
+ * {@link MODE#LOWERED} mode, flat postfix instructions for a stack machine in
+ * {@link MODE#STACK_MACHINE} mode, or a JVM class in {@link MODE#COMPILED}
+ * mode.
+ * <p>
+ * Every mode supports both {@link EvaluationStrategy}s.  Under
+ * {@link EvaluationStrategy#LAZY}, {@code if} evaluates its condition and then
+ * only the taken branch, and comparisons stop evaluating operands at the first
+ * pair that fails.
+ * <p>
+ * Before evaluation, the AST is simplified by an {@link Optimizer}; the
+ * program text itself is left unchanged.
+ * <p>
+ * To evaluate one program in many simulators, prepare it once as a
+ * {@link CompiledProgram} and {@link #reset(ISimulator)} the interpreter it
+ * binds to for each simulator.
+ * <p>
+ * The work an interpreter does can be bounded with a node-visit budget (see
+ * {@link #setBudget(long)}).  Each pass is charged the size of the optimized
+ * AST, which is the number of nodes an eager pass visits and an upper bound
+ * for a lazy one.  A pass that would exceed the budget is not started, and the
+ * program's fitness is then 0.
+ * <p>
+ * When {@link Profile#ENABLED profiling is enabled} and the interpreter has
+ * been given a profile, it counts ticks, nodes visited, operator evaluations,
+ * and the variable references and function invocations it passes to the
+ * simulator.  Only the AST walk counts, so a profiled interpreter walks the
+ * AST whatever its mode; the counts are the same in every mode.
  */
 public class Interpreter {
     private static Logger log = Logger.getLogger("Interpreter");
 
+    /**
+     * The ways a program can be evaluated: by walking its AST, by walking the
+     * lowered AST, by running its instructions on a stack machine, or by
+     * running the AST compiled to JVM bytecode.
+     */
+    public static enum MODE { TREE, LOWERED, STACK_MACHINE, COMPILED }
+
+    /**
+     * Budget value that never stops evaluation
+     */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    /**
+     * The system property naming the mode the evaluation clients and
+     * SingleRunner evaluate programs in
+     */
+    public static final String MODE_PROPERTY = "dinghyprop.mode";
+
     /**
      * The simulator tasked with managing the environment, function invocation,
      * and variable references
      */
     private ISimulator simulator;
 
+    /**
+     * The prepared program
+     */
+    private final CompiledProgram compiledProgram;
+
     /**
      * AST
      */
-    private Expression program;
+    private final Expression program;
+
+    /**
+     * Whether {@code if} and comparisons short-circuit
+     */
+    private final boolean lazy;
+
+    /**
+     * The lowered program, or null unless in LOWERED mode
+     */
+    private LoweredNode lowered = null;
+
+    /**
+     * The stack machine running the program, or null unless in STACK_MACHINE
+     * mode
+     */
+    private StackMachine machine = null;
+
+    /**
+     * The compiled program, or null unless in COMPILED mode
+     */
+    private CompiledExpression compiled = null;
+
+    /**
+     * Operand values of the nodes being evaluated by the tree walk
+     */
+    private long[] scratch = new long[16];
+
+    /**
+     * The first free slot of {@code scratch}
+     */
+    private int top = 0;
+
+    /**
+     * The simulator states seen at the start of each tick of run()
+     */
+    private long[] states = new long[0];
 
     /**
      * Whether execution of the program raised an exception
@@ -44,9 +139,46 @@ public class Interpreter {
     private boolean programRaised = false;
 
     /**
-     * The original program text
+     * The number of nodes charged for each pass
+     */
+    private final long passCost;
+
+    /**
+     * The number of nodes that may be visited since the last reset
+     */
+    private long budget = UNLIMITED;
+
+    /**
+     * The number of nodes visited since the last reset
+     */
+    private long cost = 0;
+
+    /**
+     * Whether a pass was refused for exceeding the budget
      */
-    private String programText;
+    private boolean overBudget = false;
+
+    /**
+     * Where evaluation work is counted, or null; only used if
+     * {@link Profile#ENABLED}
+     */
+    private Profile profile = null;
+
+    /**
+     * @return  the mode named by the {@value #MODE_PROPERTY} system property,
+     * or {@link MODE#TREE} if it is not set
+     * @throws IllegalArgumentException if the property names no mode
+     */
+    public static MODE configuredMode() {
+        String name = System.getProperty(MODE_PROPERTY);
+        if (name == null)
+            return MODE.TREE;
+        try {
+            return MODE.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + MODE_PROPERTY + ": " + name);
+        }
+    }
 
     /**
      * Creates an interpreter.
@@ -55,9 +187,118 @@ public class Interpreter {
      * @param program      the program to execute
      */
     public Interpreter(ISimulator simulator, String program) throws ParsingException {
+        this(simulator, program, MODE.TREE, EvaluationStrategy.EAGER);
+    }
+
+    /**
+     * Creates an interpreter using a given evaluation mode.  If the program
+     * cannot be compiled, the interpreter falls back on walking the AST.
+     *
+     * @param simulator    the Simulator that provides context
+     * @param program      the program to execute
+     * @param mode         how to evaluate the program
+     */
+    public Interpreter(ISimulator simulator, String program, MODE mode) throws ParsingException {
+        this(simulator, program, mode, EvaluationStrategy.EAGER);
+    }
+
+    /**
+     * Creates an interpreter using a given evaluation mode and strategy.  If
+     * the program cannot be compiled, the interpreter falls back on walking
+     * the AST.
+     *
+     * @param simulator    the Simulator that provides context
+     * @param program      the program to execute
+     * @param mode         how to evaluate the program
+     * @param strategy     whether to short-circuit {@code if} and comparisons
+     */
+    public Interpreter(ISimulator simulator, String program, MODE mode,
+                       EvaluationStrategy strategy) throws ParsingException {
+        this(CompiledProgram.compile(program, mode, strategy), simulator);
+    }
+
+    /**
+     * Creates an interpreter for a prepared program.
+     *
+     * @param program      the program to execute
+     * @param simulator    the Simulator that provides context
+     */
+    public Interpreter(CompiledProgram program, ISimulator simulator) {
         this.simulator = simulator;
-        programText = program;
-        this.program = new Parser(program).parse();
+        compiledProgram = program;
+        this.program = program.getTree();
+        lazy = (program.getStrategy() == EvaluationStrategy.LAZY);
+        passCost = this.program.getSize();
+        if (program.getMode() == MODE.LOWERED)
+            lowered = LoweredNode.lower(this.program, lazy);
+        else if (program.getMode() == MODE.STACK_MACHINE)
+            machine = new StackMachine(program.getInstructions());
+        else if (program.getMode() == MODE.COMPILED)
+            compiled = program.getCompiled();
+    }
+
+    /**
+     * Binds this interpreter to another simulator, forgetting any exception
+     * the program raised and the cost it incurred in the previous one.  The
+     * budget is kept.
+     *
+     * @param simulator    the Simulator that provides context
+     */
+    public void reset(ISimulator simulator) {
+        this.simulator = simulator;
+        programRaised = false;
+        cost = 0;
+        overBudget = false;
+    }
+
+    /**
+     * Sets the number of nodes that may be visited until the next reset.
+     *
+     * @param budget    the node-visit budget, or {@link #UNLIMITED}
+     */
+    public void setBudget(long budget) {
+        if (budget < 0)
+            throw new IllegalArgumentException("Negative budget: " + budget);
+        this.budget = budget;
+    }
+
+    /**
+     * @return  the node-visit budget
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return  the number of nodes visited since the last reset
+     */
+    public long getCost() {
+        return cost;
+    }
+
+    /**
+     * @return  whether evaluation was stopped for exceeding the budget since
+     * the last reset
+     */
+    public boolean isOverBudget() {
+        return overBudget;
+    }
+
+    /**
+     * Sets where evaluation work is counted while profiling is enabled.  The
+     * profile is kept across resets.
+     *
+     * @param profile    the profile to record into, or null
+     */
+    public void setProfile(Profile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * @return  the program this interpreter runs
+     */
+    public CompiledProgram getProgram() {
+        return compiledProgram;
     }
 
     /**
@@ -66,287 +307,453 @@ public class Interpreter {
     public void execute() {
         if (! canContinue())
             return;
+        if (passCost > budget - cost) {
+            overBudget = true;
+            return;
+        }
+        cost += passCost;
+        if (Profile.ENABLED && profile != null)
+            profile.countTick();
         try {
-            evaluateExpression(program);
+            evaluate();
         } catch (ExecutionException e) {
             log.log(Level.INFO, "execute throwing:", e);
-            log.info("Exception caused by :" + programText);
+            log.info("Exception caused by :" + compiledProgram.getText());
             programRaised = true;
         }
     }
 
+    /**
+     * Evaluates the program once, without checking whether execution can
+     * continue.
+     *
+     * @return  the packed value of the program's root expression
+     * @throws ExecutionException if the simulator raises an exception
+     */
+    long evaluate() throws ExecutionException {
+        if (Profile.ENABLED && profile != null) {
+            top = 0;
+            return evaluateExpression(program);
+        }
+        if (lowered != null)
+            return lowered.eval(simulator);
+        if (machine != null)
+            return machine.run(simulator);
+        if (compiled != null)
+            return compiled.evaluate(simulator);
+        top = 0;
+        return evaluateExpression(program);
+    }
+
     /**
      * Evaluate the program in the simulation for a given count of iterations.
      * <p>
      * Evaluation will end if the simulation indicates that it cannot continue.
+     * <p>
+     * Since the program is deterministic, once the simulator returns to a
+     * state it was in at the start of an earlier iteration, the iterations
+     * since then repeat until the end.  Only the iterations needed to reach
+     * the state the full run would end in are then evaluated.
      * 
      * @param iterations    the number of times evaluate the program
      */
     public void run(int iterations) {
+        if (states.length < iterations)
+            states = new long[iterations];
+        int seen = 0;
         while (canContinue() && iterations > 0) {
+            long state = simulator.getState();
+            int cycle = cycleLength(state, seen);
+            if (cycle > 0) {
+                iterations %= cycle;
+                break;
+            }
+            states[seen++] = state;
             execute();
             iterations--;
         }
+        while (canContinue() && iterations > 0) {
+            execute();
+            iterations--;
+        }
+    }
+
+    /**
+     * @param state    the simulator's current state
+     * @param seen     the number of states recorded by run()
+     * @return  the number of iterations since the simulator was last in the
+     * state, or 0 if it has not been in it
+     */
+    private int cycleLength(long state, int seen) {
+        for (int i = seen - 1; i >= 0; i--) {
+            if (states[i] == state)
+                return seen - i;
+        }
+        return 0;
     }
 
     /**
-     * Evaluates an Expression tree.
+     * Evaluates an Expression tree.  Operand values are kept on the scratch
+     * stack from {@code top} upwards while the node is evaluated.
      *
      * @param expr    the Expression tree's root
-     * @return  the resulting value from evaluating {@code expr}
+     * @return  the packed value from evaluating {@code expr}
      */
-    private Value evaluateExpression(Expression expr) throws ExecutionException {
+    private long evaluateExpression(Expression expr) throws ExecutionException {
         String operator = expr.getOperator();
-        Object[] operands = expr.getOperands();
-        int operandCount = operands.length;
+        int operandCount = expr.getOperandCount();
+        if (Profile.ENABLED && profile != null) {
+            profile.countNode();
+            if (operandCount > 0)
+                profile.countOperator(operator);
+            else
+                profile.countAction(Symbols.functionId(operator));
+        }
 
         if (operandCount == 0) {
             simulator.invoke(operator);
-            return Value.NULL_VALUE;
+            return Value.PACKED_NULL;
+        }
+        if (lazy) {
+            if (operator.compareTo("if") == 0)
+                return evaluateLazyIf(expr);
+            if (isComparison(operator))
+                return evaluateLazyComparison(expr);
         }
 
-        Value[] results = new Value[operandCount];
+        int base = top;
+        reserve(operandCount);
         for (int i = 0; i < operandCount; i++) {
-            Value result = Value.NULL_VALUE;
-            if (operands[i] instanceof Expression) {
-                result = evaluateExpression((Expression) operands[i]);
-            } else if (operands[i] instanceof Value) {
-                result = (Value) operands[i];
-            } else if (operands[i] instanceof String) {
-                result = Value.newInt(simulator.reference((String) operands[i]));
-            }
-            results[i] = result;
+            // evaluating the operand may grow the scratch stack
+            long value = evaluateOperand(expr.getOperand(i));
+            scratch[base + i] = value;
+        }
+        long result = evaluateOperator(operator, base, base + operandCount);
+        top = base;
+        return result;
+    }
+
+    /**
+     * Evaluates an operand of an Expression.
+     *
+     * @param operand    an Expression, Value, or symbol String
+     * @return  the packed value of {@code operand}
+     */
+    private long evaluateOperand(Object operand) throws ExecutionException {
+        if (operand instanceof Expression)
+            return evaluateExpression((Expression) operand);
+        if (Profile.ENABLED && profile != null) {
+            profile.countNode();
+            if (operand instanceof String)
+                profile.countSensor(Symbols.variableId((String) operand));
+        }
+        if (operand instanceof Value)
+            return Value.pack((Value) operand);
+        if (operand instanceof String)
+            return Value.packInt(simulator.reference((String) operand));
+        return Value.PACKED_NULL;
+    }
+
+    /**
+     * Evaluates an if construct's condition and then only the taken branch.
+     *
+     * @param expr    the if node
+     * @return  the packed value of the taken branch, or null if it is missing
+     */
+    private long evaluateLazyIf(Expression expr) throws ExecutionException {
+        int branch = Value.bool(evaluateOperand(expr.getOperand(0))) ? 1 : 2;
+        if (branch < expr.getOperandCount())
+            return evaluateOperand(expr.getOperand(branch));
+        return Value.PACKED_NULL;
+    }
+
+    /**
+     * Evaluates a comparison's operands in order, stopping once the values
+     * seen so far make the comparison false.
+     *
+     * @param expr    the comparison node
+     * @return  the packed result of the comparison
+     */
+    private long evaluateLazyComparison(Expression expr) throws ExecutionException {
+        String operator = expr.getOperator();
+        int operandCount = expr.getOperandCount();
+        int base = top;
+        reserve(operandCount);
+        long result = Value.PACKED_TRUE;
+        for (int i = 0; i < operandCount && result == Value.PACKED_TRUE; i++) {
+            long value = evaluateOperand(expr.getOperand(i));
+            scratch[base + i] = value;
+            result = evaluateOperator(operator, base, base + i + 1);
+        }
+        top = base;
+        return result;
+    }
+
+    /**
+     * @param operator    an operator name
+     * @return  whether the operator is a comparison
+     */
+    private static boolean isComparison(String operator) {
+        return operator.compareTo("<") == 0 || operator.compareTo("<=") == 0
+                || operator.compareTo(">") == 0 || operator.compareTo(">=") == 0
+                || operator.compareTo("==") == 0 || operator.compareTo("!=") == 0;
+    }
+
+    /**
+     * Reserves space on the scratch stack, growing it if necessary.
+     *
+     * @param count    the number of slots to reserve above {@code top}
+     */
+    private void reserve(int count) {
+        top += count;
+        if (top > scratch.length) {
+            long[] larger = new long[Math.max(scratch.length * 2, top)];
+            System.arraycopy(scratch, 0, larger, 0, scratch.length);
+            scratch = larger;
         }
-        return evaluateOperator(operator, results);
     }
 
     /**
-     * Evaluates an operator on a set of values.
+     * Evaluates an operator on a range of the scratch stack.
      *
      * @param operator    name of the operator
-     * @param operands    value array to operate on
-     * @return  the value returned by applying {@code operator} on
-     * {@code operands}
+     * @param start       index of the first operand
+     * @param end         index after the last operand
+     * @return  the packed value returned by applying {@code operator} on the
+     * operands
      */
-    private Value evaluateOperator(String operator, Value[] operands) {
+    private long evaluateOperator(String operator, int start, int end) {
         if (operator.compareTo("if") == 0) {
-            return evalIf(operands);
+            return evalIf(start, end);
         } else if (operator.compareTo("+") == 0) {
-            return evalAdd(operands);
+            return evalAdd(start, end);
         } else if (operator.compareTo("-") == 0) {
-            return evalSub(operands);
+            return evalSub(start, end);
         } else if (operator.compareTo("*") == 0) {
-            return evalMult(operands);
+            return evalMult(start, end);
         } else if (operator.compareTo("/") == 0) {
-            return evalDivSafe(operands);
+            return evalDivSafe(start, end);
         } else if (operator.compareTo("^") == 0) {
-            return evalExp(operands);
+            return evalExp(start, end);
         } else if (operator.compareTo("<") == 0) {
-            return evalLess(operands);
+            return evalLess(start, end);
         } else if (operator.compareTo("<=") == 0) {
-            return evalLessOrEqual(operands);
+            return evalLessOrEqual(start, end);
         } else if (operator.compareTo(">") == 0) {
-            return evalGreater(operands);
+            return evalGreater(start, end);
         } else if (operator.compareTo(">=") == 0) {
-            return evalGreaterOrEqual(operands);
+            return evalGreaterOrEqual(start, end);
         } else if (operator.compareTo("==") == 0) {
-            return evalEqual(operands);
+            return evalEqual(start, end);
         } else if (operator.compareTo("!=") == 0) {
-            return evalNotEqual(operands);
+            return evalNotEqual(start, end);
         }
-        return Value.NULL_VALUE;
+        return Value.PACKED_NULL;
     }
 
     /**
-     * Checks if all the values in an array are in strictly decreasing order.
+     * Checks if all the values in a range are in strictly increasing order.
      *
-     * @param operands    value array
-     * @return  true if the values are strictly decreasing, false otherwise
+     * @param start    index of the first value
+     * @param end      index after the last value
+     * @return  true if the values are strictly increasing, false otherwise
      */
-    private Value evalLess(Value[] operands) {
-        for (int i = 0; i < operands.length - 1; i++) {
-            if (operands[i].addend() >= operands[i + 1].addend()) {
-                return Value.FALSE_VALUE;
+    private long evalLess(int start, int end) {
+        for (int i = start; i < end - 1; i++) {
+            if (Value.addend(scratch[i]) >= Value.addend(scratch[i + 1])) {
+                return Value.PACKED_FALSE;
             }
         }
-        return Value.TRUE_VALUE;
+        return Value.PACKED_TRUE;
     }
 
     /**
-     * Checks if all the values in an array are in non-increasing order.
+     * Checks if all the values in a range are in non-decreasing order.
      *
-     * @param operands    value array
-     * @return  true if the values are non-increasing, false otherwise
+     * @param start    index of the first value
+     * @param end      index after the last value
+     * @return  true if the values are non-decreasing, false otherwise
      */
-    private Value evalLessOrEqual(Value[] operands) {
-        for (int i = 0; i < operands.length - 1; i++) {
-            if (operands[i].addend() > operands[i + 1].addend()) {
-                return Value.FALSE_VALUE;
+    private long evalLessOrEqual(int start, int end) {
+        for (int i = start; i < end - 1; i++) {
+            if (Value.addend(scratch[i]) > Value.addend(scratch[i + 1])) {
+                return Value.PACKED_FALSE;
             }
         }
-        return Value.TRUE_VALUE;
+        return Value.PACKED_TRUE;
     }
 
     /**
-     * Checks if all the values in an array are in strictly increasing order.
+     * Checks if all the values in a range are in strictly decreasing order.
      *
-     * @param operands    value array
-     * @return  true if the values are strictly increasing, false otherwise
+     * @param start    index of the first value
+     * @param end      index after the last value
+     * @return  true if the values are strictly decreasing, false otherwise
      */
-    private Value evalGreater(Value[] operands) {
-        for (int i = 0; i < operands.length - 1; i++) {
-            if (operands[i].addend() <= operands[i + 1].addend()) {
-                return Value.FALSE_VALUE;
+    private long evalGreater(int start, int end) {
+        for (int i = start; i < end - 1; i++) {
+            if (Value.addend(scratch[i]) <= Value.addend(scratch[i + 1])) {
+                return Value.PACKED_FALSE;
             }
         }
-        return Value.TRUE_VALUE;
+        return Value.PACKED_TRUE;
     }
 
     /**
-     * Checks if all the values in an array are in non-decreasing order.
+     * Checks if all the values in a range are in non-increasing order.
      *
-     * @param operands    value array
-     * @return  true if the values are non-decreasing, false otherwise
+     * @param start    index of the first value
+     * @param end      index after the last value
+     * @return  true if the values are non-increasing, false otherwise
      */
-    private Value evalGreaterOrEqual(Value[] operands) {
-        for (int i = 0; i < operands.length - 1; i++) {
-            if (operands[i].addend() < operands[i + 1].addend()) {
-                return Value.FALSE_VALUE;
+    private long evalGreaterOrEqual(int start, int end) {
+        for (int i = start; i < end - 1; i++) {
+            if (Value.addend(scratch[i]) < Value.addend(scratch[i + 1])) {
+                return Value.PACKED_FALSE;
             }
         }
-        return Value.TRUE_VALUE;
+        return Value.PACKED_TRUE;
     }
 
     /**
-     * Check an array for value equality.
+     * Check a range for value equality.  Packed values are equal exactly when
+     * the Values they represent are.
      *
-     * @param operands    value array
+     * @param start    index of the first value
+     * @param end      index after the last value
      * @return  true if all the values are equal, false otherwise
      */
-    private Value evalEqual(Value[] operands) {
-        for (int i = 0; i < operands.length - 1; i++) {
-            if (!operands[i].equals(operands[i+1]))
-                return Value.FALSE_VALUE;
+    private long evalEqual(int start, int end) {
+        for (int i = start; i < end - 1; i++) {
+            if (scratch[i] != scratch[i + 1])
+                return Value.PACKED_FALSE;
         }
-        return Value.TRUE_VALUE;
+        return Value.PACKED_TRUE;
     }
 
     /**
-     * Check an array for value inequality.
+     * Check a range for value inequality.
      *
-     * @param operands    value array
+     * @param start    index of the first value
+     * @param end      index after the last value
      * @return  true if all the values are different, false otherwise
      */
-    private Value evalNotEqual(Value[] operands) {
-        for (int i = 0; i < operands.length - 1; i++) {
-            for (int j = i + 1; j < operands.length; j++) {
-                if (operands[i].equals(operands[j])) {
-                    return Value.FALSE_VALUE;
+    private long evalNotEqual(int start, int end) {
+        for (int i = start; i < end - 1; i++) {
+            for (int j = i + 1; j < end; j++) {
+                if (scratch[i] == scratch[j]) {
+                    return Value.PACKED_FALSE;
                 }
             }
         }
-        return Value.TRUE_VALUE;
+        return Value.PACKED_TRUE;
     }
 
     /**
      * Evaluates an if construct.
      *
-     * @param operands    the boolean, true branch, and optional false branch
+     * @param start    index of the boolean, followed by the true branch and
+     *                 optional false branch
+     * @param end      index after the last value
      * @return  If the value of the first argument is true, the value of the
      * second argument is returned.  Otherwise, the value of the third argument
-     * is returned (or Value.NULL_VALUE if no third argument was provided).
+     * is returned.  A missing branch gives null.
      */
-    private Value evalIf(Value[] operands) {
-        if (operands[0].bool())
-            return operands[1];
+    private long evalIf(int start, int end) {
+        if (Value.bool(scratch[start]))
+            return (end - start > 1) ? scratch[start + 1] : Value.PACKED_NULL;
         else
-            return (operands.length > 2) ? operands[2] : Value.NULL_VALUE;
+            return (end - start > 2) ? scratch[start + 2] : Value.PACKED_NULL;
     }
 
     /**
      * Sums the arguments.
      *
-     * @param operands    Te values to sum
-     * @return  the sum of operands
+     * @param start    index of the first value
+     * @param end      index after the last value
+     * @return  the sum of the values
      */
-    private Value evalAdd(Value[] operands) {
+    private long evalAdd(int start, int end) {
         int accum = 0;
-        for (Value value : operands) {
-            accum += value.addend();
+        for (int i = start; i < end; i++) {
+            accum += Value.addend(scratch[i]);
         }
-        return Value.newInt(accum);
+        return Value.packInt(accum);
     }
 
     /**
-     * Sequentially subtracts the values in an array. (Left associative)
+     * Sequentially subtracts the values in a range. (Left associative)
      *
-     * @param operands    the value array
+     * @param start    index of the first value
+     * @param end      index after the last value
      * @return  the first value less the second, less the third, etc.
      */
-    private Value evalSub(Value[] operands) {
-        int accum = operands[0].addend(); // + has 0 as identity
-        for (int i = 1; i < operands.length; i++)
-            accum -= operands[i].addend();
-        return Value.newInt(accum);
+    private long evalSub(int start, int end) {
+        int accum = Value.addend(scratch[start]); // + has 0 as identity
+        for (int i = start + 1; i < end; i++)
+            accum -= Value.addend(scratch[i]);
+        return Value.packInt(accum);
     }
 
     /**
-     * Multiplies an array of values together.
+     * Multiplies a range of values together.
      *
-     * @param operands    the values to multiply together
-     * @return  the product of {@code operands}
+     * @param start    index of the first value
+     * @param end      index after the last value
+     * @return  the product of the values
      */
-    private Value evalMult(Value[] operands) {
+    private long evalMult(int start, int end) {
         int accum = 1;
-        for (Value value : operands) {
-            accum *= value.multiplicand();
+        for (int i = start; i < end; i++) {
+            accum *= Value.multiplicand(scratch[i]);
         }
-        return Value.newInt(accum);
+        return Value.packInt(accum);
     }
 
     /**
-     * Sequentially divides an array of values.  (Left associative)
+     * Sequentially divides a range of values.  (Left associative)
      *
-     * @param operands    the values to divide
+     * @param start    index of the first value
+     * @param end      index after the last value
      * @return  the first value divided by the second, divided by the third, etc.
      */
-    private Value evalDivSafe(Value[] operands) {
-        int accum = operands[0].multiplicand();
-        for (int i = 1; i < operands.length; i++) {
-            int divisor = operands[i].multiplicand();
+    private long evalDivSafe(int start, int end) {
+        int accum = Value.multiplicand(scratch[start]);
+        for (int i = start + 1; i < end; i++) {
+            int divisor = Value.multiplicand(scratch[i]);
             if (divisor != 0)
                 accum /= divisor;
             else
                 accum = 0;
         }
-        return Value.newInt(accum);
+        return Value.packInt(accum);
     }
 
     /**
      * Exponentiates a series of values. (Left associative)
+     * <p>
+     * Evolved programs depend on the established behavior: the result is the
+     * first value, or 1 if any later value is 0.
      *
-     * @param operands    the value array
-     * @return  the first to the power of the second, to the power of the third,
-     * etc.
-     */
-    private Value evalExp(Value[] operands) {
-        int accum = operands[0].addend(); // + has 0 as identity
-        for (int i = 1; i < operands.length; i++) {
-            int divisor = operands[i].multiplicand();
-            if (divisor != 0)
-                Math.pow(accum, divisor);
-            else
+     * @param start    index of the first value
+     * @param end      index after the last value
+     * @return  the first value, or 1 if a later value is 0
+     */
+    private long evalExp(int start, int end) {
+        int accum = Value.addend(scratch[start]); // + has 0 as identity
+        for (int i = start + 1; i < end; i++) {
+            if (Value.multiplicand(scratch[i]) == 0)
                 accum = 1;
         }
-        return Value.newInt(accum);
+        return Value.packInt(accum);
     }
 
     /**
      * @return  the fitness of the program, unless the program caused an
-     * exception to be raised.  In that case, return 0.
+     * exception to be raised or exceeded its budget.  In that case, return 0.
      */
     public int getFitness() {
-        if (programRaised)
+        if (programRaised || overBudget)
             return 0;
         return simulator.getFitness();
     }
@@ -355,6 +762,6 @@ public class Interpreter {
      * @return  whether execution can continue
      */
     public boolean canContinue() {
-        return simulator.canContinue() && ! programRaised;
+        return simulator.canContinue() && ! programRaised && ! overBudget;
     }
 }
@@ -0,0 +1,188 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+import cs412.dinghyprop.simulator.Symbols;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes the parts of a program that cannot affect a simulation.
+ * <p>
+ * The value of a program's root is discarded after every pass, so only the
+ * simulator calls a program makes matter.  A subtree whose value is discarded
+ * can be replaced by the calls in it, in order, unless its value decides
+ * which of its operands are evaluated, as it does for lazy {@code if}s and
+ * comparisons.  Constants and references to the position, goal and heading
+ * variables can neither raise nor change the simulation, so where their
+ * values are discarded they are removed altogether.  Distance sensors can
+ * end a simulation and unknown symbols raise, so they are always kept.
+ * <p>
+ * The stripped program makes the same simulator calls in the same order as
+ * the original on every pass in every simulator, so it reaches the same
+ * states and fitness; only the value of its root differs.  The calls kept are
+ * evaluated as the operands of a {@code +}, which evaluates all its operands
+ * under either strategy.
+ * <p>
+ * The tree passed in is not modified.
+ */
+final class IntronStripper {
+    /**
+     * The operator used to evaluate a sequence of operands
+     */
+    private static final String SEQUENCE = "+";
+
+    /**
+     * Whether {@code if} and comparisons short-circuit
+     */
+    private final boolean lazy;
+
+    /**
+     * @param lazy    whether {@code if} and comparisons short-circuit
+     */
+    private IntronStripper(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Strips a program tree.
+     *
+     * @param program     the program's root
+     * @param strategy    the strategy the program will be evaluated with
+     * @return  a program tree that makes the same simulator calls
+     */
+    static Expression strip(Expression program, EvaluationStrategy strategy) {
+        IntronStripper stripper = new IntronStripper(strategy == EvaluationStrategy.LAZY);
+        List<Object> effects = new ArrayList<Object>();
+        stripper.collectEffects(program, effects);
+        if (effects.size() == 1 && effects.get(0) instanceof Expression)
+            return (Expression) effects.get(0);
+        if (effects.isEmpty())
+            effects.add(Value.newInt(0));
+        return new Expression(SEQUENCE, effects.toArray());
+    }
+
+    /**
+     * Appends the operands that make the simulator calls of an operand whose
+     * value is discarded.
+     *
+     * @param operand    an Expression, Value, or symbol String
+     * @param effects    where to append the operands
+     */
+    private void collectEffects(Object operand, List<Object> effects) {
+        if (operand instanceof String) {
+            if (!isPure((String) operand))
+                effects.add(operand);
+            return;
+        }
+        if (!(operand instanceof Expression))
+            return;
+
+        Expression expr = (Expression) operand;
+        String operator = expr.getOperator();
+        int operandCount = expr.getOperandCount();
+        if (operandCount == 0) {
+            effects.add(expr);
+        } else if (lazy && operator.equals("if")) {
+            collectIfEffects(expr, effects);
+        } else if (lazy && isComparison(operator)) {
+            collectComparisonEffects(expr, effects);
+        } else {
+            for (int i = 0; i < operandCount; i++)
+                collectEffects(expr.getOperand(i), effects);
+        }
+    }
+
+    /**
+     * Appends the operands that make the simulator calls of a lazy if
+     * construct whose value is discarded.  The condition's value is only
+     * needed if a branch makes simulator calls.
+     *
+     * @param expr       the if node
+     * @param effects    where to append the operands
+     */
+    private void collectIfEffects(Expression expr, List<Object> effects) {
+        Object[] branches = new Object[2];
+        boolean branchEffects = false;
+        for (int i = 1; i < 3 && i < expr.getOperandCount(); i++) {
+            branches[i - 1] = sequence(expr.getOperand(i));
+            branchEffects |= (branches[i - 1] != null);
+        }
+        if (!branchEffects) {
+            collectEffects(expr.getOperand(0), effects);
+            return;
+        }
+
+        List<Object> operands = new ArrayList<Object>(3);
+        operands.add(expr.getOperand(0));
+        operands.add((branches[0] != null) ? branches[0] : Value.newInt(0));
+        if (branches[1] != null)
+            operands.add(branches[1]);
+        effects.add(new Expression("if", operands.toArray()));
+    }
+
+    /**
+     * Appends the operands that make the simulator calls of a lazy comparison
+     * whose value is discarded.  The first two operands are always evaluated;
+     * the values of the operands are only needed if a later operand makes
+     * simulator calls.
+     *
+     * @param expr       the comparison node
+     * @param effects    where to append the operands
+     */
+    private void collectComparisonEffects(Expression expr, List<Object> effects) {
+        int operandCount = expr.getOperandCount();
+        for (int i = 2; i < operandCount; i++) {
+            if (sequence(expr.getOperand(i)) != null) {
+                effects.add(expr);
+                return;
+            }
+        }
+        for (int i = 0; i < operandCount; i++)
+            collectEffects(expr.getOperand(i), effects);
+    }
+
+    /**
+     * Strips an operand whose value is discarded down to a single operand.
+     *
+     * @param operand    an Expression, Value, or symbol String
+     * @return  an operand making the same simulator calls, or null if it
+     * makes none
+     */
+    private Object sequence(Object operand) {
+        List<Object> effects = new ArrayList<Object>();
+        collectEffects(operand, effects);
+        if (effects.isEmpty())
+            return null;
+        if (effects.size() == 1)
+            return effects.get(0);
+        return new Expression(SEQUENCE, effects.toArray());
+    }
+
+    /**
+     * @param variable    a variable name
+     * @return  whether referencing the variable can neither raise nor change
+     * the simulation
+     */
+    private static boolean isPure(String variable) {
+        int id = Symbols.variableId(variable);
+        return id == Symbols.POSITION_X || id == Symbols.POSITION_Y
+                || id == Symbols.GOAL_POSITION_X || id == Symbols.GOAL_POSITION_Y
+                || id == Symbols.HEADING;
+    }
+
+    /**
+     * @param operator    an operator name
+     * @return  whether the operator is a comparison
+     */
+    private static boolean isComparison(String operator) {
+        return operator.equals("<") || operator.equals("<=") || operator.equals(">")
+                || operator.equals(">=") || operator.equals("==") || operator.equals("!=");
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.simulator.Symbols;
+
+/**
+ * Single-pass lexical analyzer for S-expressions.
+ * <p>
+ * Tokens are read directly from a slice of a CharSequence.  Whitespace is
+ * any character up to ' '; a word is a run of '!', the characters '*'
+ * through 'z', and characters above 255; any other character is a token by
+ * itself.  Words that are decimal integers in int range are numbers, and the
+ * rest are symbols.  Operator and simulator names are returned as shared
+ * String constants, so only other symbols are copied out of the input.
+ */
+final class Lexer {
+    /** End of input */
+    static final int EOF = -1;
+    /** A word that is not a number; see {@link #symbol()} */
+    static final int SYMBOL = -2;
+    /** A word that is a number; see {@link #number()} */
+    static final int NUMBER = -3;
+
+    /**
+     * Symbols returned without copying
+     */
+    private static final String[] KNOWN_SYMBOLS;
+
+    static {
+        String[] operators = {
+                "+", "-", "*", "/", "^", "<", "<=", ">", ">=", "==", "!=", "if"
+        };
+        int variables = 0;
+        while (Symbols.variableName(variables) != null)
+            variables++;
+        int functions = 0;
+        while (Symbols.functionName(functions) != null)
+            functions++;
+
+        KNOWN_SYMBOLS = new String[operators.length + variables + functions];
+        System.arraycopy(operators, 0, KNOWN_SYMBOLS, 0, operators.length);
+        for (int i = 0; i < variables; i++)
+            KNOWN_SYMBOLS[operators.length + i] = Symbols.variableName(i);
+        for (int i = 0; i < functions; i++)
+            KNOWN_SYMBOLS[operators.length + variables + i] = Symbols.functionName(i);
+    }
+
+    /**
+     * The input
+     */
+    private final CharSequence text;
+
+    /**
+     * The index after the last character of the input
+     */
+    private final int end;
+
+    /**
+     * The index of the next unread character
+     */
+    private int position;
+
+    /**
+     * The current token's type: EOF, SYMBOL, NUMBER, or the character itself
+     */
+    private int type = EOF;
+
+    /**
+     * The current word's first character index
+     */
+    private int wordStart = 0;
+
+    /**
+     * The current number's value
+     */
+    private int number = 0;
+
+    /**
+     * @param text     the input
+     * @param start    the index of the input's first character
+     * @param end      the index after the input's last character
+     */
+    Lexer(CharSequence text, int start, int end) {
+        this.text = text;
+        this.end = end;
+        position = start;
+    }
+
+    /**
+     * Advances to the next token.
+     *
+     * @return  the new token's type
+     */
+    int next() {
+        while (position < end && text.charAt(position) <= ' ')
+            position++;
+        if (position == end)
+            return type = EOF;
+
+        char c = text.charAt(position);
+        if (!isWordChar(c)) {
+            position++;
+            return type = c;
+        }
+
+        wordStart = position;
+        while (position < end && isWordChar(text.charAt(position)))
+            position++;
+        return type = scanNumber() ? NUMBER : SYMBOL;
+    }
+
+    /**
+     * @return  the current token's type
+     */
+    int type() {
+        return type;
+    }
+
+    /**
+     * @return  the current word's text
+     */
+    String symbol() {
+        int length = position - wordStart;
+        for (String known : KNOWN_SYMBOLS) {
+            if (known.length() == length && matches(known))
+                return known;
+        }
+        return text.subSequence(wordStart, position).toString();
+    }
+
+    /**
+     * @return  the current NUMBER token's value
+     */
+    int number() {
+        return number;
+    }
+
+    /**
+     * @return  a description of the current token for error messages
+     */
+    String describe() {
+        switch (type) {
+            case EOF:
+                return "end of input";
+            case SYMBOL:
+            case NUMBER:
+                return '"' + text.subSequence(wordStart, position).toString() + '"';
+            default:
+                return "'" + (char) type + "'";
+        }
+    }
+
+    /**
+     * Parses the current word as an optionally signed decimal integer, as
+     * {@link Integer#parseInt(String)} would, but without exceptions.
+     *
+     * @return  whether the word is a number in int range
+     */
+    private boolean scanNumber() {
+        int i = wordStart;
+        boolean negative = false;
+        char first = text.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = (first == '-');
+            i++;
+            if (i == position)
+                return false;
+        }
+
+        long limit = negative ? 1L + Integer.MAX_VALUE : Integer.MAX_VALUE;
+        long value = 0;
+        for (; i < position; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9')
+                return false;
+            value = value * 10 + (c - '0');
+            if (value > limit)
+                return false;
+        }
+        number = (int) (negative ? -value : value);
+        return true;
+    }
+
+    /**
+     * @param symbol    a known symbol of the current word's length
+     * @return  whether the current word is the symbol
+     */
+    private boolean matches(String symbol) {
+        for (int i = 0; i < symbol.length(); i++) {
+            if (text.charAt(wordStart + i) != symbol.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param c    a character
+     * @return  whether the character can be part of a word
+     */
+    private static boolean isWordChar(char c) {
+        return c == '!' || (c >= '*' && c <= 'z') || c > 255;
+    }
+}
@@ -0,0 +1,816 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.Profile;
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+import cs412.dinghyprop.simulator.ExecutionException;
+import cs412.dinghyprop.simulator.ISimulator;
+import cs412.dinghyprop.simulator.Symbols;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs one program in many simulators at once.
+ * <p>
+ * Where an {@link Interpreter} walks the AST once per simulator per tick, a
+ * LockstepInterpreter walks it once per tick for all its simulators, its
+ * lanes.  Each node computes one value per lane, so the cost of dispatching
+ * on the node is shared by every lane.  A bit mask tracks the lanes a node is
+ * evaluated for: lanes drop out of it when their simulator cannot continue,
+ * when the program raises an exception in them, and, under
+ * {@link EvaluationStrategy#LAZY}, for the {@code if} branches and comparison
+ * operands they do not evaluate.
+ * <p>
+ * Each simulator sees exactly the calls it would see from an Interpreter, in
+ * the same order, and {@link #run(int)} skips cycles in each lane as
+ * {@link Interpreter#run(int)} does, so the lanes end in the same states with
+ * the same fitness.  The AST is always walked, whatever the program's
+ * {@link Interpreter.MODE}, but it is first flattened into parallel arrays of
+ * int-coded nodes, with operators, variables and functions resolved to codes
+ * and {@link Symbols} IDs once, so that no node visit compares names.
+ * <p>
+ * A node-visit budget is shared by all lanes; if it is exceeded, no lane
+ * continues and the fitness of every lane is 0.
+ */
+public final class LockstepInterpreter {
+    private static Logger log = Logger.getLogger("LockstepInterpreter");
+
+    /**
+     * The most simulators one LockstepInterpreter can run
+     */
+    public static final int MAX_LANES = 64;
+
+    // operator codes
+    private static final int ADD = 0;
+    private static final int SUB = 1;
+    private static final int MULT = 2;
+    private static final int DIV = 3;
+    private static final int EXP = 4;
+    private static final int LESS = 5;
+    private static final int LESS_OR_EQUAL = 6;
+    private static final int GREATER = 7;
+    private static final int GREATER_OR_EQUAL = 8;
+    private static final int EQUAL = 9;
+    private static final int NOT_EQUAL = 10;
+    private static final int IF = 11;
+    private static final int UNKNOWN = 12;
+
+    // codes of the nodes that are not operators
+    private static final int ACTION = 13;
+    private static final int SENSOR = 14;
+    private static final int CONSTANT = 15;
+
+    /**
+     * Operator names, indexed by code
+     */
+    private static final String[] OPERATORS = {
+            "+", "-", "*", "/", "^", "<", "<=", ">", ">=", "==", "!=", "if"
+    };
+
+    /**
+     * The prepared program
+     */
+    private final CompiledProgram compiledProgram;
+
+    /**
+     * AST
+     */
+    private final Expression program;
+
+    /**
+     * The code of each node of the flattened AST, in pre-order: an operator
+     * code, ACTION, SENSOR or CONSTANT
+     */
+    private final int[] nodeCode;
+
+    /**
+     * The operand count of each operator node, the function ID of each
+     * ACTION node, and the variable ID of each SENSOR node
+     */
+    private final int[] nodeArg;
+
+    /**
+     * The number of nodes in the subtree rooted at each node; a node's first
+     * operand follows it, and each operand is followed by the next
+     */
+    private final int[] nodeSize;
+
+    /**
+     * The packed value of each CONSTANT node
+     */
+    private final long[] nodeValue;
+
+    /**
+     * The operator, function or variable name of each node, for unknown
+     * symbols and profiling
+     */
+    private final String[] nodeName;
+
+    /**
+     * Whether {@code if} and comparisons short-circuit
+     */
+    private final boolean lazy;
+
+    /**
+     * The number of nodes charged to each lane for each pass
+     */
+    private final long passCost;
+
+    /**
+     * The simulators, one per lane
+     */
+    private ISimulator[] simulators = new ISimulator[0];
+
+    /**
+     * The number of lanes
+     */
+    private int lanes = 0;
+
+    /**
+     * Operand values; slot s holds lane l's value at {@code s * lanes + l}
+     */
+    private long[] scratch = new long[0];
+
+    /**
+     * The first free slot of {@code scratch}
+     */
+    private int top = 0;
+
+    /**
+     * The simulator states seen at the start of each tick of run(); lane l's
+     * states start at {@code l * iterations}
+     */
+    private long[] states = new long[0];
+
+    /**
+     * Lanes in which the program raised an exception
+     */
+    private long raised = 0;
+
+    /**
+     * The number of nodes that may be visited since the last reset
+     */
+    private long budget = Interpreter.UNLIMITED;
+
+    /**
+     * The number of nodes visited since the last reset
+     */
+    private long cost = 0;
+
+    /**
+     * Whether a tick was refused for exceeding the budget
+     */
+    private boolean overBudget = false;
+
+    /**
+     * Where evaluation work is counted, or null; only used if
+     * {@link Profile#ENABLED}
+     */
+    private Profile profile = null;
+
+    /**
+     * Creates a lockstep interpreter with no lanes; see
+     * {@link #reset(ISimulator[])}.
+     *
+     * @param program    the program to execute
+     */
+    public LockstepInterpreter(CompiledProgram program) {
+        compiledProgram = program;
+        this.program = program.getTree();
+        lazy = (program.getStrategy() == EvaluationStrategy.LAZY);
+        passCost = this.program.getSize();
+
+        int count = subtreeSize(this.program);
+        nodeCode = new int[count];
+        nodeArg = new int[count];
+        nodeSize = new int[count];
+        nodeValue = new long[count];
+        nodeName = new String[count];
+        flatten(this.program, 0);
+    }
+
+    /**
+     * @param operand    an Expression, Value, or symbol String
+     * @return  the number of nodes in the operand's subtree
+     */
+    private static int subtreeSize(Object operand) {
+        if (!(operand instanceof Expression))
+            return 1;
+        Expression expr = (Expression) operand;
+        int count = 1;
+        for (int i = 0; i < expr.getOperandCount(); i++)
+            count += subtreeSize(expr.getOperand(i));
+        return count;
+    }
+
+    /**
+     * Flattens an operand's subtree into the node arrays, in pre-order.
+     *
+     * @param operand    an Expression, Value, or symbol String
+     * @param node       the index of the operand's node
+     * @return  the index after the operand's subtree
+     */
+    private int flatten(Object operand, int node) {
+        int next = node + 1;
+        if (operand instanceof Expression) {
+            Expression expr = (Expression) operand;
+            String operator = expr.getOperator();
+            int operandCount = expr.getOperandCount();
+            nodeName[node] = operator;
+            if (operandCount == 0) {
+                nodeCode[node] = ACTION;
+                nodeArg[node] = Symbols.functionId(operator);
+            } else {
+                nodeCode[node] = operatorCode(operator);
+                nodeArg[node] = operandCount;
+                for (int i = 0; i < operandCount; i++)
+                    next = flatten(expr.getOperand(i), next);
+            }
+        } else if (operand instanceof String) {
+            nodeCode[node] = SENSOR;
+            nodeArg[node] = Symbols.variableId((String) operand);
+            nodeName[node] = (String) operand;
+        } else {
+            nodeCode[node] = CONSTANT;
+            nodeValue[node] = (operand instanceof Value)
+                    ? Value.pack((Value) operand) : Value.PACKED_NULL;
+        }
+        nodeSize[node] = next - node;
+        return next;
+    }
+
+    /**
+     * Binds this interpreter to a new set of simulators, forgetting any
+     * exceptions the program raised and the cost it incurred.  The budget is
+     * kept.
+     *
+     * @param simulators    the simulators, one per lane; at most
+     *                      {@link #MAX_LANES}
+     */
+    public void reset(ISimulator[] simulators) {
+        if (simulators.length > MAX_LANES)
+            throw new IllegalArgumentException("Too many simulators: " + simulators.length);
+        if (simulators.length != lanes) {
+            lanes = simulators.length;
+            scratch = new long[16 * lanes];
+        }
+        this.simulators = simulators;
+        raised = 0;
+        cost = 0;
+        overBudget = false;
+    }
+
+    /**
+     * Sets the number of nodes that may be visited, summed over all lanes,
+     * until the next reset.
+     *
+     * @param budget    the node-visit budget, or {@link Interpreter#UNLIMITED}
+     */
+    public void setBudget(long budget) {
+        if (budget < 0)
+            throw new IllegalArgumentException("Negative budget: " + budget);
+        this.budget = budget;
+    }
+
+    /**
+     * @return  the number of nodes visited, summed over all lanes, since the
+     * last reset
+     */
+    public long getCost() {
+        return cost;
+    }
+
+    /**
+     * @return  whether evaluation was stopped for exceeding the budget since
+     * the last reset
+     */
+    public boolean isOverBudget() {
+        return overBudget;
+    }
+
+    /**
+     * Sets where evaluation work is counted while profiling is enabled.  The
+     * profile is kept across resets.
+     *
+     * @param profile    the profile to record into, or null
+     */
+    public void setProfile(Profile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * @return  the program this interpreter runs
+     */
+    public CompiledProgram getProgram() {
+        return compiledProgram;
+    }
+
+    /**
+     * Evaluates the program in every lane for a given count of iterations.
+     * A lane stops when its simulator indicates that it cannot continue.
+     *
+     * @param iterations    the number of times to evaluate the program
+     */
+    public void run(int iterations) {
+        if (states.length < lanes * iterations)
+            states = new long[lanes * iterations];
+        int[] remaining = new int[lanes];
+        int[] seen = new int[lanes];
+        long detecting = 0;
+        for (int lane = 0; lane < lanes; lane++) {
+            remaining[lane] = iterations;
+            detecting |= 1L << lane;
+        }
+
+        while (true) {
+            long active = 0;
+            for (int lane = 0; lane < lanes; lane++) {
+                if (remaining[lane] == 0 || !canContinue(lane))
+                    continue;
+                long bit = 1L << lane;
+                if ((detecting & bit) != 0) {
+                    int base = lane * iterations;
+                    long state = simulators[lane].getState();
+                    int cycle = cycleLength(state, base, seen[lane]);
+                    if (cycle > 0) {
+                        remaining[lane] %= cycle;
+                        detecting &= ~bit;
+                        if (remaining[lane] == 0)
+                            continue;
+                    } else {
+                        states[base + seen[lane]++] = state;
+                    }
+                }
+                active |= bit;
+            }
+            if (active == 0)
+                return;
+
+            long tickCost = Long.bitCount(active) * passCost;
+            if (tickCost > budget - cost) {
+                overBudget = true;
+                return;
+            }
+            cost += tickCost;
+            evaluate(active);
+            for (long m = active; m != 0; m &= m - 1)
+                remaining[Long.numberOfTrailingZeros(m)]--;
+        }
+    }
+
+    /**
+     * @param state    a lane's current state
+     * @param base     the index of the lane's first recorded state
+     * @param seen     the number of states recorded for the lane
+     * @return  the number of iterations since the lane was last in the state,
+     * or 0 if it has not been in it
+     */
+    private int cycleLength(long state, int base, int seen) {
+        for (int i = seen - 1; i >= 0; i--) {
+            if (states[base + i] == state)
+                return seen - i;
+        }
+        return 0;
+    }
+
+    /**
+     * Evaluates the program once in a set of lanes, without checking whether
+     * they can continue.
+     *
+     * @param mask    the lanes to evaluate the program in
+     * @return  the lanes in which the program did not raise an exception
+     */
+    long evaluate(long mask) {
+        if (Profile.ENABLED && profile != null) {
+            for (long m = mask; m != 0; m &= m - 1)
+                profile.countTick();
+        }
+        top = 0;
+        reserve(1);
+        return evaluateOperand(0, mask, 0);
+    }
+
+    /**
+     * @param lane    a lane
+     * @return  the packed value of the program's root in the lane after the
+     * last evaluation
+     */
+    long result(int lane) {
+        return scratch[lane];
+    }
+
+    /**
+     * Evaluates an operand in a set of lanes.
+     *
+     * @param node    the operand's node
+     * @param mask    the lanes to evaluate the operand in
+     * @param dest    the slot to store the lanes' values in
+     * @return  the lanes in which no exception was raised
+     */
+    private long evaluateOperand(int node, long mask, int dest) {
+        int code = nodeCode[node];
+        if (code != SENSOR && code != CONSTANT)
+            return evaluateExpression(node, mask, dest);
+        if (Profile.ENABLED && profile != null)
+            countNodes(mask);
+
+        int offset = dest * lanes;
+        if (code == SENSOR) {
+            int id = nodeArg[node];
+            for (long m = mask; m != 0; m &= m - 1) {
+                int lane = Long.numberOfTrailingZeros(m);
+                if (Profile.ENABLED && profile != null)
+                    profile.countSensor(id);
+                try {
+                    int value = (id != Symbols.UNKNOWN)
+                            ? simulators[lane].reference(id)
+                            : simulators[lane].reference(nodeName[node]);
+                    scratch[offset + lane] = Value.packInt(value);
+                } catch (ExecutionException e) {
+                    mask = raise(mask, lane, e);
+                }
+            }
+            return mask;
+        }
+
+        long value = nodeValue[node];
+        for (long m = mask; m != 0; m &= m - 1)
+            scratch[offset + Long.numberOfTrailingZeros(m)] = value;
+        return mask;
+    }
+
+    /**
+     * Evaluates an Expression tree in a set of lanes.  Operand values are
+     * kept in the slots from {@code top} upwards while the node is evaluated.
+     *
+     * @param node    the node of the Expression tree's root
+     * @param mask    the lanes to evaluate the tree in
+     * @param dest    the slot to store the lanes' values in
+     * @return  the lanes in which no exception was raised
+     */
+    private long evaluateExpression(int node, long mask, int dest) {
+        int code = nodeCode[node];
+        if (Profile.ENABLED && profile != null) {
+            countNodes(mask);
+            for (long m = mask; m != 0; m &= m - 1) {
+                if (code != ACTION)
+                    profile.countOperator(nodeName[node]);
+                else
+                    profile.countAction(nodeArg[node]);
+            }
+        }
+
+        if (code == ACTION)
+            return invoke(node, mask, dest);
+        if (lazy && code == IF)
+            return evaluateLazyIf(node, mask, dest);
+        if (lazy && code >= LESS && code <= NOT_EQUAL)
+            return evaluateLazyComparison(node, code, mask, dest);
+
+        int operandCount = nodeArg[node];
+        int base = top;
+        reserve(operandCount);
+        int operand = node + 1;
+        for (int i = 0; i < operandCount && mask != 0; i++) {
+            mask = evaluateOperand(operand, mask, base + i);
+            operand += nodeSize[operand];
+        }
+        int offset = dest * lanes;
+        for (long m = mask; m != 0; m &= m - 1) {
+            int lane = Long.numberOfTrailingZeros(m);
+            scratch[offset + lane] = apply(code, base, operandCount, lane);
+        }
+        top = base;
+        return mask;
+    }
+
+    /**
+     * Invokes a function in a set of lanes.
+     *
+     * @param node    the function's ACTION node
+     * @param mask    the lanes to invoke the function in
+     * @param dest    the slot to store the lanes' null values in
+     * @return  the lanes in which no exception was raised
+     */
+    private long invoke(int node, long mask, int dest) {
+        int id = nodeArg[node];
+        int offset = dest * lanes;
+        for (long m = mask; m != 0; m &= m - 1) {
+            int lane = Long.numberOfTrailingZeros(m);
+            try {
+                if (id != Symbols.UNKNOWN)
+                    simulators[lane].invoke(id);
+                else
+                    simulators[lane].invoke(nodeName[node]);
+                scratch[offset + lane] = Value.PACKED_NULL;
+            } catch (ExecutionException e) {
+                mask = raise(mask, lane, e);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Evaluates an if construct's condition and then, in each lane, only the
+     * taken branch.
+     *
+     * @param node    the if node
+     * @param mask    the lanes to evaluate the node in
+     * @param dest    the slot to store the lanes' values in
+     * @return  the lanes in which no exception was raised
+     */
+    private long evaluateLazyIf(int node, long mask, int dest) {
+        int condition = node + 1;
+        mask = evaluateOperand(condition, mask, dest);
+        int offset = dest * lanes;
+        long taken = 0;
+        for (long m = mask; m != 0; m &= m - 1) {
+            int lane = Long.numberOfTrailingZeros(m);
+            if (Value.bool(scratch[offset + lane]))
+                taken |= 1L << lane;
+        }
+        int consequent = condition + nodeSize[condition];
+        int alternative = (nodeArg[node] > 1) ? consequent + nodeSize[consequent] : -1;
+        return evaluateBranch(node, 1, consequent, taken, dest)
+                | evaluateBranch(node, 2, alternative, mask & ~taken, dest);
+    }
+
+    /**
+     * Evaluates a branch of an if construct.
+     *
+     * @param node          the if node
+     * @param branch        the index of the branch
+     * @param branchNode    the branch's node, if the if has the branch
+     * @param mask          the lanes that take the branch
+     * @param dest          the slot to store the lanes' values in
+     * @return  the lanes in which no exception was raised
+     */
+    private long evaluateBranch(int node, int branch, int branchNode, long mask, int dest) {
+        if (mask == 0)
+            return 0;
+        if (branch < nodeArg[node])
+            return evaluateOperand(branchNode, mask, dest);
+        int offset = dest * lanes;
+        for (long m = mask; m != 0; m &= m - 1)
+            scratch[offset + Long.numberOfTrailingZeros(m)] = Value.PACKED_NULL;
+        return mask;
+    }
+
+    /**
+     * Evaluates a comparison's operands in order, each lane stopping once the
+     * values it has seen make the comparison false.
+     *
+     * @param node    the comparison node
+     * @param code    the comparison's operator code
+     * @param mask    the lanes to evaluate the node in
+     * @param dest    the slot to store the lanes' values in
+     * @return  the lanes in which no exception was raised
+     */
+    private long evaluateLazyComparison(int node, int code, long mask, int dest) {
+        int operandCount = nodeArg[node];
+        int base = top;
+        reserve(operandCount);
+        int offset = dest * lanes;
+        long pending = mask;
+        int operand = node + 1;
+        for (int i = 0; i < operandCount && pending != 0; i++) {
+            long survivors = evaluateOperand(operand, pending, base + i);
+            operand += nodeSize[operand];
+            mask &= ~(pending & ~survivors);
+            pending = survivors;
+            if (i == 0)
+                continue;
+            for (long m = pending; m != 0; m &= m - 1) {
+                int lane = Long.numberOfTrailingZeros(m);
+                if (!stepHolds(code, base, i, lane)) {
+                    scratch[offset + lane] = Value.PACKED_FALSE;
+                    pending &= ~(1L << lane);
+                }
+            }
+        }
+        for (long m = pending; m != 0; m &= m - 1)
+            scratch[offset + Long.numberOfTrailingZeros(m)] = Value.PACKED_TRUE;
+        top = base;
+        return mask;
+    }
+
+    /**
+     * Checks a comparison's newest operand against those before it, which
+     * already satisfy the comparison.
+     *
+     * @param code    the comparison's operator code
+     * @param base    the slot of the first operand
+     * @param i       the index of the newest operand
+     * @param lane    the lane to check
+     * @return  whether the operands up to the newest satisfy the comparison
+     */
+    private boolean stepHolds(int code, int base, int i, int lane) {
+        long previous = scratch[(base + i - 1) * lanes + lane];
+        long value = scratch[(base + i) * lanes + lane];
+        switch (code) {
+            case LESS:
+                return Value.addend(previous) < Value.addend(value);
+            case LESS_OR_EQUAL:
+                return Value.addend(previous) <= Value.addend(value);
+            case GREATER:
+                return Value.addend(previous) > Value.addend(value);
+            case GREATER_OR_EQUAL:
+                return Value.addend(previous) >= Value.addend(value);
+            case EQUAL:
+                return previous == value;
+            default:
+                for (int j = 0; j < i; j++) {
+                    if (scratch[(base + j) * lanes + lane] == value)
+                        return false;
+                }
+                return true;
+        }
+    }
+
+    /**
+     * Applies an operator to one lane's operands.
+     *
+     * @param code     the operator code
+     * @param base     the slot of the first operand
+     * @param count    the number of operands
+     * @param lane     the lane
+     * @return  the packed value of applying the operator
+     */
+    private long apply(int code, int base, int count, int lane) {
+        final long[] scratch = this.scratch;
+        final int stride = lanes;
+        final int first = base * stride + lane;
+        final int end = first + count * stride;
+        switch (code) {
+            case ADD: {
+                int accum = 0;
+                for (int i = first; i < end; i += stride)
+                    accum += Value.addend(scratch[i]);
+                return Value.packInt(accum);
+            }
+            case SUB: {
+                int accum = Value.addend(scratch[first]);
+                for (int i = first + stride; i < end; i += stride)
+                    accum -= Value.addend(scratch[i]);
+                return Value.packInt(accum);
+            }
+            case MULT: {
+                int accum = 1;
+                for (int i = first; i < end; i += stride)
+                    accum *= Value.multiplicand(scratch[i]);
+                return Value.packInt(accum);
+            }
+            case DIV: {
+                int accum = Value.multiplicand(scratch[first]);
+                for (int i = first + stride; i < end; i += stride) {
+                    int divisor = Value.multiplicand(scratch[i]);
+                    if (divisor != 0)
+                        accum /= divisor;
+                    else
+                        accum = 0;
+                }
+                return Value.packInt(accum);
+            }
+            case EXP: {
+                int accum = Value.addend(scratch[first]);
+                for (int i = first + stride; i < end; i += stride) {
+                    if (Value.multiplicand(scratch[i]) == 0)
+                        accum = 1;
+                }
+                return Value.packInt(accum);
+            }
+            case LESS:
+                for (int i = first; i < end - stride; i += stride) {
+                    if (Value.addend(scratch[i]) >= Value.addend(scratch[i + stride]))
+                        return Value.PACKED_FALSE;
+                }
+                return Value.PACKED_TRUE;
+            case LESS_OR_EQUAL:
+                for (int i = first; i < end - stride; i += stride) {
+                    if (Value.addend(scratch[i]) > Value.addend(scratch[i + stride]))
+                        return Value.PACKED_FALSE;
+                }
+                return Value.PACKED_TRUE;
+            case GREATER:
+                for (int i = first; i < end - stride; i += stride) {
+                    if (Value.addend(scratch[i]) <= Value.addend(scratch[i + stride]))
+                        return Value.PACKED_FALSE;
+                }
+                return Value.PACKED_TRUE;
+            case GREATER_OR_EQUAL:
+                for (int i = first; i < end - stride; i += stride) {
+                    if (Value.addend(scratch[i]) < Value.addend(scratch[i + stride]))
+                        return Value.PACKED_FALSE;
+                }
+                return Value.PACKED_TRUE;
+            case EQUAL:
+                for (int i = first; i < end - stride; i += stride) {
+                    if (scratch[i] != scratch[i + stride])
+                        return Value.PACKED_FALSE;
+                }
+                return Value.PACKED_TRUE;
+            case NOT_EQUAL:
+                for (int i = first; i < end - stride; i += stride) {
+                    for (int j = i + stride; j < end; j += stride) {
+                        if (scratch[i] == scratch[j])
+                            return Value.PACKED_FALSE;
+                    }
+                }
+                return Value.PACKED_TRUE;
+            case IF:
+                if (Value.bool(scratch[first]))
+                    return (count > 1) ? scratch[first + stride] : Value.PACKED_NULL;
+                return (count > 2) ? scratch[first + 2 * stride] : Value.PACKED_NULL;
+            default:
+                return Value.PACKED_NULL;
+        }
+    }
+
+    /**
+     * Records that the program raised an exception in a lane.
+     *
+     * @param mask    the lanes being evaluated
+     * @param lane    the lane that raised
+     * @param e       the exception
+     * @return  {@code mask} without the lane
+     */
+    private long raise(long mask, int lane, ExecutionException e) {
+        log.log(Level.INFO, "execute throwing:", e);
+        log.info("Exception caused by :" + compiledProgram.getText());
+        raised |= 1L << lane;
+        return mask & ~(1L << lane);
+    }
+
+    /**
+     * Counts a node visit in each of a set of lanes.
+     *
+     * @param mask    the lanes
+     */
+    private void countNodes(long mask) {
+        for (long m = mask; m != 0; m &= m - 1)
+            profile.countNode();
+    }
+
+    /**
+     * Reserves slots, growing the scratch array if necessary.
+     *
+     * @param count    the number of slots to reserve above {@code top}
+     */
+    private void reserve(int count) {
+        top += count;
+        if (top * lanes > scratch.length) {
+            long[] larger = new long[Math.max(scratch.length * 2, top * lanes)];
+            System.arraycopy(scratch, 0, larger, 0, scratch.length);
+            scratch = larger;
+        }
+    }
+
+    /**
+     * Resolves an operator name; only used when flattening the AST.
+     *
+     * @param operator    an operator name
+     * @return  the operator's code, or UNKNOWN
+     */
+    private static int operatorCode(String operator) {
+        for (int i = 0; i < OPERATORS.length; i++) {
+            if (OPERATORS[i].equals(operator))
+                return i;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * @param lane    a lane
+     * @return  the fitness of the program in the lane, or 0 if the program
+     * raised an exception in it or exceeded the budget
+     */
+    public int getFitness(int lane) {
+        if (overBudget || (raised & (1L << lane)) != 0)
+            return 0;
+        return simulators[lane].getFitness();
+    }
+
+    /**
+     * @return  the program's total fitness over all lanes
+     */
+    public int getFitness() {
+        int fitness = 0;
+        for (int lane = 0; lane < lanes; lane++)
+            fitness += getFitness(lane);
+        return fitness;
+    }
+
+    /**
+     * @param lane    a lane
+     * @return  whether execution can continue in the lane
+     */
+    public boolean canContinue(int lane) {
+        return simulators[lane].canContinue() && (raised & (1L << lane)) == 0 && !overBudget;
+    }
+}
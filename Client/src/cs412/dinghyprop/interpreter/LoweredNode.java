@@ -0,0 +1,522 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.simulator.ExecutionException;
+import cs412.dinghyprop.simulator.ISimulator;
+import cs412.dinghyprop.simulator.Symbols;
+
+/**
+ * A node of a lowered program tree.
+ * <p>
+ * Lowering resolves each Expression node's operator once, into a node class
+ * specialised for that operator, and copies its operands into an array.
+ * Evaluating the lowered tree gives the same results and simulator side
+ * effects as {@link Interpreter}'s tree walk under the same
+ * {@link cs412.dinghyprop.genetics.EvaluationStrategy}, without comparing operator
+ * names or copying operand lists on every evaluation.  Variable and function
+ * names are resolved to their {@link Symbols} IDs.  Results are passed in
+ * the packed form of {@link Value#pack(Value.TYPE, int)}.
+ */
+abstract class LoweredNode {
+
+    /**
+     * Evaluates this subtree.
+     *
+     * @param simulator    the simulator to forward references and invocations
+     *                     to
+     * @return  the packed result
+     * @throws ExecutionException if the simulator raises an exception
+     */
+    abstract long eval(ISimulator simulator) throws ExecutionException;
+
+    /**
+     * Lowers an operand of an Expression tree.
+     *
+     * @param operand    an Expression, Value, or symbol String
+     * @param lazy       whether {@code if} and comparisons short-circuit
+     * @return  the lowered subtree
+     */
+    static LoweredNode lower(Object operand, boolean lazy) {
+        if (operand instanceof Expression)
+            return lowerExpression((Expression) operand, lazy);
+        if (operand instanceof Value)
+            return new ConstantNode(Value.pack((Value) operand));
+        if (operand instanceof String) {
+            String name = (String) operand;
+            int variableId = Symbols.variableId(name);
+            if (variableId == Symbols.UNKNOWN)
+                return new NamedSensorNode(name);
+            return new SensorNode(variableId);
+        }
+        return new ConstantNode(Value.PACKED_NULL);
+    }
+
+    /**
+     * Lowers an Expression node.
+     *
+     * @param expr    the node
+     * @param lazy    whether {@code if} and comparisons short-circuit
+     * @return  the lowered subtree
+     */
+    private static LoweredNode lowerExpression(Expression expr, boolean lazy) {
+        String operator = expr.getOperator();
+        Object[] operands = expr.getOperands();
+        if (operands.length == 0) {
+            int functionId = Symbols.functionId(operator);
+            if (functionId == Symbols.UNKNOWN)
+                return new NamedActionNode(operator);
+            return new ActionNode(functionId);
+        }
+
+        LoweredNode[] lowered = new LoweredNode[operands.length];
+        for (int i = 0; i < operands.length; i++)
+            lowered[i] = lower(operands[i], lazy);
+
+        if (operator.equals("if")) {
+            return new IfNode(lowered, lazy);
+        } else if (operator.equals("+")) {
+            return new AddNode(lowered);
+        } else if (operator.equals("-")) {
+            return new SubNode(lowered);
+        } else if (operator.equals("*")) {
+            return new MultNode(lowered);
+        } else if (operator.equals("/")) {
+            return new DivNode(lowered);
+        } else if (operator.equals("^")) {
+            return new ExpNode(lowered);
+        } else if (operator.equals("<")) {
+            return new LessNode(lowered, lazy);
+        } else if (operator.equals("<=")) {
+            return new LessOrEqualNode(lowered, lazy);
+        } else if (operator.equals(">")) {
+            return new GreaterNode(lowered, lazy);
+        } else if (operator.equals(">=")) {
+            return new GreaterOrEqualNode(lowered, lazy);
+        } else if (operator.equals("==")) {
+            return new EqualNode(lowered, lazy);
+        } else if (operator.equals("!=")) {
+            return new NotEqualNode(lowered, lazy);
+        }
+        return new UnknownNode(lowered);
+    }
+
+    /**
+     * A literal value.
+     */
+    static final class ConstantNode extends LoweredNode {
+        private final long value;
+
+        ConstantNode(long value) {
+            this.value = value;
+        }
+
+        @Override
+        long eval(ISimulator simulator) {
+            return value;
+        }
+    }
+
+    /**
+     * A simulator variable reference.
+     */
+    static final class SensorNode extends LoweredNode {
+        private final int variableId;
+
+        SensorNode(int variableId) {
+            this.variableId = variableId;
+        }
+
+        @Override
+        long eval(ISimulator simulator) throws ExecutionException {
+            return Value.packInt(simulator.reference(variableId));
+        }
+    }
+
+    /**
+     * A reference to a variable missing from the symbol table, left to the
+     * simulator to reject by name.
+     */
+    static final class NamedSensorNode extends LoweredNode {
+        private final String name;
+
+        NamedSensorNode(String name) {
+            this.name = name;
+        }
+
+        @Override
+        long eval(ISimulator simulator) throws ExecutionException {
+            return Value.packInt(simulator.reference(name));
+        }
+    }
+
+    /**
+     * A simulator function invocation.
+     */
+    static final class ActionNode extends LoweredNode {
+        private final int functionId;
+
+        ActionNode(int functionId) {
+            this.functionId = functionId;
+        }
+
+        @Override
+        long eval(ISimulator simulator) throws ExecutionException {
+            simulator.invoke(functionId);
+            return Value.PACKED_NULL;
+        }
+    }
+
+    /**
+     * An invocation of a function missing from the symbol table, left to the
+     * simulator to reject by name.
+     */
+    static final class NamedActionNode extends LoweredNode {
+        private final String name;
+
+        NamedActionNode(String name) {
+            this.name = name;
+        }
+
+        @Override
+        long eval(ISimulator simulator) throws ExecutionException {
+            simulator.invoke(name);
+            return Value.PACKED_NULL;
+        }
+    }
+
+    /**
+     * An operator node.
+     */
+    abstract static class OperatorNode extends LoweredNode {
+        final LoweredNode[] operands;
+
+        OperatorNode(LoweredNode[] operands) {
+            this.operands = operands;
+        }
+    }
+
+    /**
+     * A comparison, which stops at the first failing pair if lazy.
+     */
+    abstract static class ComparisonNode extends OperatorNode {
+        final boolean lazy;
+
+        ComparisonNode(LoweredNode[] operands, boolean lazy) {
+            super(operands);
+            this.lazy = lazy;
+        }
+    }
+
+    /**
+     * Sum of the operands' addends.
+     */
+    static final class AddNode extends OperatorNode {
+        AddNode(LoweredNode[] operands) {
+            super(operands);
+        }
+
+        @Override
+        long eval(ISimulator simulator) throws ExecutionException {
+            int accum = 0;
+            for (LoweredNode operand : operands)
+                accum += Value.addend(operand.eval(simulator));
+            return Value.packInt(accum);
+        }
+    }
+
+    /**
+     * Left associative difference of the operands' addends.
+     */
+    static final class SubNode extends OperatorNode {
+        SubNode(LoweredNode[] operands) {
+            super(operands);
+        }
+
+        @Override
+        long eval(ISimulator simulator) throws ExecutionException {
+            int accum = Value.addend(operands[0].eval(simulator));
+            for (int i = 1; i < operands.length; i++)
+                accum -= Value.addend(operands[i].eval(simulator));
+            return Value.packInt(accum);
+        }
+    }
+
+    /**
+     * Product of the operands' multiplicands.
+     */
+    static final class MultNode extends OperatorNode {
+        MultNode(LoweredNode[] operands) {
+            super(operands);
+        }
+
+        @Override
+        long eval(ISimulator simulator) throws ExecutionException {
+            int accum = 1;
+            for (LoweredNode operand : operands)
+                accum *= Value.multiplicand(operand.eval(simulator));
+            return Value.packInt(accum);
+        }
+    }
+
+    /**
+     * Left associative safe division of the operands' multiplicands.
+     */
+    static final class DivNode extends OperatorNode {
+        DivNode(LoweredNode[] operands) {
+            super(operands);
+        }
+
+        @Override
+        long eval(ISimulator simulator) throws ExecutionException {
+            int accum = Value.multiplicand(operands[0].eval(simulator));
+            for (int i = 1; i < operands.length; i++) {
+                int divisor = Value.multiplicand(operands[i].eval(simulator));
+                if (divisor != 0)
+                    accum /= divisor;
+                else
+                    accum = 0;
+            }
+            return Value.packInt(accum);
+        }
+    }
+
+    /**
+     * The interpreter's exponentiation: the first operand's addend, reset to
+     * 1 by any later zero multiplicand.
+     */
+    static final class ExpNode extends OperatorNode {
+        ExpNode(LoweredNode[] operands) {
+            super(operands);
+        }
+
+        @Override
+        long eval(ISimulator simulator) throws ExecutionException {
+            int accum = Value.addend(operands[0].eval(simulator));
+            for (int i = 1; i < operands.length; i++) {
+                if (Value.multiplicand(operands[i].eval(simulator)) == 0)
+                    accum = 1;
+            }
+            return Value.packInt(accum);
+        }
+    }
+
+    /**
+     * Strictly increasing addends.  Comparisons have no side effects, so
+     * adjacent pairs are compared as the operands are evaluated.
+     */
+    static final class LessNode extends ComparisonNode {
+        LessNode(LoweredNode[] operands, boolean lazy) {
+            super(operands, lazy);
+        }
+
+        @Override
+        long eval(ISimulator simulator) throws ExecutionException {
+            boolean result = true;
+            int previous = Value.addend(operands[0].eval(simulator));
+            for (int i = 1; i < operands.length; i++) {
+                int next = Value.addend(operands[i].eval(simulator));
+                if (previous >= next) {
+                    if (lazy)
+                        return Value.PACKED_FALSE;
+                    result = false;
+                }
+                previous = next;
+            }
+            return result ? Value.PACKED_TRUE : Value.PACKED_FALSE;
+        }
+    }
+
+    /**
+     * Non-decreasing addends.
+     */
+    static final class LessOrEqualNode extends ComparisonNode {
+        LessOrEqualNode(LoweredNode[] operands, boolean lazy) {
+            super(operands, lazy);
+        }
+
+        @Override
+        long eval(ISimulator simulator) throws ExecutionException {
+            boolean result = true;
+            int previous = Value.addend(operands[0].eval(simulator));
+            for (int i = 1; i < operands.length; i++) {
+                int next = Value.addend(operands[i].eval(simulator));
+                if (previous > next) {
+                    if (lazy)
+                        return Value.PACKED_FALSE;
+                    result = false;
+                }
+                previous = next;
+            }
+            return result ? Value.PACKED_TRUE : Value.PACKED_FALSE;
+        }
+    }
+
+    /**
+     * Strictly decreasing addends.
+     */
+    static final class GreaterNode extends ComparisonNode {
+        GreaterNode(LoweredNode[] operands, boolean lazy) {
+            super(operands, lazy);
+        }
+
+        @Override
+        long eval(ISimulator simulator) throws ExecutionException {
+            boolean result = true;
+            int previous = Value.addend(operands[0].eval(simulator));
+            for (int i = 1; i < operands.length; i++) {
+                int next = Value.addend(operands[i].eval(simulator));
+                if (previous <= next) {
+                    if (lazy)
+                        return Value.PACKED_FALSE;
+                    result = false;
+                }
+                previous = next;
+            }
+            return result ? Value.PACKED_TRUE : Value.PACKED_FALSE;
+        }
+    }
+
+    /**
+     * Non-increasing addends.
+     */
+    static final class GreaterOrEqualNode extends ComparisonNode {
+        GreaterOrEqualNode(LoweredNode[] operands, boolean lazy) {
+            super(operands, lazy);
+        }
+
+        @Override
+        long eval(ISimulator simulator) throws ExecutionException {
+            boolean result = true;
+            int previous = Value.addend(operands[0].eval(simulator));
+            for (int i = 1; i < operands.length; i++) {
+                int next = Value.addend(operands[i].eval(simulator));
+                if (previous < next) {
+                    if (lazy)
+                        return Value.PACKED_FALSE;
+                    result = false;
+                }
+                previous = next;
+            }
+            return result ? Value.PACKED_TRUE : Value.PACKED_FALSE;
+        }
+    }
+
+    /**
+     * Adjacent operands equal in type and value.
+     */
+    static final class EqualNode extends ComparisonNode {
+        EqualNode(LoweredNode[] operands, boolean lazy) {
+            super(operands, lazy);
+        }
+
+        @Override
+        long eval(ISimulator simulator) throws ExecutionException {
+            boolean result = true;
+            long previous = operands[0].eval(simulator);
+            for (int i = 1; i < operands.length; i++) {
+                long next = operands[i].eval(simulator);
+                if (previous != next) {
+                    if (lazy)
+                        return Value.PACKED_FALSE;
+                    result = false;
+                }
+                previous = next;
+            }
+            return result ? Value.PACKED_TRUE : Value.PACKED_FALSE;
+        }
+    }
+
+    /**
+     * Pairwise distinct operands.  Values of more than two operands are kept
+     * in an array owned by the node, so a lowered tree must not be evaluated
+     * by more than one thread at a time.
+     */
+    static final class NotEqualNode extends ComparisonNode {
+        private final long[] values;
+
+        NotEqualNode(LoweredNode[] operands, boolean lazy) {
+            super(operands, lazy);
+            values = new long[operands.length];
+        }
+
+        @Override
+        long eval(ISimulator simulator) throws ExecutionException {
+            if (operands.length == 2) {
+                long first = operands[0].eval(simulator);
+                long second = operands[1].eval(simulator);
+                return (first != second) ? Value.PACKED_TRUE : Value.PACKED_FALSE;
+            }
+
+            if (lazy) {
+                for (int i = 0; i < operands.length; i++) {
+                    values[i] = operands[i].eval(simulator);
+                    for (int j = 0; j < i; j++) {
+                        if (values[j] == values[i])
+                            return Value.PACKED_FALSE;
+                    }
+                }
+                return Value.PACKED_TRUE;
+            }
+
+            for (int i = 0; i < operands.length; i++)
+                values[i] = operands[i].eval(simulator);
+            for (int i = 0; i < values.length - 1; i++) {
+                for (int j = i + 1; j < values.length; j++) {
+                    if (values[i] == values[j])
+                        return Value.PACKED_FALSE;
+                }
+            }
+            return Value.PACKED_TRUE;
+        }
+    }
+
+    /**
+     * The if construct.  Unless lazy, all operands are evaluated before a
+     * branch's result is selected.
+     */
+    static final class IfNode extends OperatorNode {
+        private final boolean lazy;
+
+        IfNode(LoweredNode[] operands, boolean lazy) {
+            super(operands);
+            this.lazy = lazy;
+        }
+
+        @Override
+        long eval(ISimulator simulator) throws ExecutionException {
+            boolean condition = Value.bool(operands[0].eval(simulator));
+            if (lazy) {
+                int branch = condition ? 1 : 2;
+                return (branch < operands.length) ? operands[branch].eval(simulator) : Value.PACKED_NULL;
+            }
+
+            long whenTrue = (operands.length > 1) ? operands[1].eval(simulator) : Value.PACKED_NULL;
+            long whenFalse = (operands.length > 2) ? operands[2].eval(simulator) : Value.PACKED_NULL;
+            for (int i = 3; i < operands.length; i++)
+                operands[i].eval(simulator);
+            return condition ? whenTrue : whenFalse;
+        }
+    }
+
+    /**
+     * An unrecognized operator: its operands are evaluated and the result is
+     * null.
+     */
+    static final class UnknownNode extends OperatorNode {
+        UnknownNode(LoweredNode[] operands) {
+            super(operands);
+        }
+
+        @Override
+        long eval(ISimulator simulator) throws ExecutionException {
+            for (LoweredNode operand : operands)
+                operand.eval(simulator);
+            return Value.PACKED_NULL;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+import cs412.dinghyprop.simulator.ExecutionException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simplifies program trees before they are evaluated.
+ * <p>
+ * The optimized tree gives the same results and makes the same simulator
+ * calls, in the same order, as the original.  Variable references count as
+ * simulator calls: reading a sensor can end the simulation, so only subtrees
+ * built entirely from constants are ever removed.  The rewrites are:
+ * <ul>
+ *     <li>nodes whose operands are all constants are folded into a
+ *     constant</li>
+ *     <li>constant addends and multiplicands are combined, and dropped when
+ *     they are the identity</li>
+ *     <li>constant divisors of 1 and constant non-zero exponents are
+ *     dropped</li>
+ *     <li>an arithmetic node with a single integer operand is replaced by
+ *     that operand</li>
+ *     <li>an {@code if} with a constant condition is replaced by its taken
+ *     branch when the other operands are constants or, for lazy programs,
+ *     are never evaluated</li>
+ *     <li>a lazy comparison whose leading constant operands already fail is
+ *     folded to false</li>
+ * </ul>
+ * The tree passed in is not modified.
+ */
+final class Optimizer {
+    /**
+     * Whether {@code if} and comparisons short-circuit
+     */
+    private final boolean lazy;
+
+    /**
+     * @param lazy    whether {@code if} and comparisons short-circuit
+     */
+    private Optimizer(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Optimizes a program tree.
+     *
+     * @param program     the program's root
+     * @param strategy    the strategy the program will be evaluated with
+     * @return  an equivalent, possibly smaller, program tree
+     */
+    static Expression optimize(Expression program, EvaluationStrategy strategy) {
+        Optimizer optimizer = new Optimizer(strategy == EvaluationStrategy.LAZY);
+        Object root = optimizer.simplify(program);
+        if (root instanceof Expression)
+            return (Expression) root;
+
+        // A program must be an Expression; (if 1 x) evaluates to x.
+        return new Expression("if", Value.newInt(1), root);
+    }
+
+    /**
+     * Simplifies an operand.
+     *
+     * @param operand    an Expression, Value, or symbol String
+     * @return  an equivalent operand
+     */
+    private Object simplify(Object operand) {
+        if (operand instanceof Expression)
+            return simplifyExpression((Expression) operand);
+        return operand;
+    }
+
+    /**
+     * Simplifies an Expression node after simplifying its operands.
+     *
+     * @param expr    the node
+     * @return  an equivalent operand
+     */
+    private Object simplifyExpression(Expression expr) {
+        String operator = expr.getOperator();
+        int operandCount = expr.getOperandCount();
+        if (operandCount == 0)
+            return expr;
+
+        List<Object> operands = new ArrayList<Object>(operandCount);
+        boolean constant = true;
+        for (int i = 0; i < operandCount; i++) {
+            Object operand = simplify(expr.getOperand(i));
+            constant &= operand instanceof Value;
+            operands.add(operand);
+        }
+        if (constant)
+            return fold(operator, operands);
+
+        if (operator.equals("if")) {
+            return simplifyIf(operator, operands);
+        } else if (operator.equals("+") || operator.equals("*")) {
+            combineConstants(operands, 0, operator.equals("+"));
+        } else if (operator.equals("-")) {
+            combineConstants(operands, 1, true);
+        } else if (operator.equals("/")) {
+            dropConstants(operands, 1, false);
+        } else if (operator.equals("^")) {
+            dropConstants(operands, 1, true);
+        } else if (isComparison(operator)) {
+            if (lazy && failsEarly(operator, operands))
+                return Value.FALSE_VALUE;
+        } else {
+            // unknown operators only evaluate their operands for their effects
+            dropConstants(operands, 0, false);
+        }
+
+        if (operands.size() == 1 && isArithmetic(operator) && isInteger(operands.get(0)))
+            return operands.get(0);
+        return rebuild(operator, operands);
+    }
+
+    /**
+     * Evaluates a node whose operands are all constants.
+     *
+     * @param operator    the node's operator
+     * @param operands    the constant operands
+     * @return  the node's value
+     */
+    private Object fold(String operator, List<Object> operands) {
+        Expression expr = rebuild(operator, operands);
+        try {
+            // constant subtrees never reach the simulator
+            return Value.unpack(LoweredNode.lower(expr, lazy).eval(null));
+        } catch (ExecutionException e) {
+            return expr;
+        }
+    }
+
+    /**
+     * Simplifies an if construct with a non-constant operand.
+     *
+     * @param operator    "if"
+     * @param operands    the condition, branches, and any extra operands
+     * @return  an equivalent operand
+     */
+    private Object simplifyIf(String operator, List<Object> operands) {
+        // extra operands are evaluated only for their effects, and not at all
+        // when lazy
+        for (int i = operands.size() - 1; i > 2; i--) {
+            if (lazy || operands.get(i) instanceof Value)
+                operands.remove(i);
+        }
+
+        Object condition = operands.get(0);
+        if (condition instanceof Value) {
+            int taken = ((Value) condition).bool() ? 1 : 2;
+            boolean removable = true;
+            for (int i = 1; i < operands.size() && !lazy; i++) {
+                if (i != taken && !(operands.get(i) instanceof Value))
+                    removable = false;
+            }
+            if (removable)
+                return (taken < operands.size()) ? operands.get(taken) : Value.NULL_VALUE;
+        }
+        return rebuild(operator, operands);
+    }
+
+    /**
+     * Replaces the constant operands at or after an index by their combined
+     * sum or product, which is dropped if it is the identity.
+     *
+     * @param operands    the operands
+     * @param start       the index of the first operand that may be combined
+     * @param addend      true to sum addends, false to multiply multiplicands
+     */
+    private static void combineConstants(List<Object> operands, int start, boolean addend) {
+        int accum = addend ? 0 : 1;
+        for (int i = operands.size() - 1; i >= start; i--) {
+            if (operands.get(i) instanceof Value) {
+                Value value = (Value) operands.remove(i);
+                if (addend)
+                    accum += value.addend();
+                else
+                    accum *= value.multiplicand();
+            }
+        }
+        if (accum != (addend ? 0 : 1))
+            operands.add(Value.newInt(accum));
+    }
+
+    /**
+     * Drops constant divisors of 1, constant non-zero exponents, or every
+     * constant operand, at or after an index.  For exponents, a single zero
+     * is kept since any zero gives 1.
+     *
+     * @param operands     the operands
+     * @param start        the index of the first operand that may be dropped
+     * @param exponents    true to drop exponents, false to drop divisors (or,
+     *                     if {@code start} is 0, every constant)
+     */
+    private static void dropConstants(List<Object> operands, int start, boolean exponents) {
+        boolean zero = false;
+        for (int i = operands.size() - 1; i >= start; i--) {
+            if (!(operands.get(i) instanceof Value))
+                continue;
+            int multiplicand = ((Value) operands.get(i)).multiplicand();
+            if (start == 0 || (exponents ? multiplicand != 0 || zero : multiplicand == 1))
+                operands.remove(i);
+            zero |= multiplicand == 0;
+        }
+    }
+
+    /**
+     * Checks whether a lazy comparison fails within its leading constant
+     * operands, so that none of its other operands would be evaluated.
+     *
+     * @param operator    the comparison operator
+     * @param operands    the operands
+     * @return  whether the comparison is false without evaluating any
+     * non-constant operand
+     */
+    private boolean failsEarly(String operator, List<Object> operands) {
+        int prefix = 0;
+        while (prefix < operands.size() && operands.get(prefix) instanceof Value)
+            prefix++;
+        if (prefix < 2)
+            return false;
+        return fold(operator, operands.subList(0, prefix)) == Value.FALSE_VALUE;
+    }
+
+    /**
+     * @param operator    the node's operator
+     * @param operands    the node's operands
+     * @return  a new node
+     */
+    private static Expression rebuild(String operator, List<Object> operands) {
+        return new Expression(operator, operands.toArray());
+    }
+
+    /**
+     * @param operator    an operator name
+     * @return  whether the operator is arithmetic
+     */
+    private static boolean isArithmetic(String operator) {
+        return operator.equals("+") || operator.equals("-") || operator.equals("*")
+                || operator.equals("/") || operator.equals("^");
+    }
+
+    /**
+     * @param operator    an operator name
+     * @return  whether the operator is a comparison
+     */
+    private static boolean isComparison(String operator) {
+        return operator.equals("<") || operator.equals("<=") || operator.equals(">")
+                || operator.equals(">=") || operator.equals("==") || operator.equals("!=");
+    }
+
+    /**
+     * Checks whether an operand always evaluates to an integer, in which case
+     * it is its own addend and multiplicand.
+     *
+     * @param operand    an Expression, Value, or symbol String
+     * @return  whether the operand's value is always an integer
+     */
+    private static boolean isInteger(Object operand) {
+        if (operand instanceof String)
+            return true;
+        if (operand instanceof Value)
+            return ((Value) operand).isInt();
+        if (!(operand instanceof Expression))
+            return false;
+
+        Expression expr = (Expression) operand;
+        int operandCount = expr.getOperandCount();
+        if (operandCount == 0)
+            return false;
+        if (expr.getOperator().equals("if"))
+            return operandCount > 2 && isInteger(expr.getOperand(1))
+                    && isInteger(expr.getOperand(2));
+        return isArithmetic(expr.getOperator());
+    }
+}
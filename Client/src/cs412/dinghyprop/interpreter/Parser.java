@@ -6,22 +6,36 @@
 
 package cs412.dinghyprop.interpreter;
 
-import java.io.*;
-import java.util.Stack;
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Stack-based parser for the GP generated programs
+ * <p>
+ * The program text is read by a {@link Lexer} straight from the String or
+ * CharSequence given, without intermediate streams.
  */
 public final class Parser {
     /**
-     * std. lib. tokenizer used as a lexical analyzer
+     * Lexical analyzer over the program text
+     */
+    private Lexer lexer = null;
+
+    /**
+     * The exception raised while reading an InputStream, if any
      */
-    private StreamTokenizer lexer;
+    private IOException readError = null;
 
     /**
      * AST stack
      */
-    private Stack<Expression> stack = new Stack<Expression>();
+    private List<Expression> stack = new ArrayList<Expression>();
 
     /**
      * Parses a program from an InputStream.
@@ -29,7 +43,17 @@ public final class Parser {
      * @param inputStream    the program text
      */
     public Parser(InputStream inputStream) {
-        lexer = createLexer(new BufferedReader(new InputStreamReader(inputStream)));
+        StringBuilder text = new StringBuilder();
+        try {
+            Reader reader = new InputStreamReader(inputStream);
+            char[] buffer = new char[1024];
+            int read;
+            while ((read = reader.read(buffer)) != -1)
+                text.append(buffer, 0, read);
+        } catch (IOException e) {
+            readError = e;
+        }
+        lexer = new Lexer(text, 0, text.length());
     }
 
     /**
@@ -38,45 +62,42 @@ public final class Parser {
      * @param inputString    the program text
      */
     public Parser(String inputString) {
-        Reader r = new BufferedReader(new InputStreamReader(
-                new ByteArrayInputStream(inputString.getBytes())));
-        lexer = createLexer(r);
+        this(inputString, 0, inputString.length());
     }
 
     /**
-     * Configure the lexical analyzer.
+     * Parses a program from a slice of a character sequence.
      *
-     * @param reader    the input stream reader
-     * @return  an s-expression lexer
+     * @param text     the characters containing the program
+     * @param start    the index of the program's first character
+     * @param end      the index after the program's last character
      */
-    private StreamTokenizer createLexer(Reader reader) {
-        StreamTokenizer tokenizer = new StreamTokenizer(reader);
-
-        tokenizer.resetSyntax();
-        tokenizer.eolIsSignificant(false);
-        tokenizer.whitespaceChars(0, ' ');
-        tokenizer.wordChars('!', '!');
-        tokenizer.wordChars('*', 'z');
-
-        return tokenizer;
+    public Parser(CharSequence text, int start, int end) {
+        lexer = new Lexer(text, start, end);
     }
 
     /**
      * Ensures the program's first token is '(' and is followed by a symbol.
      * <p>
-     * The first symbol in the input will be the current value of the lexer
+     * The first symbol in the input will be the current token of the lexer
      * after this call completes.
      *
-     * @throws IOException if reading the input fails
      * @throws ParsingException if this assumption fails
      */
-    private void checkStart() throws ParsingException, IOException {
-        lexer.nextToken();
-        if (lexer.ttype != '(')
+    private void checkStart() throws ParsingException {
+        if (lexer.next() != '(')
             throw new ParsingException("Program does not begin with '('.");
 
-        if (lexer.nextToken() != StreamTokenizer.TT_WORD)
-            throw new ParsingException("Expected symbol. Got: " + lexer.ttype);
+        if (!isWord(lexer.next()))
+            throw new ParsingException("Expected symbol. Got: " + lexer.describe());
+    }
+
+    /**
+     * @param token    a token type
+     * @return  whether the token is a word, which may name an operator
+     */
+    private static boolean isWord(int token) {
+        return token == Lexer.SYMBOL || token == Lexer.NUMBER;
     }
 
     /**
@@ -86,16 +107,37 @@ public final class Parser {
      * @throws ParsingException if a parsing error occurs.
      */
     public Expression parse() throws ParsingException {
-        // Trap reader exceptions
-        try {
-            checkStart();
-            Expression expr = parseSymbolicExpression();
-            checkEnd();
-            return expr;
-        } catch (IOException e) {
-            // Wrap reader exceptions in ParsingException
-            throw new ParsingException("Error reading program text.", e);
-        }
+        if (readError != null)
+            throw new ParsingException("Error reading program text.", readError);
+
+        checkStart();
+        Expression expr = parseSymbolicExpression();
+        checkEnd();
+        return expr;
+    }
+
+    /**
+     * Parses the input program into the flat encoding run by the stack
+     * machine.  Variable and function names are interned into their
+     * {@link cs412.dinghyprop.simulator.Symbols} IDs.
+     *
+     * @return  the program's instructions
+     * @throws ParsingException if a parsing error occurs.
+     */
+    public Instructions parseInstructions() throws ParsingException {
+        return Instructions.encode(parse());
+    }
+
+    /**
+     * Parses the input program into the flat encoding run by the stack
+     * machine, for a given evaluation strategy.
+     *
+     * @param strategy    the evaluation strategy to encode
+     * @return  the program's instructions
+     * @throws ParsingException if a parsing error occurs.
+     */
+    public Instructions parseInstructions(EvaluationStrategy strategy) throws ParsingException {
+        return Instructions.encode(parse(), strategy);
     }
 
     /**
@@ -103,57 +145,52 @@ public final class Parser {
      * positioned on the first symbol after the opening parenthesis.
      *
      * @return the parse tree of the input
-     * @throws IOException if a read error occurs in the lexer
      * @throws ParsingException if the input cannot be parsed successfully
      */
-    private Expression parseSymbolicExpression() throws IOException, ParsingException {
-        Expression expr = new Expression(lexer.sval);
+    private Expression parseSymbolicExpression() throws ParsingException {
+        Expression expr = new Expression(lexer.symbol());
 
-        int t = lexer.nextToken();
-        while (t != StreamTokenizer.TT_EOF) {
+        int t = lexer.next();
+        while (t != Lexer.EOF) {
             switch (t) {
                 case ')':
-                    if (stack.empty())
+                    if (stack.isEmpty())
                         return expr;
-                    stack.peek().addOperand(expr);
-                    expr = stack.pop();
+                    Expression parent = stack.remove(stack.size() - 1);
+                    parent.addOperand(expr);
+                    expr = parent;
                     break;
                 case '(': // descend into a sub-expression
-                    stack.push(expr);
-                    if (lexer.nextToken() != StreamTokenizer.TT_WORD) {
-                        throw new ParsingException("Expected symbol. Got: " + lexer.ttype);
-                    }
-                    expr = new Expression(lexer.sval);
+                    stack.add(expr);
+                    if (!isWord(lexer.next()))
+                        throw new ParsingException("Expected symbol. Got: " + lexer.describe());
+                    expr = new Expression(lexer.symbol());
+                    break;
+                case Lexer.NUMBER:
+                    expr.addOperand(Value.newInt(lexer.number()));
                     break;
-                case StreamTokenizer.TT_WORD:
-                    try {
-                        // test for a number
-                        expr.addOperand(Value.newInt(Integer.parseInt(lexer.sval)));
-                    } catch (NumberFormatException ignored) {
-                        // fall back on a symbol
-                        expr.addOperand(lexer.sval);
-                    }
+                case Lexer.SYMBOL:
+                    expr.addOperand(lexer.symbol());
                     break;
                 default:
-                    throw new ParsingException("Unknown token type: " + lexer.ttype);
+                    throw new ParsingException("Unknown token type: " + lexer.describe());
             }
-            t = lexer.nextToken();
+            t = lexer.next();
         }
 
-        throw new ParsingException("Expected end of input.  Got: " + lexer.ttype);
+        throw new ParsingException("Expected end of input.  Got: " + lexer.describe());
     }
 
     /**
      * Ensures the program's last token is ')' and is followed by EOF.
      *
-     * @throws IOException if reading the input fails
      * @throws ParsingException if this assumption fails
      */
-    private void checkEnd() throws ParsingException, IOException {
-        if (lexer.ttype != ')')
+    private void checkEnd() throws ParsingException {
+        if (lexer.type() != ')')
             throw new ParsingException("Unexpected end of input.");
 
-        if (lexer.nextToken() != StreamTokenizer.TT_EOF)
-            throw new ParsingException("Expected end of input.  Got: " + lexer.ttype);
+        if (lexer.next() != Lexer.EOF)
+            throw new ParsingException("Expected end of input.  Got: " + lexer.describe());
     }
 }
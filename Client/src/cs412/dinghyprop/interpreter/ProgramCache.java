@@ -0,0 +1,169 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded cache of compiled programs, keyed by program text.
+ * <p>
+ * Reproduction and crossover leave many identical programs in a population,
+ * and many programs survive from one generation to the next; the cache lets
+ * each be parsed and compiled once.  When full, the least recently used
+ * program is evicted.  All methods are thread-safe.  Programs are compiled
+ * outside the cache's lock, so two threads missing on the same text may both
+ * compile it.
+ */
+public final class ProgramCache {
+    /**
+     * Compiled programs in least to most recently used order
+     */
+    private final LinkedHashMap<String, CompiledProgram> programs;
+
+    /**
+     * How cached programs are evaluated
+     */
+    private final Interpreter.MODE mode;
+
+    /**
+     * Whether cached programs short-circuit {@code if} and comparisons
+     */
+    private final EvaluationStrategy strategy;
+
+    /**
+     * Whether cached programs are stripped of the parts that cannot affect a
+     * simulation
+     */
+    private final boolean stripIntrons;
+
+    /**
+     * The number of lookups answered from the cache
+     */
+    private long hits = 0;
+
+    /**
+     * The number of lookups that compiled the program
+     */
+    private long misses = 0;
+
+    /**
+     * The number of programs evicted
+     */
+    private long evictions = 0;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity    the maximum number of programs to keep
+     * @param mode        how to evaluate the cached programs
+     * @param strategy    whether to short-circuit {@code if} and comparisons
+     */
+    public ProgramCache(int capacity, Interpreter.MODE mode, EvaluationStrategy strategy) {
+        this(capacity, mode, strategy, false);
+    }
+
+    /**
+     * Creates an empty cache, optionally of stripped programs (see
+     * {@link CompiledProgram#compile(String, Interpreter.MODE, EvaluationStrategy, boolean)}).
+     *
+     * @param capacity        the maximum number of programs to keep
+     * @param mode            how to evaluate the cached programs
+     * @param strategy        whether to short-circuit {@code if} and
+     *                        comparisons
+     * @param stripIntrons    whether to strip the cached programs
+     */
+    public ProgramCache(final int capacity, Interpreter.MODE mode, EvaluationStrategy strategy,
+                        boolean stripIntrons) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        this.mode = mode;
+        this.strategy = strategy;
+        this.stripIntrons = stripIntrons;
+        programs = new LinkedHashMap<String, CompiledProgram>(16, 0.75f, true) {
+            private static final long serialVersionUID = 2791514630186262093L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledProgram> eldest) {
+                if (size() <= capacity)
+                    return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Looks up a program, compiling and caching it if it is not cached.
+     *
+     * @param program    the program text
+     * @return  the compiled program
+     * @throws ParsingException if the program cannot be parsed
+     */
+    public CompiledProgram get(String program) throws ParsingException {
+        synchronized (this) {
+            CompiledProgram compiled = programs.get(program);
+            if (compiled != null) {
+                hits++;
+                return compiled;
+            }
+            misses++;
+        }
+
+        CompiledProgram compiled = CompiledProgram.compile(program, mode, strategy,
+                stripIntrons);
+        synchronized (this) {
+            programs.put(program, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * @return  the number of programs cached
+     */
+    public synchronized int size() {
+        return programs.size();
+    }
+
+    /**
+     * @return  the number of lookups answered from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return  the number of lookups that compiled the program
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return  the number of programs evicted to stay within capacity
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return  the fraction of lookups answered from the cache, or 0 if there
+     * have been none
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return (lookups == 0) ? 0.0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ProgramCache{size=" + programs.size() + ", hits=" + hits
+                + ", misses=" + misses + ", evictions=" + evictions + '}';
+    }
+}
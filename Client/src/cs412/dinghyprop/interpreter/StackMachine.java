@@ -0,0 +1,302 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.simulator.ExecutionException;
+import cs412.dinghyprop.simulator.ISimulator;
+
+/**
+ * Executes {@link Instructions}.
+ * <p>
+ * Values are kept on a stack of packed longs (see
+ * {@link Value#pack(Value.TYPE, int)}) that is allocated once, so executing a
+ * program allocates nothing.  A StackMachine is not thread-safe, but the
+ * Instructions it runs may be shared.
+ */
+final class StackMachine {
+    /**
+     * The instructions to execute
+     */
+    private final Instructions instructions;
+
+    /**
+     * The value stack
+     */
+    private final long[] stack;
+
+    /**
+     * @param instructions    the program to execute
+     */
+    StackMachine(Instructions instructions) {
+        this.instructions = instructions;
+        stack = new long[Math.max(instructions.maxStack, 1)];
+    }
+
+    /**
+     * Executes the instructions once.
+     *
+     * @param simulator    the simulator to forward references and invocations
+     *                     to
+     * @return  the packed value of the program's root
+     * @throws ExecutionException if the simulator raises an exception
+     */
+    long run(ISimulator simulator) throws ExecutionException {
+        final int[] code = instructions.code;
+        final String[] symbols = instructions.symbols;
+        final long[] stack = this.stack;
+        int sp = 0;
+        int pc = 0;
+
+        while (pc < code.length) {
+            switch (code[pc++]) {
+                case Instructions.PUSH_INT:
+                    stack[sp++] = Value.packInt(code[pc++]);
+                    break;
+                case Instructions.SENSOR:
+                    stack[sp++] = Value.packInt(simulator.reference(code[pc++]));
+                    break;
+                case Instructions.ACTION:
+                    simulator.invoke(code[pc++]);
+                    stack[sp++] = Value.PACKED_NULL;
+                    break;
+                case Instructions.REFERENCE:
+                    stack[sp++] = Value.packInt(simulator.reference(symbols[code[pc++]]));
+                    break;
+                case Instructions.INVOKE:
+                    simulator.invoke(symbols[code[pc++]]);
+                    stack[sp++] = Value.PACKED_NULL;
+                    break;
+                case Instructions.PUSH_NULL:
+                    stack[sp++] = Value.PACKED_NULL;
+                    break;
+                case Instructions.PUSH_TRUE:
+                    stack[sp++] = Value.PACKED_TRUE;
+                    break;
+                case Instructions.PUSH_FALSE:
+                    stack[sp++] = Value.PACKED_FALSE;
+                    break;
+                case Instructions.ADD: {
+                    int end = sp;
+                    sp -= code[pc++];
+                    int accum = 0;
+                    for (int i = sp; i < end; i++)
+                        accum += Value.addend(stack[i]);
+                    stack[sp++] = Value.packInt(accum);
+                    break;
+                }
+                case Instructions.SUB: {
+                    int end = sp;
+                    sp -= code[pc++];
+                    int accum = Value.addend(stack[sp]);
+                    for (int i = sp + 1; i < end; i++)
+                        accum -= Value.addend(stack[i]);
+                    stack[sp++] = Value.packInt(accum);
+                    break;
+                }
+                case Instructions.MULT: {
+                    int end = sp;
+                    sp -= code[pc++];
+                    int accum = 1;
+                    for (int i = sp; i < end; i++)
+                        accum *= Value.multiplicand(stack[i]);
+                    stack[sp++] = Value.packInt(accum);
+                    break;
+                }
+                case Instructions.DIV: {
+                    int end = sp;
+                    sp -= code[pc++];
+                    int accum = Value.multiplicand(stack[sp]);
+                    for (int i = sp + 1; i < end; i++) {
+                        int divisor = Value.multiplicand(stack[i]);
+                        if (divisor != 0)
+                            accum /= divisor;
+                        else
+                            accum = 0;
+                    }
+                    stack[sp++] = Value.packInt(accum);
+                    break;
+                }
+                case Instructions.EXP: {
+                    int end = sp;
+                    sp -= code[pc++];
+                    int accum = Value.addend(stack[sp]);
+                    for (int i = sp + 1; i < end; i++) {
+                        if (Value.multiplicand(stack[i]) == 0)
+                            accum = 1;
+                    }
+                    stack[sp++] = Value.packInt(accum);
+                    break;
+                }
+                case Instructions.LESS: {
+                    int end = sp;
+                    sp -= code[pc++];
+                    long result = Value.PACKED_TRUE;
+                    for (int i = sp; i < end - 1; i++) {
+                        if (Value.addend(stack[i]) >= Value.addend(stack[i + 1]))
+                            result = Value.PACKED_FALSE;
+                    }
+                    stack[sp++] = result;
+                    break;
+                }
+                case Instructions.LESS_OR_EQUAL: {
+                    int end = sp;
+                    sp -= code[pc++];
+                    long result = Value.PACKED_TRUE;
+                    for (int i = sp; i < end - 1; i++) {
+                        if (Value.addend(stack[i]) > Value.addend(stack[i + 1]))
+                            result = Value.PACKED_FALSE;
+                    }
+                    stack[sp++] = result;
+                    break;
+                }
+                case Instructions.GREATER: {
+                    int end = sp;
+                    sp -= code[pc++];
+                    long result = Value.PACKED_TRUE;
+                    for (int i = sp; i < end - 1; i++) {
+                        if (Value.addend(stack[i]) <= Value.addend(stack[i + 1]))
+                            result = Value.PACKED_FALSE;
+                    }
+                    stack[sp++] = result;
+                    break;
+                }
+                case Instructions.GREATER_OR_EQUAL: {
+                    int end = sp;
+                    sp -= code[pc++];
+                    long result = Value.PACKED_TRUE;
+                    for (int i = sp; i < end - 1; i++) {
+                        if (Value.addend(stack[i]) < Value.addend(stack[i + 1]))
+                            result = Value.PACKED_FALSE;
+                    }
+                    stack[sp++] = result;
+                    break;
+                }
+                case Instructions.EQUAL: {
+                    int end = sp;
+                    sp -= code[pc++];
+                    long result = Value.PACKED_TRUE;
+                    for (int i = sp; i < end - 1; i++) {
+                        if (stack[i] != stack[i + 1])
+                            result = Value.PACKED_FALSE;
+                    }
+                    stack[sp++] = result;
+                    break;
+                }
+                case Instructions.NOT_EQUAL: {
+                    int end = sp;
+                    sp -= code[pc++];
+                    long result = Value.PACKED_TRUE;
+                    for (int i = sp; i < end - 1; i++) {
+                        for (int j = i + 1; j < end; j++) {
+                            if (stack[i] == stack[j])
+                                result = Value.PACKED_FALSE;
+                        }
+                    }
+                    stack[sp++] = result;
+                    break;
+                }
+                case Instructions.IF: {
+                    int count = code[pc++];
+                    sp -= count;
+                    long result;
+                    if (Value.bool(stack[sp]))
+                        result = (count > 1) ? stack[sp + 1] : Value.PACKED_NULL;
+                    else
+                        result = (count > 2) ? stack[sp + 2] : Value.PACKED_NULL;
+                    stack[sp++] = result;
+                    break;
+                }
+                case Instructions.DISCARD:
+                    sp -= code[pc++];
+                    stack[sp++] = Value.PACKED_NULL;
+                    break;
+                case Instructions.JUMP:
+                    pc = code[pc];
+                    break;
+                case Instructions.JUMP_UNLESS:
+                    if (Value.bool(stack[--sp]))
+                        pc++;
+                    else
+                        pc = code[pc];
+                    break;
+                case Instructions.LESS_STEP:
+                    sp--;
+                    if (Value.addend(stack[sp - 1]) < Value.addend(stack[sp])) {
+                        stack[sp - 1] = stack[sp];
+                        pc++;
+                    } else {
+                        stack[sp - 1] = Value.PACKED_FALSE;
+                        pc = code[pc];
+                    }
+                    break;
+                case Instructions.LESS_OR_EQUAL_STEP:
+                    sp--;
+                    if (Value.addend(stack[sp - 1]) <= Value.addend(stack[sp])) {
+                        stack[sp - 1] = stack[sp];
+                        pc++;
+                    } else {
+                        stack[sp - 1] = Value.PACKED_FALSE;
+                        pc = code[pc];
+                    }
+                    break;
+                case Instructions.GREATER_STEP:
+                    sp--;
+                    if (Value.addend(stack[sp - 1]) > Value.addend(stack[sp])) {
+                        stack[sp - 1] = stack[sp];
+                        pc++;
+                    } else {
+                        stack[sp - 1] = Value.PACKED_FALSE;
+                        pc = code[pc];
+                    }
+                    break;
+                case Instructions.GREATER_OR_EQUAL_STEP:
+                    sp--;
+                    if (Value.addend(stack[sp - 1]) >= Value.addend(stack[sp])) {
+                        stack[sp - 1] = stack[sp];
+                        pc++;
+                    } else {
+                        stack[sp - 1] = Value.PACKED_FALSE;
+                        pc = code[pc];
+                    }
+                    break;
+                case Instructions.EQUAL_STEP:
+                    sp--;
+                    if (stack[sp - 1] == stack[sp]) {
+                        pc++;
+                    } else {
+                        stack[sp - 1] = Value.PACKED_FALSE;
+                        pc = code[pc];
+                    }
+                    break;
+                case Instructions.DISTINCT_STEP: {
+                    int count = code[pc++];
+                    long value = stack[sp - 1];
+                    boolean distinct = true;
+                    for (int i = sp - count; i < sp - 1; i++) {
+                        if (stack[i] == value)
+                            distinct = false;
+                    }
+                    if (distinct) {
+                        pc++;
+                    } else {
+                        sp -= count;
+                        stack[sp++] = Value.PACKED_FALSE;
+                        pc = code[pc];
+                    }
+                    break;
+                }
+                case Instructions.DROP_TRUE:
+                    sp -= code[pc++];
+                    stack[sp++] = Value.PACKED_TRUE;
+                    break;
+                default:
+                    throw new IllegalStateException("Bad opcode at " + (pc - 1));
+            }
+        }
+        return stack[sp - 1];
+    }
+}
@@ -68,8 +68,9 @@ public final class TreeViewer extends JPanel implements Scrollable {
      * @return  the root of the newly created Node tree
      */
     private Node createTree(Expression expr) {
-        List<Node> children = new ArrayList<Node>(expr.getOperands().length);
-        for (Object child : expr.getOperands()) {
+        List<Node> children = new ArrayList<Node>(expr.getOperandCount());
+        for (int i = 0; i < expr.getOperandCount(); i++) {
+            Object child = expr.getOperand(i);
             if (child instanceof Expression) {
                 children.add(createTree((Expression) child));
             } else {
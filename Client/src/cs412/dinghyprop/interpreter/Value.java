@@ -31,6 +31,21 @@ public final class Value {
      */
     public static final Value FALSE_VALUE = new Value(TYPE.BOOLEAN, 0);
 
+    /**
+     * Packed form of {@link #NULL_VALUE}
+     */
+    static final long PACKED_NULL = pack(TYPE.NULL, 0);
+
+    /**
+     * Packed form of {@link #TRUE_VALUE}
+     */
+    static final long PACKED_TRUE = pack(TYPE.BOOLEAN, 1);
+
+    /**
+     * Packed form of {@link #FALSE_VALUE}
+     */
+    static final long PACKED_FALSE = pack(TYPE.BOOLEAN, 0);
+
     /**
      * The current object's numerical value
      */
@@ -62,6 +77,75 @@ public final class Value {
         return new Value(TYPE.INTEGER, value);
     }
 
+    /**
+     * Packs a typed value into a long: the type's ordinal in the high word and
+     * the value in the low word.  Equal Values have equal packed forms.
+     *
+     * @param type     the behavior type
+     * @param value    the numerical value
+     * @return  the packed value
+     */
+    static long pack(TYPE type, int value) {
+        return (((long) type.ordinal()) << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param value    the Value to pack
+     * @return  the packed form of {@code value}
+     */
+    static long pack(Value value) {
+        return pack(value.type, value.value);
+    }
+
+    /**
+     * @param value    the integer to pack
+     * @return  the packed form of an integer-typed Value
+     */
+    static long packInt(int value) {
+        return (((long) TYPE.INTEGER.ordinal()) << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param packed    a packed value
+     * @return  the equivalent Value
+     */
+    static Value unpack(long packed) {
+        int type = (int) (packed >>> 32);
+        if (type == TYPE.INTEGER.ordinal())
+            return newInt((int) packed);
+        if (type == TYPE.BOOLEAN.ordinal())
+            return ((int) packed > 0) ? TRUE_VALUE : FALSE_VALUE;
+        return NULL_VALUE;
+    }
+
+    /**
+     * @param packed    a packed value
+     * @return  the packed value's addend, as by {@link #addend()}
+     */
+    static int addend(long packed) {
+        if ((int) (packed >>> 32) == TYPE.INTEGER.ordinal())
+            return (int) packed;
+        return 0;
+    }
+
+    /**
+     * @param packed    a packed value
+     * @return  the packed value's multiplicand, as by {@link #multiplicand()}
+     */
+    static int multiplicand(long packed) {
+        if ((int) (packed >>> 32) == TYPE.INTEGER.ordinal())
+            return (int) packed;
+        return 1;
+    }
+
+    /**
+     * @param packed    a packed value
+     * @return  the packed value's truth, as by {@link #bool()}
+     */
+    static boolean bool(long packed) {
+        return (int) packed > 0;
+    }
+
     /**
      * @return  A value from {@link TYPE}
      */
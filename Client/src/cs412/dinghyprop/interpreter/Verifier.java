@@ -0,0 +1,130 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+import cs412.dinghyprop.simulator.Symbols;
+
+import java.util.logging.Logger;
+
+/**
+ * Checks programs against the simulator's vocabulary before they run.
+ * <p>
+ * A reference to an unknown variable or an invocation of an unknown function
+ * makes the simulator throw, which ends the program with a fitness of 0.  If
+ * such a symbol is evaluated on every pass, the program can be rejected up
+ * front instead.  Under {@link EvaluationStrategy#LAZY}, symbols that are
+ * only evaluated on some passes, in the branches of an {@code if} or after
+ * the first pair of a comparison, are not checked.
+ * <p>
+ * A rejected program scores 0 in every environment.  The simulator ignores
+ * unknown symbols once an episode has ended, so before verification, a
+ * program that reached the goal or collided before evaluating the symbol kept
+ * the fitness it had earned there.
+ */
+public final class Verifier {
+    private static Logger log = Logger.getLogger("Verifier");
+
+    /**
+     * The minimum interval between logged rejections, in milliseconds
+     */
+    private static final long LOG_INTERVAL = 1000;
+
+    /**
+     * Verification results
+     */
+    public static enum RESULT { VALID, UNKNOWN_VARIABLE, UNKNOWN_FUNCTION }
+
+    /**
+     * The time the last rejection was logged
+     */
+    private static long lastLogged = 0;
+
+    /**
+     * Rejections not logged since the last logged rejection
+     */
+    private static long suppressed = 0;
+
+    private Verifier() {}
+
+    /**
+     * Verifies a program tree.
+     *
+     * @param program     the program's root
+     * @param strategy    the strategy the program will be evaluated with
+     * @return  VALID, or the kind of the first unknown symbol found
+     */
+    public static RESULT verify(Expression program, EvaluationStrategy strategy) {
+        return verify(program, strategy == EvaluationStrategy.LAZY);
+    }
+
+    /**
+     * Verifies an operand and the operands it always evaluates.
+     *
+     * @param operand    an Expression, Value, or symbol String
+     * @param lazy       whether {@code if} and comparisons short-circuit
+     * @return  VALID, or the kind of the first unknown symbol found
+     */
+    private static RESULT verify(Object operand, boolean lazy) {
+        if (operand instanceof String) {
+            if (Symbols.variableId((String) operand) == Symbols.UNKNOWN)
+                return RESULT.UNKNOWN_VARIABLE;
+            return RESULT.VALID;
+        }
+        if (!(operand instanceof Expression))
+            return RESULT.VALID;
+
+        Expression expr = (Expression) operand;
+        String operator = expr.getOperator();
+        int operandCount = expr.getOperandCount();
+        if (operandCount == 0) {
+            if (Symbols.functionId(operator) == Symbols.UNKNOWN)
+                return RESULT.UNKNOWN_FUNCTION;
+            return RESULT.VALID;
+        }
+
+        int checked = operandCount;
+        if (lazy && operator.equals("if"))
+            checked = 1;
+        else if (lazy && isComparison(operator))
+            checked = Math.min(operandCount, 2);
+        for (int i = 0; i < checked; i++) {
+            RESULT result = verify(expr.getOperand(i), lazy);
+            if (result != RESULT.VALID)
+                return result;
+        }
+        return RESULT.VALID;
+    }
+
+    /**
+     * Logs the rejection of a program, at most once per second; rejections in
+     * between are counted and reported with the next logged one.
+     *
+     * @param program    the program text
+     * @param result     why the program was rejected
+     */
+    public static synchronized void logRejection(String program, RESULT result) {
+        long now = System.currentTimeMillis();
+        if (now - lastLogged < LOG_INTERVAL) {
+            suppressed++;
+            return;
+        }
+        log.info("Rejected program (" + result + "): " + program
+                + ((suppressed > 0) ? " [" + suppressed + " more since last report]" : ""));
+        lastLogged = now;
+        suppressed = 0;
+    }
+
+    /**
+     * @param operator    an operator name
+     * @return  whether the operator is a comparison
+     */
+    private static boolean isComparison(String operator) {
+        return operator.equals("<") || operator.equals("<=") || operator.equals(">")
+                || operator.equals(">=") || operator.equals("==") || operator.equals("!=");
+    }
+}
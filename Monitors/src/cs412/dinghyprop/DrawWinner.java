@@ -6,13 +6,17 @@
 
 package cs412.dinghyprop;
 
+import cs412.dinghyprop.genetics.EvaluationStrategy;
 import cs412.dinghyprop.interpreter.Interpreter;
 import cs412.dinghyprop.interpreter.Parser;
 import cs412.dinghyprop.interpreter.ParsingException;
 import cs412.dinghyprop.interpreter.TreeViewer;
 import cs412.dinghyprop.simulator.ISimulator;
+import cs412.dinghyprop.simulator.IStepObserver;
 import cs412.dinghyprop.simulator.Obstacle;
 import cs412.dinghyprop.simulator.Simulator;
+import cs412.dinghyprop.simulator.Symbols;
+import cs412.dinghyprop.simulator.VariableReferenceException;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
@@ -24,8 +28,6 @@ import java.awt.event.MouseListener;
 import java.awt.geom.AffineTransform;
 import java.io.IOException;
 import java.rmi.Naming;
-import java.util.Observable;
-import java.util.Observer;
 
 /**
  * This class provides a client for monitoring the progress of DinghyProp's
@@ -33,7 +35,7 @@ import java.util.Observer;
  * clicking the animation, a display of the programs AST (in tree form) is
  * created and displayed.
  */
-public class DrawWinner extends JPanel implements Observer{
+public class DrawWinner extends JPanel implements IStepObserver {
     private static final long serialVersionUID = -5236126589222504417L;
     private static final int DRAW_DELAY = 300;
     private int sizeX = 100, sizeY = 100;
@@ -44,7 +46,9 @@ public class DrawWinner extends JPanel implements Observer{
     private JComboBox dropDown;
     private ISimulator[] sims = null;
     private String currentProgram = "";
-    private int[] position = {0, 0};
+    private EvaluationStrategy strategy = EvaluationStrategy.EAGER;
+    private volatile int[] position = {0, 0};
+    private volatile int heading = 0;
     protected transient volatile Thread interpreterThread = null;
     private int scalingFactor = 2;
     private int halfStep = 1;
@@ -62,6 +66,7 @@ public class DrawWinner extends JPanel implements Observer{
 
         try {
             sims = server.getEvaluationSimulators();
+            strategy = server.getEvaluationStrategy();
         } catch (Exception e) {
             reportError("Could not retrieve simulators.", e);
         }
@@ -127,7 +132,8 @@ public class DrawWinner extends JPanel implements Observer{
 
     /**
      * Creates an interpreter with the current program and simulator, after
-     * registering as an observer to the simulator, and passes that to a thread
+     * moving its registration as an observer from the previous simulator to
+     * this one, and passes that to a thread
      * that will run the simulation.
      *
      * @param current  the simulation to run
@@ -135,22 +141,29 @@ public class DrawWinner extends JPanel implements Observer{
 	public void startSimulation(ISimulator current) {
         if (interpreterThread != null)
             interpreterThread = null;
+        if (currentSimulator != null)
+            currentSimulator.removeStepObserver(this);
         currentSimulator = (Simulator) current;
-        currentSimulator.addObserver(this);
+        currentSimulator.addStepObserver(this);
 		int[] size = currentSimulator.getSize();
 		sizeX = size[0];
 		sizeY = size[1];
 
         position = currentSimulator.getDinghy();
+        try {
+            heading = currentSimulator.reference(Symbols.HEADING);
+        } catch (VariableReferenceException ignored) { }
 		goal = currentSimulator.getGoal();
 		obstacles = currentSimulator.getObstacles();
 
         final String prog = currentProgram;
+        final EvaluationStrategy evaluation = strategy;
         interpreterThread = new Thread(new Runnable() {
             @Override
             public void run() {
                 try {
-                    Interpreter interpreter = new Interpreter(currentSimulator, prog);
+                    Interpreter interpreter = new Interpreter(currentSimulator, prog,
+                            Interpreter.MODE.TREE, evaluation);
                     Thread me = Thread.currentThread();
                     for (int i = 0; i < 100; i++) {
                         if (interpreterThread != me)
@@ -251,15 +264,18 @@ public class DrawWinner extends JPanel implements Observer{
 	}
 
     /**
-     * Observer callback -- notifies that the dinghy has bee moved.
-     * Updates the dinghy's position schedules repainting.
+     * Observer callback -- notifies that the dinghy has taken an action.
+     * Updates the dinghy's position and heading and schedules repainting.
      *
-     * @param o the observable object that was updated
-     * @param arg the object passed by notifyObservers
+     * @param action     the function ID of the action taken
+     * @param x          the dinghy's new x-position
+     * @param y          the dinghy's new y-position
+     * @param heading    the dinghy's new heading in degrees
      */
 	@Override
-	public void update(Observable o, Object arg) {
-        position = currentSimulator.getDinghy();
+	public void stepped(int action, int x, int y, int heading) {
+        position = new int[] {x, y};
+        this.heading = heading;
         repaint();
         try { Thread.sleep(DRAW_DELAY); } catch (InterruptedException ignored) { }
     }
@@ -280,25 +296,22 @@ public class DrawWinner extends JPanel implements Observer{
         int w = (dinghy.getWidth(null) / 2) * imageScaleRate;
         int h = (dinghy.getHeight(null) / 2) * imageScaleRate;
         int quadrants = 0;
-		try{
-            int heading = currentSimulator.reference("heading");
-            if (heading == 0) {
-                    tempX -= w;
-                    tempY -= h;
-            } else if (heading == 90) {
-                    quadrants = 3;
-                    tempX -= h;
-                    tempY += w;
-            } else if (heading == 180) {
-                    quadrants = 2;
-                    tempX += w;
-                    tempY += h;
-            } else /* if (heading == 270) */ {
-                    quadrants = 1;
-                    tempX += h;
-                    tempY -= w;
-			}
-		} catch(cs412.dinghyprop.simulator.VariableReferenceException ignored) { }
+        if (heading == 0) {
+                tempX -= w;
+                tempY -= h;
+        } else if (heading == 90) {
+                quadrants = 3;
+                tempX -= h;
+                tempY += w;
+        } else if (heading == 180) {
+                quadrants = 2;
+                tempX += w;
+                tempY += h;
+        } else /* if (heading == 270) */ {
+                quadrants = 1;
+                tempX += h;
+                tempY -= w;
+        }
 
         AffineTransform at = AffineTransform.getTranslateInstance(tempX + 5, tempY + 5);
         at.concatenate(AffineTransform.getQuadrantRotateInstance(quadrants));
@@ -0,0 +1,76 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop;
+
+import java.io.Serializable;
+
+/**
+ * The result of evaluating a program: its fitness, and the work it took to
+ * compute.
+ */
+public final class Evaluation implements Serializable {
+    private static final long serialVersionUID = 4021870386237091562L;
+
+    /**
+     * The number of program nodes one program's evaluation may visit, across
+     * all simulators; shared by every evaluator so that they score programs
+     * alike
+     */
+    public static final long NODE_BUDGET = 2500000;
+
+    /**
+     * The total summed fitness over the evaluator's test cases; 0 if the
+     * evaluation was over budget
+     */
+    public final int fitness;
+
+    /**
+     * The number of program nodes visited during the evaluation
+     */
+    public final long cost;
+
+    /**
+     * Whether the evaluation was terminated for exceeding its node-visit
+     * budget
+     */
+    public final boolean overBudget;
+
+    /**
+     * The work done by the evaluation, or null unless profiling is enabled
+     */
+    public final Profile profile;
+
+    /**
+     * @param fitness       the program's fitness
+     * @param cost          the number of program nodes visited
+     * @param overBudget    whether evaluation was terminated for exceeding
+     *                      its budget
+     */
+    public Evaluation(int fitness, long cost, boolean overBudget) {
+        this(fitness, cost, overBudget, null);
+    }
+
+    /**
+     * @param fitness       the program's fitness
+     * @param cost          the number of program nodes visited
+     * @param overBudget    whether evaluation was terminated for exceeding
+     *                      its budget
+     * @param profile       the work done by the evaluation, or null
+     */
+    public Evaluation(int fitness, long cost, boolean overBudget, Profile profile) {
+        this.fitness = fitness;
+        this.cost = cost;
+        this.overBudget = overBudget;
+        this.profile = profile;
+    }
+
+    @Override
+    public String toString() {
+        return "Evaluation{fitness=" + fitness + ", cost=" + cost
+                + (overBudget ? ", over budget" : "") + '}';
+    }
+}
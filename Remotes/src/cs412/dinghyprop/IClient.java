@@ -19,13 +19,14 @@ public interface IClient extends Remote {
 
     /**
      * Calculates the total summed fitness over any test case(s) the IClient
-     * has access to.
+     * has access to.  Evaluation is bounded by a node-visit budget; a program
+     * that exceeds it is stopped and given a fitness of 0.
      *
      * @param program    The program text
-     * @return The fitness of the program
+     * @return The fitness of the program and the cost of evaluating it
      * @throws RemoteException if an RMI error occurs
      */
-    int evaluateProgram(String program) throws RemoteException;
+    Evaluation evaluateProgram(String program) throws RemoteException;
 
     /**
      * Inform the client that it is not longer needed and may exit.
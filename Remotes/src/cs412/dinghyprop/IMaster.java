@@ -6,6 +6,7 @@
 
 package cs412.dinghyprop;
 
+import cs412.dinghyprop.genetics.EvaluationStrategy;
 import cs412.dinghyprop.genetics.Program;
 import cs412.dinghyprop.simulator.ISimulator;
 
@@ -30,6 +31,14 @@ public interface IMaster extends Remote, Serializable {
      */
     ISimulator[] getEvaluationSimulators() throws RemoteException;
 
+    /**
+     * Obtain the strategy that <b>ALL</b> evaluations of programs must use.
+     *
+     * @return  The GP run's evaluation strategy
+     * @throws RemoteException  if an RMI error occurs
+     */
+    EvaluationStrategy getEvaluationStrategy() throws RemoteException;
+
     /**
      * Register a client with the server as willing to evaluate program
      * fitness. <b>Important:</b> there is no requirement that a client
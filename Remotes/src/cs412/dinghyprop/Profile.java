@@ -0,0 +1,216 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop;
+
+import cs412.dinghyprop.simulator.Symbols;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Counts of the work done evaluating programs: operator evaluations, sensor
+ * reads, actions, ticks and nodes visited.
+ * <p>
+ * Profiling is enabled by starting the JVM with
+ * {@code -Ddinghyprop.profile=true}.  Code that records counts tests
+ * {@link #ENABLED} first; since it is a static final field, the JIT compiler
+ * drops those tests and everything behind them when profiling is disabled.
+ * <p>
+ * Profiles are not thread-safe.  Each interpreter and simulator should record
+ * into its own profile, which is then {@link #merge(Profile) merged} into
+ * per-client or per-generation totals.
+ */
+public final class Profile implements Serializable {
+    private static final long serialVersionUID = 6630851029512476340L;
+
+    /**
+     * Whether profiling is enabled for this JVM
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("dinghyprop.profile");
+
+    /**
+     * Operator names, indexed by their counter; unknown operators share the
+     * counter after the last
+     */
+    private static final String[] OPERATORS = {
+            "+", "-", "*", "/", "^", "<", "<=", ">", ">=", "==", "!=", "if"
+    };
+
+    /**
+     * Operator evaluations, indexed as {@code OPERATORS}
+     */
+    private final long[] operators = new long[OPERATORS.length + 1];
+
+    /**
+     * Variable references, indexed by variable ID
+     */
+    private final long[] sensors = new long[Symbols.variableCount()];
+
+    /**
+     * Function invocations, indexed by function ID
+     */
+    private final long[] actions = new long[Symbols.functionCount()];
+
+    /**
+     * Program passes evaluated
+     */
+    private long ticks = 0;
+
+    /**
+     * Program nodes visited
+     */
+    private long nodes = 0;
+
+    /**
+     * Records an operator evaluation.
+     *
+     * @param operator    the operator name
+     */
+    public void countOperator(String operator) {
+        operators[operatorIndex(operator)]++;
+    }
+
+    /**
+     * Records a variable reference.
+     *
+     * @param variableId    the variable's ID
+     */
+    public void countSensor(int variableId) {
+        if (variableId >= 0 && variableId < sensors.length)
+            sensors[variableId]++;
+    }
+
+    /**
+     * Records a function invocation.
+     *
+     * @param functionId    the function's ID
+     */
+    public void countAction(int functionId) {
+        if (functionId >= 0 && functionId < actions.length)
+            actions[functionId]++;
+    }
+
+    /**
+     * Records a program pass.
+     */
+    public void countTick() {
+        ticks++;
+    }
+
+    /**
+     * Records a program node visit.
+     */
+    public void countNode() {
+        nodes++;
+    }
+
+    /**
+     * Adds another profile's counts to this one.
+     *
+     * @param other    the profile to add
+     */
+    public void merge(Profile other) {
+        for (int i = 0; i < operators.length; i++)
+            operators[i] += other.operators[i];
+        for (int i = 0; i < sensors.length; i++)
+            sensors[i] += other.sensors[i];
+        for (int i = 0; i < actions.length; i++)
+            actions[i] += other.actions[i];
+        ticks += other.ticks;
+        nodes += other.nodes;
+    }
+
+    /**
+     * Sets every count to 0.
+     */
+    public void clear() {
+        Arrays.fill(operators, 0);
+        Arrays.fill(sensors, 0);
+        Arrays.fill(actions, 0);
+        ticks = 0;
+        nodes = 0;
+    }
+
+    /**
+     * @param operator    an operator name
+     * @return  the number of times the operator was evaluated; all unknown
+     * operators share one count
+     */
+    public long getOperatorCount(String operator) {
+        return operators[operatorIndex(operator)];
+    }
+
+    /**
+     * @param variableId    a variable ID
+     * @return  the number of times the variable was referenced
+     */
+    public long getSensorCount(int variableId) {
+        return sensors[variableId];
+    }
+
+    /**
+     * @param functionId    a function ID
+     * @return  the number of times the function was invoked
+     */
+    public long getActionCount(int functionId) {
+        return actions[functionId];
+    }
+
+    /**
+     * @return  the number of program passes evaluated
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @return  the number of program nodes visited
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @param operator    an operator name
+     * @return  the operator's counter index
+     */
+    private static int operatorIndex(String operator) {
+        for (int i = 0; i < OPERATORS.length; i++) {
+            if (OPERATORS[i].equals(operator))
+                return i;
+        }
+        return OPERATORS.length;
+    }
+
+    /**
+     * Lists the non-zero counts.
+     *
+     * @return  a one-line summary of this profile
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("ticks=").append(ticks).append(" nodes=").append(nodes);
+        sb.append(" operators{");
+        for (int i = 0; i < operators.length; i++) {
+            if (operators[i] != 0)
+                sb.append(' ').append(i < OPERATORS.length ? OPERATORS[i] : "?")
+                        .append('=').append(operators[i]);
+        }
+        sb.append(" } sensors{");
+        for (int i = 0; i < sensors.length; i++) {
+            if (sensors[i] != 0)
+                sb.append(' ').append(Symbols.variableName(i)).append('=').append(sensors[i]);
+        }
+        sb.append(" } actions{");
+        for (int i = 0; i < actions.length; i++) {
+            if (actions[i] != 0)
+                sb.append(' ').append(Symbols.functionName(i)).append('=').append(actions[i]);
+        }
+        return sb.append(" }").toString();
+    }
+}
@@ -0,0 +1,18 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.genetics;
+
+/**
+ * How the programs of a GP run are evaluated.
+ * <p>
+ * EAGER evaluates every operand of every node, including both branches of an
+ * {@code if}.  LAZY evaluates only the taken branch of an {@code if} and stops
+ * a comparison at its first failing pair, so actions in skipped operands are
+ * not performed.  A program's fitness depends on the strategy, so a GP run
+ * must use one strategy throughout.
+ */
+public enum EvaluationStrategy { EAGER, LAZY }
@@ -32,11 +32,38 @@ public interface ISimulator extends Cloneable, Serializable {
      */
     int reference(String variable) throws VariableReferenceException;
 
+    /**
+     *  Takes an action identified by its {@link Symbols} ID.
+     *
+     *  @param functionId The ID of the action that must be taken by the dinghy
+     *  @throws UnknownFunctionException if the ID is not valid.
+     */
+    void invoke(int functionId) throws UnknownFunctionException;
+
+    /**
+     *  Looks up a variable identified by its {@link Symbols} ID.
+     *
+     *  @param variableId The ID of the referenced variable
+     *  @return The value of the referenced variable
+     *  @throws VariableReferenceException If the ID is not valid
+     */
+    int reference(int variableId) throws VariableReferenceException;
+
     /**
      *  @return the fitness of the program
      */
     int getFitness();
 
+    /**
+     * Identifies the simulation's state.  A program evaluated in two states
+     * with the same identifier gives the same results and leaves the
+     * simulator in states with the same identifier, which lets interpreters
+     * detect programs that loop.
+     *
+     * @return the identifier of the current state
+     */
+    long getState();
+
     /**
      * @return Whether execution can continue
      */
@@ -0,0 +1,116 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.simulator;
+
+/**
+ * Symbol table of the simulator's variables and functions.
+ * <p>
+ * Interpreters resolve the names in a program to these IDs once, then call
+ * {@link ISimulator#reference(int)} and {@link ISimulator#invoke(int)}
+ * instead of passing names on every evaluation.
+ */
+public final class Symbols {
+    /**
+     * Returned for names that are not in the table
+     */
+    public static final int UNKNOWN = -1;
+
+    // variable IDs
+    public static final int FRONT = 0;
+    public static final int SHORT_LEFT = 1;
+    public static final int SHORT_RIGHT = 2;
+    public static final int LEFT = 3;
+    public static final int RIGHT = 4;
+    public static final int REAR = 5;
+    public static final int POSITION_X = 6;
+    public static final int POSITION_Y = 7;
+    public static final int GOAL_POSITION_X = 8;
+    public static final int GOAL_POSITION_Y = 9;
+    public static final int HEADING = 10;
+
+    // function IDs
+    public static final int MOVE = 0;
+    public static final int TURN_LEFT = 1;
+    public static final int TURN_RIGHT = 2;
+
+    /**
+     * Variable names, indexed by ID
+     */
+    private static final String[] VARIABLES = {
+            "front", "short-left", "short-right", "left", "right", "rear",
+            "position-x", "position-y", "goal-position-x", "goal-position-y",
+            "heading"
+    };
+
+    /**
+     * Function names, indexed by ID
+     */
+    private static final String[] FUNCTIONS = {
+            "move", "turn-left", "turn-right"
+    };
+
+    private Symbols() {}
+
+    /**
+     * @param name    a variable name
+     * @return  the variable's ID, or UNKNOWN
+     */
+    public static int variableId(String name) {
+        return find(VARIABLES, name);
+    }
+
+    /**
+     * @param name    a function name
+     * @return  the function's ID, or UNKNOWN
+     */
+    public static int functionId(String name) {
+        return find(FUNCTIONS, name);
+    }
+
+    /**
+     * @param id    a variable ID
+     * @return  the variable's name, or null if the ID is not valid
+     */
+    public static String variableName(int id) {
+        return (id >= 0 && id < VARIABLES.length) ? VARIABLES[id] : null;
+    }
+
+    /**
+     * @param id    a function ID
+     * @return  the function's name, or null if the ID is not valid
+     */
+    public static String functionName(int id) {
+        return (id >= 0 && id < FUNCTIONS.length) ? FUNCTIONS[id] : null;
+    }
+
+    /**
+     * @return  the number of variables; IDs run from 0 up to this
+     */
+    public static int variableCount() {
+        return VARIABLES.length;
+    }
+
+    /**
+     * @return  the number of functions; IDs run from 0 up to this
+     */
+    public static int functionCount() {
+        return FUNCTIONS.length;
+    }
+
+    /**
+     * @param names    a name table
+     * @param name     the name to look up
+     * @return  the name's index, or UNKNOWN
+     */
+    private static int find(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name))
+                return i;
+        }
+        return UNKNOWN;
+    }
+}
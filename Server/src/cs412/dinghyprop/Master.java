@@ -7,6 +7,7 @@
 package cs412.dinghyprop;
 
 import cs412.dinghyprop.genetics.CheckpointLoader;
+import cs412.dinghyprop.genetics.EvaluationStrategy;
 import cs412.dinghyprop.genetics.GeneticProgram;
 import cs412.dinghyprop.genetics.IPopulationObserver;
 import cs412.dinghyprop.genetics.Program;
@@ -94,6 +95,23 @@ public class Master extends UnicastRemoteObject implements IMaster, IPopulationO
      */
     private int worst;
 
+    /**
+     * The number of program nodes visited evaluating the current generation
+     */
+    private long cost;
+
+    /**
+     * The number of programs in the current generation stopped for exceeding
+     * the node-visit budget
+     */
+    private int overBudget;
+
+    /**
+     * The work done evaluating the current generation, or null unless
+     * profiling is enabled
+     */
+    private final transient Profile profile = Profile.ENABLED ? new Profile() : null;
+
     /**
      * The current generations best-yet program
      */
@@ -163,6 +181,10 @@ public class Master extends UnicastRemoteObject implements IMaster, IPopulationO
                 break;
             }
 
+            log.info("Evaluated generation #" + Integer.toString(i - 1) + ": "
+                    + cost + " node visits, " + overBudget + " over budget");
+            if (Profile.ENABLED)
+                log.info("Profile of generation #" + Integer.toString(i - 1) + ": " + profile);
             resetStatistics();
             leader = frontRunner;
 
@@ -262,9 +284,9 @@ public class Master extends UnicastRemoteObject implements IMaster, IPopulationO
             @Override
             public void run() {
                 try {
-                    int fitness = client.evaluateProgram(program.program);
+                    Evaluation evaluation = client.evaluateProgram(program.program);
                     enqueueClient(client);
-                    updateFitness(index, fitness);
+                    updateFitness(index, evaluation);
                 } catch (RemoteException ignored) {
                     enqueueProgram(index, program);
                 }
@@ -276,13 +298,13 @@ public class Master extends UnicastRemoteObject implements IMaster, IPopulationO
     /**
      * Updates the fitness of a program with the GeneticProgram.
      *
-     * @param index      the index of the program to update
-     * @param fitness    the fitness to assign the program
+     * @param index         the index of the program to update
+     * @param evaluation    the program's evaluation
      */
-    private synchronized void updateFitness(int index, int fitness) {
-        geneticProgram.setProgramFitness(index, fitness);
+    private synchronized void updateFitness(int index, Evaluation evaluation) {
+        geneticProgram.setProgramFitness(index, evaluation.fitness);
         programsRemaining--;
-        updateStatistic(index, fitness);
+        updateStatistic(index, evaluation);
         notifyAll();
     }
 
@@ -291,6 +313,11 @@ public class Master extends UnicastRemoteObject implements IMaster, IPopulationO
         return simulators;
     }
 
+    @Override
+    public EvaluationStrategy getEvaluationStrategy() throws RemoteException {
+        return geneticProgram.getEvaluationStrategy();
+    }
+
     @Override
     public Program getCurrentLeader() throws RemoteException {
         if (frontRunner == null)
@@ -361,10 +388,16 @@ public class Master extends UnicastRemoteObject implements IMaster, IPopulationO
     /**
      * Updates the statistics fields with new fitness information.
      *
-     * @param index      the index of a program
-     * @param fitness    the program's fitness
-     */
-    private void updateStatistic(int index, int fitness) {
+     * @param index         the index of a program
+     * @param evaluation    the program's evaluation
+     */
+    private void updateStatistic(int index, Evaluation evaluation) {
+        int fitness = evaluation.fitness;
+        cost += evaluation.cost;
+        if (evaluation.overBudget)
+            overBudget++;
+        if (Profile.ENABLED && evaluation.profile != null)
+            profile.merge(evaluation.profile);
         if (fitness < worst)
             worst = fitness;
         if (fitness > best) {
@@ -379,6 +412,10 @@ public class Master extends UnicastRemoteObject implements IMaster, IPopulationO
     private void resetStatistics() {
         worst = Integer.MAX_VALUE;
         best = Integer.MIN_VALUE;
+        cost = 0;
+        overBudget = 0;
+        if (Profile.ENABLED)
+            profile.clear();
     }
 
     @Override
@@ -389,38 +426,73 @@ public class Master extends UnicastRemoteObject implements IMaster, IPopulationO
     /**
      * Registers a new server with RMI.
      * <p>
-     * This entry point accepts one required and one option argument.  The
-     * required argument is the directory path to the simulator files and it
-     * appears first.  It is optionally followed by the path to a checkpoint
-     * directory, which (if specified) will load the last version of that GP
-     * and continue it.
+     * This entry point accepts one required and two optional arguments.  The
+     * evaluation strategy of a new GP may be given first, as {@code -s}
+     * followed by {@code eager} (the default) or {@code lazy}.  The required
+     * argument is the directory path to the simulator files.  It is
+     * optionally followed by the path to a checkpoint directory, which (if
+     * specified) will load the last version of that GP and continue it with
+     * the strategy recorded in the checkpoint.
      *
-     * @param args    the directory path where simulator files are stored, and,
-     *                optionally, a checkpoint directory
+     * @param args    optionally -s and an evaluation strategy, the directory
+     *                path where simulator files are stored, and, optionally, a
+     *                checkpoint directory
      * @throws Exception if RMI problems occur when creating the server or
      * registering it with the RMI registry
      */
     public static void main(String[] args) throws Exception {
-        if (args.length < 1) {
-            System.err.println("Usage: Master <simulation_directory> "
-                    + "[checkpoint_directory]");
-            System.exit(-1);
+        EvaluationStrategy strategy = null;
+        int arg = 0;
+        if (args.length > 1 && args[0].compareTo("-s") == 0) {
+            strategy = parseStrategy(args[1]);
+            arg = 2;
         }
+        if (args.length - arg < 1 || args.length - arg > 2)
+            usage();
 
-        SimulationDirLoader sdl = new SimulationDirLoader(args[0]);
+        SimulationDirLoader sdl = new SimulationDirLoader(args[arg]);
         ISimulator[] simulators = sdl.load();
 
         GeneticProgram gp;
-        if (args.length == 2) {
-            gp = loadCheckpoint(args[1]);
+        if (args.length - arg == 2) {
+            gp = loadCheckpoint(args[arg + 1]);
+            if (strategy != null && strategy != gp.getEvaluationStrategy()) {
+                System.err.println("The checkpoint was evaluated "
+                        + gp.getEvaluationStrategy() + ", not " + strategy + '.');
+                System.exit(-1);
+            }
         } else {
             gp = new GeneticProgram(POPULATION_SIZE,
-                    GeneticProgram.INIT_POP_METHOD.RHALF_AND_HALF, 3);
+                    GeneticProgram.INIT_POP_METHOD.RHALF_AND_HALF, 3,
+                    (strategy == null) ? EvaluationStrategy.EAGER : strategy);
         }
 
         new Master(gp, simulators, GENERATIONS).runGP();
     }
 
+    /**
+     * @param name    the name of an evaluation strategy, in any case
+     * @return  the named strategy; prints usage and exits if there is none
+     */
+    private static EvaluationStrategy parseStrategy(String name) {
+        try {
+            return EvaluationStrategy.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown evaluation strategy: " + name);
+            usage();
+            return null;
+        }
+    }
+
+    /**
+     * Prints usage message and exits with an error return.
+     */
+    private static void usage() {
+        System.err.println("Usage: Master [-s eager|lazy] <simulation_directory> "
+                + "[checkpoint_directory]");
+        System.exit(-1);
+    }
+
     /**
      * Loads a checkpoint of a genetic program.
      *
@@ -65,13 +65,14 @@ public class SimulationDirLoader {
     }
 
     /**
-     * Delegates the loading of a file to {@link SimulatorFile}.
+     * Delegates the loading of a file to {@link SimulatorFile}, which
+     * precomputes the simulator's sensor readings when they fit.
      *
      * @param file    the file to load from
      * @return a simulator as specified in {@code file}
      */
     private Simulator loadFile(File file) {
-        SimulatorFile sf = new SimulatorFile(file);
+        SimulatorFile sf = new SimulatorFile(file, Simulator.DEFAULT_SENSOR_TABLE_LIMIT);
         return sf.getSim();
     }
 
@@ -59,6 +59,11 @@ public final class CheckpointLoader {
      */
     private double mutation = 0.0;
 
+    /**
+     * The evaluation strategy of the checkpointed GP
+     */
+    private EvaluationStrategy evaluation = EvaluationStrategy.EAGER;
+
     /**
      * Registers a constructor for a class that implements the Selector
      * interface.  The constructor can be zero-argument or one(int)-argument.
@@ -147,7 +152,7 @@ public final class CheckpointLoader {
             return null;
         }
 
-        GeneticProgram gp = new GeneticProgram(programs, crossOver, mutation);
+        GeneticProgram gp = new GeneticProgram(programs, crossOver, mutation, evaluation);
         Selector sel = createSelector();
         if (sel != null)
             gp.setSelector(sel);
@@ -182,9 +187,10 @@ public final class CheckpointLoader {
      * Parses the "data line" from a checkpoint file.  The line should have the
      * form:
      * <pre>
-     # &lt;pop_size&gt; &lt;selector&gt; &lt;x-over_rate&gt; &lt;mutation_rate&gt; &lt;reproduction_rate&gt;
+     # &lt;pop_size&gt; &lt;selector&gt; &lt;x-over_rate&gt; &lt;mutation_rate&gt; &lt;reproduction_rate&gt; &lt;evaluation&gt;
      * </pre>
-     * including the leading '#'.
+     * including the leading '#'.  Checkpoints written before the evaluation
+     * strategy was recorded lack that field; their runs were eager.
      *
      * @throws IOException  if an exception is thrown while reading the input
      */
@@ -201,6 +207,13 @@ public final class CheckpointLoader {
         selector = fields[2];
         crossOver = Double.parseDouble(fields[3]);
         mutation = Double.parseDouble(fields[4]);
+        if (fields.length > 6) {
+            try {
+                evaluation = EvaluationStrategy.valueOf(fields[6]);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown evaluation strategy: " + fields[6]);
+            }
+        }
     }
 
     /**
@@ -82,6 +82,9 @@ public final class GeneticProgram {
     // this object selects individuals for genetic operators
     private Selector selector = new TournamentSelector(2);
 
+    // how individuals are evaluated; fixed for the whole run
+    private final EvaluationStrategy evaluationStrategy;
+
     // population initialization method
     private INIT_POP_METHOD init_pop_method = INIT_POP_METHOD.RHALF_AND_HALF;
     // max depth of initial generation's programs
@@ -110,11 +113,14 @@ public final class GeneticProgram {
      * @param method            the initialization method
      * @param maxDepth          the maximum initial depth of any individual
      *                          program tree
+     * @param strategy          how individuals are to be evaluated
      */
-    public GeneticProgram(int populationSize, INIT_POP_METHOD method, int maxDepth) {
+    public GeneticProgram(int populationSize, INIT_POP_METHOD method, int maxDepth,
+                          EvaluationStrategy strategy) {
         this.populationSize = populationSize;
         this.init_pop_method = method;
         this.initialMaxDepth = maxDepth;
+        this.evaluationStrategy = strategy;
     }
 
     /**
@@ -123,10 +129,13 @@ public final class GeneticProgram {
      * @param population       The population to use
      * @param crossoverRate    The crossover rate
      * @param mutationRate     The mutation rate
+     * @param strategy         How individuals are evaluated
      */
-    GeneticProgram(Program[] population, double crossoverRate, double mutationRate) {
+    GeneticProgram(Program[] population, double crossoverRate, double mutationRate,
+                   EvaluationStrategy strategy) {
         this.population = population;
         this.populationSize = population.length;
+        this.evaluationStrategy = strategy;
         setCrossoverRate(crossoverRate);
         setMutationRate(mutationRate);
     }
@@ -298,6 +307,13 @@ public final class GeneticProgram {
         return crossoverRate;
     }
 
+    /**
+     * @return  how individuals are evaluated
+     */
+    public EvaluationStrategy getEvaluationStrategy() {
+        return evaluationStrategy;
+    }
+
     /**
      * @return  the density of if statements to use when growing individuals
      */
@@ -683,14 +699,16 @@ public final class GeneticProgram {
 
     @Override
     public String toString() {
-        // # <pop_size> <selector> <x-over_rate> <mutation_rate> <reproduction_rate>
+        // # <pop_size> <selector> <x-over_rate> <mutation_rate> <reproduction_rate> <evaluation>
         StringBuilder sb = new StringBuilder("# ");
         sb.append(String.format("%d ", populationSize));
         sb.append(selector.toString());
         sb.append(' ');
         sb.append(String.format("%01.4f ", crossoverRate));
         sb.append(String.format("%01.4f ", mutationRate));
-        sb.append(String.format("%01.4f\n", reproductionRate));
+        sb.append(String.format("%01.4f ", reproductionRate));
+        sb.append(evaluationStrategy);
+        sb.append('\n');
 
         for (int i = 0; i < populationSize; i++) {
             sb.append(population[i].toString());
@@ -22,6 +22,16 @@ public class Dinghy extends Point{
      */
     private enum Direction { NORTH, EAST, SOUTH, WEST }
 
+    /**
+     * The x-component of a unit step in each direction, by ordinal
+     */
+    private static final int[] STEP_X = {0, 1, 0, -1};
+
+    /**
+     * The y-component of a unit step in each direction, by ordinal
+     */
+    private static final int[] STEP_Y = {1, 0, -1, 0};
+
     /**
      * Stores current direction of dinghy
      */
@@ -46,11 +56,25 @@ public class Dinghy extends Point{
 	 * @param dinghy This is the dinghy that needs to be cloned
 	 */
 	public Dinghy(Dinghy dinghy) {
-		super(dinghy.getPosition()[0], dinghy.getPosition()[1]);
+		super(dinghy.getX(), dinghy.getY());
 		distTravelled = dinghy.distTravelled;
 		direc = dinghy.direc;
 	}
 
+	/**
+	 * Returns the dinghy to a start position, heading north, with no
+	 * distance travelled.
+	 *
+	 * @param startX The X position to return to.
+	 * @param startY The Y position to return to.
+	 */
+	protected void reset(int startX, int startY) {
+		setX(startX);
+		setY(startY);
+		distTravelled = 0;
+		direc = Direction.NORTH;
+	}
+
     /**
      * Wrap the dinghy around the map.
      *
@@ -58,19 +82,20 @@ public class Dinghy extends Point{
      * @param y    The y dimension of the map
      */
 	public void wrap(int x, int y) {
-        int[] currPos = getPosition();
+        int currX = getX();
+        int currY = getY();
 
-        if (currPos[0] > x)
-            setX(currPos[0] - x);
+        if (currX > x)
+            setX(currX - x);
 
-        if (currPos[0] < 0)
-            setX(currPos[0] + x);
+        if (currX < 0)
+            setX(currX + x);
 
-        if (currPos[1] > y)
-            setY(currPos[1] - y);
+        if (currY > y)
+            setY(currY - y);
 
-        if (currPos[1] < 0)
-            setY(currPos[1] + y);
+        if (currY < 0)
+            setY(currY + y);
 	}
 
 	/**
@@ -197,41 +222,12 @@ public class Dinghy extends Point{
 	 * @return the distance to the obstacle in the given direction(-1 if obstacle not in direction).
 	 */
 	protected int getDistanceInDirection(Direction direction, Obstacle obst) {
-		int[] obstPos = obst.getPosition();
-		int[] dinghyPos = this.getPosition();
-		int result = 0;
-		int temp;
-		switch(direction) {
-			case NORTH:
-				temp = obstPos[1] - dinghyPos[1];
-				if(temp >= 0 && (obstPos[0] - dinghyPos[0]) == 0)
-					result = temp;
-				else
-					result = -1;
-				break;
-			case EAST:
-				temp = obstPos[0] - dinghyPos[0];
-				if(temp >= 0 && (obstPos[1] - dinghyPos[1]) == 0)
-					result = temp;
-				else
-					result = -1;
-				break;
-			case SOUTH:
-				temp = dinghyPos[1] - obstPos[1];
-				if(temp >= 0 && (dinghyPos[0] - obstPos[0]) == 0)
-					result = temp;
-				else
-					result = -1;
-				break;
-			case WEST:
-				temp = dinghyPos[0] - obstPos[0];
-				if(temp >= 0 && (dinghyPos[1] - obstPos[1]) == 0)
-					result = temp;
-				else
-					result = -1;
-				break;
-		}
-		return result;
+		int distX = getDistanceX(obst);
+		int distY = getDistanceY(obst);
+		int heading = direction.ordinal();
+		int along = distX * STEP_X[heading] + distY * STEP_Y[heading];
+		int across = distX * STEP_Y[heading] - distY * STEP_X[heading];
+		return (across == 0 && along >= 0) ? along : -1;
 	}
 	
 	/**
@@ -276,16 +272,16 @@ public class Dinghy extends Point{
      * angle to the left of the dinghy
 	 */
 	protected int getDistanceShortLeft(Obstacle obst) {
-		int[] obstaclePosition = obst.getPosition();
-		int[] dinghyPosition = this.getPosition();
+		int distX = getDistanceX(obst);
+		int distY = getDistanceY(obst);
 
-        if (direc == Direction.NORTH && checkConditions(obstaclePosition, dinghyPosition, -1, '>'))
+        if (direc == Direction.NORTH && hasSlope(distX, distY, -1) && distY > 0)
             return this.getDistance(obst);
-        if (direc == Direction.EAST && checkConditions(obstaclePosition, dinghyPosition, 1, '>'))
+        if (direc == Direction.EAST && hasSlope(distX, distY, 1) && distY > 0)
             return this.getDistance(obst);
-        if (direc == Direction.SOUTH && checkConditions(obstaclePosition, dinghyPosition, -1, '<'))
+        if (direc == Direction.SOUTH && hasSlope(distX, distY, -1) && distY < 0)
             return this.getDistance(obst);
-        if (direc == Direction.WEST && checkConditions(obstaclePosition, dinghyPosition, 1, '<'))
+        if (direc == Direction.WEST && hasSlope(distX, distY, 1) && distY < 0)
             return this.getDistance(obst);
 
 		return -1;
@@ -297,53 +293,39 @@ public class Dinghy extends Point{
      * angle to the right of the dinghy
      */
 	protected int getDistanceShortRight(Obstacle obst) {
-		int[] obstaclePosition = obst.getPosition();
-		int[] dinghyPosition = this.getPosition();
+		int distX = getDistanceX(obst);
+		int distY = getDistanceY(obst);
 
-        if (direc == Direction.NORTH && checkConditions(obstaclePosition, dinghyPosition, 1, '>'))
+        if (direc == Direction.NORTH && hasSlope(distX, distY, 1) && distY > 0)
             return this.getDistance(obst);
-        if (direc == Direction.EAST && checkConditions(obstaclePosition, dinghyPosition, -1, '<'))
+        if (direc == Direction.EAST && hasSlope(distX, distY, -1) && distY < 0)
             return this.getDistance(obst);
-        if (direc == Direction.SOUTH && checkConditions(obstaclePosition, dinghyPosition, 1, '<'))
+        if (direc == Direction.SOUTH && hasSlope(distX, distY, 1) && distY < 0)
             return this.getDistance(obst);
-        if (direc == Direction.WEST && checkConditions(obstaclePosition, dinghyPosition, -1, '>'))
+        if (direc == Direction.WEST && hasSlope(distX, distY, -1) && distY > 0)
             return this.getDistance(obst);
 
         return -1;
 	}
-	
-	/**
-	 * Checks to make sure that the slope is correct and the obstacle is in the
-     * correct plane for the slope.
-     *
-	 * @param obstaclePos xy-array that stores the current obstacle position
-	 * @param dinghyPos xy-array that stores the current dinghy position
-	 * @param expectedVal the expected slope value
-	 * @param oper comparison specified as '&lt;' or '&gt;'
-	 * @return true if slope is correct and obstacle is in correct plane.
-	 */
-	private boolean checkConditions(int[] obstaclePos, int[] dinghyPos, int expectedVal, char oper) {
-        if (oper == '<')
-            return getSlope(obstaclePos, dinghyPos) == expectedVal && obstaclePos[1] < dinghyPos[1];
-		else // oper == '>'
-            return getSlope(obstaclePos, dinghyPos) == expectedVal && obstaclePos[1] > dinghyPos[1];
-	}
-	
+
 	/**
-	 * Calculates the slope between the dinghy and a given obstacle.
-     *
-	 * @param obstaclePosition xy-array that stores the current obstacle position
-	 * @param dinghyPosition xy-array that stores the current dinghy position
-	 * @return the slope between the dinghy and the obstacle
+	 * Checks whether the slope to an offset, truncated to an integer as
+	 * integer division would, is 1 or -1, without dividing.  After flipping
+	 * the offset so that the expected slope is 1 and distX is positive, the
+	 * quotient truncates to 1 exactly when distX &lt;= distY &lt; 2 distX.
+	 *
+	 * @param distX the x-component of the offset
+	 * @param distY the y-component of the offset
+	 * @param slope the expected slope value, 1 or -1
+	 * @return true if the truncated slope is {@code slope}
 	 */
-	private int getSlope(int[] obstaclePosition, int[] dinghyPosition) {
-		int result = 0;
-		int numerator = obstaclePosition[1] - dinghyPosition[1];
-		int denominator = obstaclePosition[0] - dinghyPosition[0];
-		if(denominator != 0) {
-			result = numerator / denominator;
+	static boolean hasSlope(int distX, int distY, int slope) {
+		if (slope < 0)
+			distY = -distY;
+		if (distX < 0) {
+			distX = -distX;
+			distY = -distY;
 		}
-		
-		return result;
+		return distX != 0 && distX <= distY && distY - distX < distX;
 	}
 }
@@ -29,14 +29,6 @@ public class Goal extends Point{
      * @return Returns true if the dinghy has reached the goal.
      */
 	public boolean success(Dinghy dinghy) {
-		int[] dinghyPos = dinghy.getPosition();
-		int[] goalPos = this.getPosition();
-		boolean success = false;
-		
-		if (dinghyPos[0] == goalPos[0] && dinghyPos[1] == goalPos[1]){
-			success = true;
-		}
-		
-		return success;
+		return dinghy.getX() == getX() && dinghy.getY() == getY();
 	}
 }
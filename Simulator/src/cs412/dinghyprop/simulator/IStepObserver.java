@@ -0,0 +1,24 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.simulator;
+
+/**
+ * Interface for objects which want to be notified of each action a
+ * {@link Simulator}'s dinghy takes.
+ */
+public interface IStepObserver {
+
+    /**
+     * Notifies the observer that the dinghy has taken an action.
+     *
+     * @param action     the function ID of the action taken
+     * @param x          the dinghy's x-position after the action
+     * @param y          the dinghy's y-position after the action
+     * @param heading    the dinghy's heading in degrees after the action
+     */
+    void stepped(int action, int x, int y, int heading);
+}
@@ -0,0 +1,246 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.simulator;
+
+import java.io.Serializable;
+
+/**
+ * An index of the obstacles in a simulation by the cell they occupy.
+ * <p>
+ * The distance sensors report the first obstacle in the simulation's list
+ * that lies along them, not the nearest, so each cell holds the index of the
+ * first obstacle in it rather than a single occupied bit.  A sensor query
+ * then marches along the cells of its ray instead of testing every obstacle.
+ * The diagonal sensors look across a wedge rather than along a ray, so they
+ * still test every obstacle, but against positions kept here rather than
+ * arrays allocated for each test.
+ * <p>
+ * The grid covers positions from (0, 0) to (sizeX, sizeY) inclusive, the
+ * positions a dinghy can be wrapped into.  Obstacles placed outside it are
+ * counted, and the grid reports itself incomplete until they are moved in.
+ */
+final class OccupancyGrid implements Serializable {
+    private static final long serialVersionUID = -2712394061534458915L;
+
+    /**
+     * The number of columns
+     */
+    private final int width;
+
+    /**
+     * The number of rows
+     */
+    private final int height;
+
+    /**
+     * One more than the index of the first obstacle in each cell, or 0 for
+     * an empty cell, stored row by row
+     */
+    private final int[] cells;
+
+    /**
+     * The x-position of each obstacle
+     */
+    private final int[] obstacleX;
+
+    /**
+     * The y-position of each obstacle
+     */
+    private final int[] obstacleY;
+
+    /**
+     * Whether each obstacle has been placed, and where: 0 if not placed, 1 if
+     * inside the grid, -1 if outside it
+     */
+    private final byte[] placement;
+
+    /**
+     * The number of obstacles not placed, or placed outside the grid
+     */
+    private int missing;
+
+    /**
+     * @param sizeX          the width of the simulation
+     * @param sizeY          the height of the simulation
+     * @param numObstacles   the number of obstacles in the simulation
+     */
+    OccupancyGrid(int sizeX, int sizeY, int numObstacles) {
+        width = sizeX + 1;
+        height = sizeY + 1;
+        cells = new int[width * height];
+        obstacleX = new int[numObstacles];
+        obstacleY = new int[numObstacles];
+        placement = new byte[numObstacles];
+        missing = numObstacles;
+    }
+
+    /**
+     * Copies a grid.
+     *
+     * @param grid    the grid to copy
+     */
+    OccupancyGrid(OccupancyGrid grid) {
+        width = grid.width;
+        height = grid.height;
+        cells = grid.cells.clone();
+        obstacleX = grid.obstacleX.clone();
+        obstacleY = grid.obstacleY.clone();
+        placement = grid.placement.clone();
+        missing = grid.missing;
+    }
+
+    /**
+     * Moves an obstacle to a new position.
+     *
+     * @param index    the index of the obstacle
+     * @param x        the new x-position of the obstacle
+     * @param y        the new y-position of the obstacle
+     */
+    void place(int index, int x, int y) {
+        if (placement[index] == 1) {
+            missing++;
+            int cell = obstacleY[index] * width + obstacleX[index];
+            if (cells[cell] == index + 1) {
+                cells[cell] = 0;
+                for (int other = index + 1; other < placement.length; other++) {
+                    if (placement[other] == 1
+                            && obstacleY[other] * width + obstacleX[other] == cell) {
+                        cells[cell] = other + 1;
+                        break;
+                    }
+                }
+            }
+        }
+
+        obstacleX[index] = x;
+        obstacleY[index] = y;
+        if (!contains(x, y)) {
+            placement[index] = -1;
+            return;
+        }
+        placement[index] = 1;
+        missing--;
+        int cell = y * width + x;
+        if (cells[cell] == 0 || cells[cell] > index + 1)
+            cells[cell] = index + 1;
+    }
+
+    /**
+     * @return  whether every obstacle has been placed inside the grid, so the
+     * grid answers for all of them
+     */
+    boolean isComplete() {
+        return missing == 0;
+    }
+
+    /**
+     * @param x    an x-position
+     * @param y    a y-position
+     * @return  whether the position lies inside the grid
+     */
+    boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /**
+     * @return  the number of cells in the grid
+     */
+    int getCellCount() {
+        return cells.length;
+    }
+
+    /**
+     * @param x    an x-position inside the grid
+     * @param y    a y-position inside the grid
+     * @return  the index of the position's cell
+     */
+    int cell(int x, int y) {
+        return y * width + x;
+    }
+
+    /**
+     * @param x    an x-position inside the grid
+     * @param y    a y-position inside the grid
+     * @return  the index of the first obstacle at the position, or -1 if
+     * there is none
+     */
+    int first(int x, int y) {
+        return cells[y * width + x] - 1;
+    }
+
+    /**
+     * Finds the first obstacle along a ray, not counting the ray's origin.
+     *
+     * @param x             the x-position of the ray's origin, inside the grid
+     * @param y             the y-position of the ray's origin, inside the grid
+     * @param stepX         the ray's x-direction: -1, 0 or 1
+     * @param stepY         the ray's y-direction: -1, 0 or 1
+     * @param upperBound    the distance at which the ray ends
+     * @return  the index of the first obstacle less than upperBound cells
+     * along the ray, or -1 if there is none
+     */
+    int firstOnRay(int x, int y, int stepX, int stepY, int upperBound) {
+        int first = Integer.MAX_VALUE;
+        x += stepX;
+        y += stepY;
+        for (int distance = 1; distance < upperBound && contains(x, y); distance++) {
+            int index = cells[y * width + x] - 1;
+            if (index >= 0 && index < first) {
+                first = index;
+                if (first == 0)
+                    break;
+            }
+            x += stepX;
+            y += stepY;
+        }
+        return (first == Integer.MAX_VALUE) ? -1 : first;
+    }
+
+    /**
+     * Finds the first obstacle whose slope from a position, truncated to an
+     * integer, is 1 or -1, the test the diagonal sensors apply.  Such an
+     * obstacle is never at the position itself, so none can end the
+     * simulation.
+     *
+     * @param x             the x-position of the dinghy
+     * @param y             the y-position of the dinghy
+     * @param slope         the truncated slope, 1 or -1
+     * @param above         whether the obstacle must be above the dinghy
+     *                      rather than below it
+     * @param upperBound    the distance at which to stop looking
+     * @return  the distance to the first such obstacle, or upperBound if there
+     * is none
+     */
+    int firstOnSlope(int x, int y, int slope, boolean above, int upperBound) {
+        for (int index = 0; index < obstacleX.length; index++) {
+            int distX = obstacleX[index] - x;
+            int distY = obstacleY[index] - y;
+            if (!Dinghy.hasSlope(distX, distY, slope) || (distY > 0) != above)
+                continue;
+            int distance = Point.squareRoot((long) distX * distX + (long) distY * distY);
+            if (distance < upperBound)
+                return distance;
+        }
+        return upperBound;
+    }
+
+    /**
+     * @param index    the index of an obstacle
+     * @return  the obstacle's x-position
+     */
+    int getX(int index) {
+        return obstacleX[index];
+    }
+
+    /**
+     * @param index    the index of an obstacle
+     * @return  the obstacle's y-position
+     */
+    int getY(int index) {
+        return obstacleY[index];
+    }
+}
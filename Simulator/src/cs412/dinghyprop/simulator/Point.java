@@ -12,6 +12,10 @@ import java.io.Serializable;
  * This is the superclass for Goal, Obstacle, and Dinghy. This class stores
  * position information and provides methods to retrieve and manipulate that
  * information.
+ * <p>
+ * Apart from {@link #getPosition}, which returns a new array, the accessors
+ * and distance methods allocate nothing and use integer arithmetic, so they
+ * can be used inside the sensor loops.
  */
 public class Point implements Serializable{
 
@@ -42,6 +46,20 @@ public class Point implements Serializable{
 	public int[] getPosition() {
         return new int[]{posX, posY};
 	}
+
+	/**
+	 * @return the current X position
+	 */
+	public int getX() {
+		return posX;
+	}
+
+	/**
+	 * @return the current Y position
+	 */
+	public int getY() {
+		return posY;
+	}
 	
 	/**
 	 * @param x the new X position
@@ -80,12 +98,34 @@ public class Point implements Serializable{
 	 * @return the distance between this point and {@code p}
 	 */
 	protected int getDistance(Point p) {
-        int[] pos = p.getPosition();
-		
-		int distX = pos[0] - this.posX;
-		int distY = pos[1] - this.posY;
+        return squareRoot(getDistanceSquared(p));
+	}
+
+	/**
+	 * @param p another point
+	 * @return the square of the distance between this point and {@code p}
+	 */
+	protected long getDistanceSquared(Point p) {
+		long distX = p.posX - this.posX;
+		long distY = p.posY - this.posY;
+		return distX * distX + distY * distY;
+	}
 
-        return (int) Math.sqrt(Math.pow(distX, 2) + Math.pow(distY, 2));
+	/**
+	 * Computes the integer square root of a non-negative number.  The
+	 * floating-point root is only an estimate, corrected in integer
+	 * arithmetic, so the result is exact for every input.
+	 *
+	 * @param n a non-negative number
+	 * @return the largest integer whose square is at most {@code n}
+	 */
+	static int squareRoot(long n) {
+		long root = (long) Math.sqrt(n);
+		while (root * root > n)
+			root--;
+		while ((root + 1) * (root + 1) <= n)
+			root++;
+		return (int) root;
 	}
 	
 	/**
@@ -95,8 +135,7 @@ public class Point implements Serializable{
 	 * @return the x-component distance between this point and {@code p}
 	 */
 	protected int getDistanceX(Point p) {
-        int[] pos = p.getPosition();
-        return pos[0] - this.posX;
+        return p.posX - this.posX;
 	}
 
     /**
@@ -106,7 +145,6 @@ public class Point implements Serializable{
      * @return the y-component distance between this point and {@code p}
      */
 	protected int getDistanceY(Point p) {
-        int[] pos = p.getPosition();
-        return pos[1] - this.posY;
+        return p.posY - this.posY;
 	}
 }
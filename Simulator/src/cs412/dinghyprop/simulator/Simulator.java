@@ -6,15 +6,34 @@
 
 package cs412.dinghyprop.simulator;
 
-import java.util.Observable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Dinghy environment simulator
  * <p>
  * Manages the state of a simulation and provides variable referencing and
  * function invocation to interpreters.
+ * <p>
+ * The map, goal and obstacles are kept in a {@link World} that clones share,
+ * so a clone copies only the dinghy and the sensor cache.  A simulator that
+ * changes its map after being cloned takes its own copy of the world first.
+ * A finished simulation can be returned to its start with {@link #reset}.
+ * <p>
+ * Objects can follow the dinghy by registering an {@link IStepObserver}.
+ * Observers are not copied to clones.
+ * <p>
+ * Distance sensor readings are cached until the dinghy next moves or turns,
+ * so reading the same sensor again costs an array load rather than a scan of
+ * the obstacles.  Once every obstacle lies on the map, the obstacles are also
+ * indexed by the cell they occupy, and the sensors along the dinghy's axes
+ * and the collision check read the index instead of scanning.  For a map
+ * that will not change, every reading can also be precomputed with
+ * {@link #precomputeSensors}, or on the first clone with
+ * {@link #setSensorTableLimit}.
  */
-public class Simulator extends Observable implements ISimulator {
+public class Simulator implements ISimulator {
     private static final long serialVersionUID = 3186189958128685645L;
 
     /**
@@ -23,34 +42,42 @@ public class Simulator extends Observable implements ISimulator {
 	private static final int DEFAULT_TERMINATION_FITNESS = 300;
 
     /**
-     * The goal of the simulation
+     * The number of distance sensors; their IDs run from 0 to
+     * {@link Symbols#REAR}
      */
-	private Goal goal = null;
+    private static final int SENSOR_COUNT = Symbols.REAR + 1;
 
     /**
-     * The obstacles in the simulation
+     * The default limit on the memory one simulator's precomputed sensor
+     * readings may use, in bytes
      */
-	private Obstacle[] obstacles;
+    public static final long DEFAULT_SENSOR_TABLE_LIMIT = 4L << 20;
 
     /**
-     * The dinghy in the simulation
+     * The x-step of a ray along each heading, indexed by heading / 90
      */
-	private Dinghy dinghy;
+    private static final int[] STEP_X = {0, 1, 0, -1};
 
     /**
-     * Initial start to goal distance
+     * The y-step of a ray along each heading, indexed by heading / 90
      */
-    private int startToGoalDist = 0;
+    private static final int[] STEP_Y = {1, 0, -1, 0};
 
     /**
-     * The width of the simulation
+     * The heading the rear sensor looks along, indexed by the dinghy's
+     * heading / 90; as Dinghy.rearDirection, it looks west when heading south
      */
-	private int sizeX;
+    private static final int[] REAR = {2, 3, 3, 0};
 
     /**
-     * The height of the simulation
+     * The map, goal and obstacles, shared with clones
      */
-    private int sizeY;
+    private World world;
+
+    /**
+     * The dinghy in the simulation
+     */
+	private Dinghy dinghy;
 
     /**
      * Determines whether simulation can continue
@@ -58,9 +85,29 @@ public class Simulator extends Observable implements ISimulator {
 	private boolean canContinue = true;
 
     /**
-     * Stores the current termination fitness
+     * The objects notified of each action, or null if there are none
+     */
+    private transient IStepObserver[] observers = null;
+
+    /**
+     * Distance sensor readings, indexed by variable ID
+     */
+    private int[] sensorCache = new int[SENSOR_COUNT];
+
+    /**
+     * Bit i is set when sensorCache[i] holds the reading for the current state
+     */
+    private int cachedSensors = 0;
+
+    /**
+     * The number of sensor reads answered from the cache
      */
-	private int terminationFitness = DEFAULT_TERMINATION_FITNESS;
+    private long sensorCacheHits = 0;
+
+    /**
+     * The number of sensor reads not answered from the cache
+     */
+    private long sensorCacheMisses = 0;
 
 	/**
 	 * Sets up the simulator environment.
@@ -72,9 +119,8 @@ public class Simulator extends Observable implements ISimulator {
 	 * @param dinghyY the initial Y position of the dinghy
 	 */
 	public Simulator(int maxX, int maxY, int numObstacles, int dinghyX, int dinghyY) {
-		sizeX = maxX;
-		sizeY = maxY;
-		obstacles = new Obstacle[numObstacles];
+        world = new World(maxX, maxY, numObstacles, dinghyX, dinghyY,
+                DEFAULT_TERMINATION_FITNESS);
 		dinghy = new Dinghy(dinghyX, dinghyY);
 	}
 	
@@ -86,7 +132,11 @@ public class Simulator extends Observable implements ISimulator {
 	 * @param y the new y-position of this obstacle
 	 */
 	public void addObstacle(int index, int x, int y) {
-		obstacles[index] = new Obstacle(x, y);
+        world = world.modifiable();
+		world.obstacles[index] = new Obstacle(x, y);
+        world.grid.place(index, x, y);
+        world.sensorTable = null;
+        cachedSensors = 0;
 	}
 	
 	/**
@@ -94,27 +144,89 @@ public class Simulator extends Observable implements ISimulator {
 	 * @param y the y-position of the goal
 	 */
 	public void setGoal(int x, int y){
-		goal = new Goal(x, y);
-        startToGoalDist = dinghy.getDistance(goal);
+        world = world.modifiable();
+		world.goal = new Goal(x, y);
+        world.startToGoalDist = dinghy.getDistance(world.goal);
 	}
 	
 	@Override
     public void invoke(String function) throws UnknownFunctionException {
+        int functionId = Symbols.functionId(function);
+        if (functionId == Symbols.UNKNOWN) {
+            if (canContinue)
+                throw new UnknownFunctionException(function);
+            return;
+        }
+        invoke(functionId);
+	}
+
+	@Override
+    public void invoke(int functionId) throws UnknownFunctionException {
         if (! canContinue)
             return;
 
-        if (function.compareTo("move") == 0)
-            invokeMove();
-        else if (function.compareTo("turn-left") == 0)
-            dinghy.turnLeft();
-        else if (function.compareTo("turn-right") == 0)
-            dinghy.turnRight();
-        else
-            throw new UnknownFunctionException(function);
-
-        setChanged();
-        notifyObservers();
+        switch (functionId) {
+            case Symbols.MOVE:
+                invokeMove();
+                break;
+            case Symbols.TURN_LEFT:
+                dinghy.turnLeft();
+                break;
+            case Symbols.TURN_RIGHT:
+                dinghy.turnRight();
+                break;
+            default:
+                throw new UnknownFunctionException(String.valueOf(functionId));
+        }
+        cachedSensors = 0;
+
+        if (observers != null)
+            notifyObservers(functionId);
 	}
+
+    /**
+     * Notifies the step observers of an action.
+     *
+     * @param functionId    the function ID of the action taken
+     */
+    private void notifyObservers(int functionId) {
+        int heading = dinghy.getDirection();
+        for (IStepObserver observer : observers)
+            observer.stepped(functionId, dinghy.getX(), dinghy.getY(), heading);
+    }
+
+    /**
+     * Adds an object as a step observer, unless it is already registered.
+     *
+     * @param observer    the observing object
+     */
+    public void addStepObserver(IStepObserver observer) {
+        if (observers == null) {
+            observers = new IStepObserver[] {observer};
+            return;
+        }
+        for (IStepObserver registered : observers) {
+            if (registered.equals(observer))
+                return;
+        }
+        IStepObserver[] added = Arrays.copyOf(observers, observers.length + 1);
+        added[observers.length] = observer;
+        observers = added;
+    }
+
+    /**
+     * Removes a registered step observer.
+     *
+     * @param observer    the observer to remove
+     */
+    public void removeStepObserver(IStepObserver observer) {
+        if (observers == null)
+            return;
+        List<IStepObserver> remaining = new ArrayList<IStepObserver>(Arrays.asList(observers));
+        remaining.remove(observer);
+        observers = remaining.isEmpty() ? null
+                : remaining.toArray(new IStepObserver[remaining.size()]);
+    }
 	
 	/**
 	 * This method moves the dinghy one spot in its current direction. It also
@@ -126,45 +238,154 @@ public class Simulator extends Observable implements ISimulator {
 	 */
 	private void invokeMove() {
 		dinghy.move();
-		dinghy.wrap(sizeX, sizeY);
-        referenceFront(1);
-        if (dinghy.getDistance(goal) == 0)
+		dinghy.wrap(world.sizeX, world.sizeY);
+        int x = dinghy.getX();
+        int y = dinghy.getY();
+        if (world.grid.isComplete() && world.grid.contains(x, y)) {
+            if (world.grid.first(x, y) >= 0)
+                canContinue = false;
+        } else {
+            referenceFront(1);
+        }
+        if (dinghy.getDistanceSquared(world.goal) == 0)
             canContinue = false;
 	}
 
 	@Override
     public int reference(String variable) throws VariableReferenceException {
-		int[] goalPos = goal.getPosition();
-		int[] pos = dinghy.getPosition();
-		int min = sizeX + sizeY;
-
-		if (variable.compareTo("front") == 0) {
-			return referenceFront(min);
-		} else if (variable.compareTo("short-left") == 0) {
-			return referenceShortLeft(min);
-		} else if (variable.compareTo("short-right") == 0) {
-			return referenceShortRight(min);
-		} else if (variable.compareTo("left") == 0) {
-			return referenceLeft(min);
-		} else if (variable.compareTo("right") == 0) {
-			return referenceRight(min);
-		} else if (variable.compareTo("rear") == 0) {
-			return referenceRear(min);
-		} else if (variable.compareTo("position-x") == 0) {
-			return pos[0];
-		} else if (variable.compareTo("position-y") == 0) {
-			return pos[1];
-		} else if (variable.compareTo("goal-position-x") == 0) {
-			return goalPos[0];
-		} else if (variable.compareTo("goal-position-y") == 0) {
-			return goalPos[1];
-		} else if (variable.compareTo("heading") == 0) {
-			return dinghy.getDirection();
-		}
+        int variableId = Symbols.variableId(variable);
+        if (variableId == Symbols.UNKNOWN)
+            throw new VariableReferenceException(variable);
+        return reference(variableId);
+	}
+
+	@Override
+    public int reference(int variableId) throws VariableReferenceException {
+		if (variableId >= 0 && variableId < SENSOR_COUNT)
+            return referenceSensor(variableId);
 
-		throw new VariableReferenceException(variable);
+		switch (variableId) {
+            case Symbols.POSITION_X:
+                return dinghy.getX();
+            case Symbols.POSITION_Y:
+                return dinghy.getY();
+            case Symbols.GOAL_POSITION_X:
+                return world.goal.getX();
+            case Symbols.GOAL_POSITION_Y:
+                return world.goal.getY();
+            case Symbols.HEADING:
+                return dinghy.getDirection();
+            default:
+                throw new VariableReferenceException(String.valueOf(variableId));
+		}
 	}
 
+    /**
+     * Handle a reference to a distance sensor, scanning the obstacles only if
+     * the sensor has not been read since the dinghy last moved or turned.
+     * Repeating a scan could only clear canContinue again, so cached readings
+     * need no further checks.
+     *
+     * @param sensorId    the sensor's variable ID
+     * @return  the sensor's reading
+     */
+    private int referenceSensor(int sensorId) {
+        int bit = 1 << sensorId;
+        if ((cachedSensors & bit) != 0) {
+            sensorCacheHits++;
+            return sensorCache[sensorId];
+        }
+        sensorCacheMisses++;
+
+        int min = world.sizeX + world.sizeY;
+        int reading;
+        int x = dinghy.getX();
+        int y = dinghy.getY();
+        if (world.grid.isComplete() && world.grid.contains(x, y)) {
+            int heading = dinghy.getDirection() / 90;
+            int sensed;
+            if (world.sensorTable != null)
+                sensed = world.sensorTable[sensorTableIndex(sensorId, x, y, heading)];
+            else
+                sensed = sense(sensorId, x, y, heading, min);
+            if ((sensed & 1) != 0)
+                canContinue = false;
+            reading = sensed >>> 1;
+        } else {
+            reading = referenceScanned(sensorId, min);
+        }
+        sensorCache[sensorId] = reading;
+        cachedSensors |= bit;
+        return reading;
+    }
+
+    /**
+     * Handle a reference to a distance sensor by scanning the obstacles.
+     *
+     * @param sensorId      the sensor's variable ID
+     * @param upperBound    a suggested upper bound
+     * @return  the sensor's reading
+     */
+    private int referenceScanned(int sensorId, int upperBound) {
+        switch (sensorId) {
+            case Symbols.FRONT:
+                return referenceFront(upperBound);
+            case Symbols.SHORT_LEFT:
+                return referenceShortLeft(upperBound);
+            case Symbols.SHORT_RIGHT:
+                return referenceShortRight(upperBound);
+            case Symbols.LEFT:
+                return referenceLeft(upperBound);
+            case Symbols.RIGHT:
+                return referenceRight(upperBound);
+            default:
+                return referenceRear(upperBound);
+        }
+    }
+
+    /**
+     * Reads a distance sensor from the occupancy grid.  A sensor reports the
+     * first obstacle in the list less than upperBound away along it, and ends
+     * the simulation if an obstacle earlier in the list than that one shares
+     * the dinghy's position.
+     *
+     * @param sensorId      the sensor's variable ID
+     * @param x             the dinghy's x-position, inside the grid
+     * @param y             the dinghy's y-position, inside the grid
+     * @param heading       the dinghy's heading / 90
+     * @param upperBound    a suggested upper bound
+     * @return  the sensor's reading shifted left one bit, with the low bit set
+     * if the read ends the simulation
+     */
+    private int sense(int sensorId, int x, int y, int heading, int upperBound) {
+        boolean even = heading % 2 == 0;
+        switch (sensorId) {
+            case Symbols.SHORT_LEFT:
+                return world.grid.firstOnSlope(x, y, even ? -1 : 1, heading < 2, upperBound) << 1;
+            case Symbols.SHORT_RIGHT:
+                return world.grid.firstOnSlope(x, y, even ? 1 : -1, (heading < 2) == even,
+                        upperBound) << 1;
+            case Symbols.FRONT:
+                break;
+            case Symbols.LEFT:
+                heading = (heading + 3) % 4;
+                break;
+            case Symbols.RIGHT:
+                heading = (heading + 1) % 4;
+                break;
+            default:
+                heading = REAR[heading];
+                break;
+        }
+
+        int first = world.grid.firstOnRay(x, y, STEP_X[heading], STEP_Y[heading], upperBound);
+        int here = world.grid.first(x, y);
+        int ended = (here >= 0 && (first < 0 || here < first)) ? 1 : 0;
+        if (first < 0)
+            return upperBound << 1 | ended;
+        return (Math.abs(world.grid.getX(first) - x) + Math.abs(world.grid.getY(first) - y)) << 1 | ended;
+    }
+
 	/**
 	 * Handle a reference to the variable "front".
      *
@@ -172,7 +393,7 @@ public class Simulator extends Observable implements ISimulator {
 	 * @return  the distance to the closest item in front of the dinghy
 	 */
 	private int referenceFront(int upperBound) {
-		for (Obstacle obstacle : obstacles) {
+		for (Obstacle obstacle : world.obstacles) {
 			int temp = dinghy.getDistanceFront(obstacle);
             if (temp == 0)
                 canContinue = false;
@@ -189,7 +410,7 @@ public class Simulator extends Observable implements ISimulator {
 	 * @return  the distance to the closest item to the left of the dinghy
 	 */
 	private int referenceLeft(int upperBound) {
-		for (Obstacle obstacle : obstacles) {
+		for (Obstacle obstacle : world.obstacles) {
 			int temp = dinghy.getDistanceLeft(obstacle);
             if (temp == 0)
                 canContinue = false;
@@ -206,7 +427,7 @@ public class Simulator extends Observable implements ISimulator {
 	 * @return  the distance to the closest item to the right of the dinghy
 	 */
 	private int referenceRight(int upperBound) {
-		for (Obstacle obstacle : obstacles) {
+		for (Obstacle obstacle : world.obstacles) {
 			int temp = dinghy.getDistanceRight(obstacle);
             if (temp == 0)
                 canContinue = false;
@@ -224,7 +445,7 @@ public class Simulator extends Observable implements ISimulator {
 	 * @return  the distance to the closest item to the rear of the dinghy
 	 */
 	private int referenceRear(int upperBound) {
-		for (Obstacle obstacle : obstacles) {
+		for (Obstacle obstacle : world.obstacles) {
 			int temp = dinghy.getDistanceRear(obstacle);
             if (temp == 0)
                 canContinue = false;
@@ -242,7 +463,7 @@ public class Simulator extends Observable implements ISimulator {
      * left of the dinghy
 	 */
 	private int referenceShortLeft(int upperBound) {
-		for (Obstacle obstacle : obstacles) {
+		for (Obstacle obstacle : world.obstacles) {
 			int temp = dinghy.getDistanceShortLeft(obstacle);
             if (temp == 0)
                 canContinue = false;
@@ -259,7 +480,7 @@ public class Simulator extends Observable implements ISimulator {
      * right of the dinghy
 	 */
 	private int referenceShortRight(int upperBound) {
-		for (Obstacle obstacle : obstacles) {
+		for (Obstacle obstacle : world.obstacles) {
 			int temp = dinghy.getDistanceShortRight(obstacle);
             if (temp == 0)
                 canContinue = false;
@@ -269,6 +490,104 @@ public class Simulator extends Observable implements ISimulator {
 		return upperBound;
 	}
 
+    /**
+     * Precomputes every distance sensor's reading at every position and
+     * heading on the map, so a sensor read becomes a table lookup.  The map
+     * must not change afterwards; adding an obstacle discards the table.
+     * Clones made afterwards share it.
+     *
+     * @param maxBytes    the most memory the table may use
+     * @return  whether the table was built; it is not if it would need more
+     * than maxBytes, if an obstacle lies off the map, or if the map is too
+     * large for its readings to fit
+     */
+    public boolean precomputeSensors(long maxBytes) {
+        world = world.modifiable();
+        world.sensorTable = buildSensorTable(maxBytes);
+        world.sensorTableLimit = 0;
+        cachedSensors = 0;
+        return world.sensorTable != null;
+    }
+
+    /**
+     * Asks for the sensor readings to be precomputed, as by
+     * {@link #precomputeSensors}, when this simulator is next cloned.  The
+     * table is not serialized, so a simulator sent to another machine builds
+     * its own there the first time it is cloned, and one that is only passed
+     * on never builds it.
+     *
+     * @param maxBytes    the most memory the table may use, or 0 to not
+     *                    precompute the readings
+     */
+    public void setSensorTableLimit(long maxBytes) {
+        world = world.modifiable();
+        world.sensorTableLimit = maxBytes;
+    }
+
+    /**
+     * Builds the sensor table requested by {@link #setSensorTableLimit}, if
+     * it has not been built.  The table only depends on the obstacles, so it
+     * is built into the world even once the world is shared.
+     */
+    private void buildRequestedSensorTable() {
+        synchronized (world) {
+            if (world.sensorTable == null && world.sensorTableLimit > 0) {
+                world.sensorTable = buildSensorTable(world.sensorTableLimit);
+                world.sensorTableLimit = 0;
+            }
+        }
+    }
+
+    /**
+     * @param maxBytes    the most memory the table may use
+     * @return  every distance sensor's reading at every position and heading
+     * on the map, or null if they cannot be precomputed within maxBytes
+     */
+    private char[] buildSensorTable(long maxBytes) {
+        if (!world.grid.isComplete() || world.sizeX + world.sizeY >= Character.MAX_VALUE >> 1
+                || sensorTableBytes() > maxBytes)
+            return null;
+
+        int upperBound = world.sizeX + world.sizeY;
+        char[] table = new char[4 * SENSOR_COUNT * world.grid.getCellCount()];
+        for (int x = 0; x <= world.sizeX; x++) {
+            for (int y = 0; y <= world.sizeY; y++) {
+                for (int heading = 0; heading < 4; heading++) {
+                    for (int sensorId = 0; sensorId < SENSOR_COUNT; sensorId++)
+                        table[sensorTableIndex(sensorId, x, y, heading)] =
+                                (char) sense(sensorId, x, y, heading, upperBound);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @return  the memory used by the precomputed sensor readings in bytes,
+     * or 0 if they have not been precomputed
+     */
+    public long getSensorTableBytes() {
+        return (world.sensorTable == null) ? 0 : sensorTableBytes();
+    }
+
+    /**
+     * @return  the memory a table of every sensor's readings needs in bytes
+     */
+    private long sensorTableBytes() {
+        return 2L * 4 * SENSOR_COUNT * world.grid.getCellCount();
+    }
+
+    /**
+     * @param sensorId    the sensor's variable ID
+     * @param x           an x-position inside the grid
+     * @param y           a y-position inside the grid
+     * @param heading     a heading / 90
+     * @return  the index of the sensor's reading in the sensor table
+     */
+    private int sensorTableIndex(int sensorId, int x, int y, int heading) {
+        return world.grid.cell(x, y) * (4 * SENSOR_COUNT) + heading * SENSOR_COUNT + sensorId;
+    }
+
     /**
 	 * Calculates the fitness of the program.
      *
@@ -276,9 +595,9 @@ public class Simulator extends Observable implements ISimulator {
 	 */
 	@Override
     public int getFitness() {
-        int improvement = startToGoalDist - dinghy.getDistance(goal);
+        int improvement = world.startToGoalDist - dinghy.getDistance(world.goal);
         improvement = (improvement < 0) ? 0 : improvement;
-        return 100 * (improvement / startToGoalDist);
+        return 100 * (improvement / world.startToGoalDist);
     }
 
     @Override
@@ -286,50 +605,97 @@ public class Simulator extends Observable implements ISimulator {
         return 100;
     }
 
+    /**
+     * Packs the dinghy's position and heading; nothing else changes during a
+     * simulation.  Positions must lie within [0, 2^30) to be told apart.
+     *
+     * @return  the identifier of the current state
+     */
+    @Override
+    public long getState() {
+        return ((long) dinghy.getX() << 32) | ((dinghy.getY() & 0x3FFFFFFFL) << 2)
+                | (dinghy.getDirection() / 90);
+    }
+
 	/**
 	 * @return  whether execution can continue
 	 */
 	@Override
     public boolean canContinue() {
-		return getFitness() < terminationFitness && canContinue;
+		return getFitness() < world.terminationFitness && canContinue;
 	}
 
 	@Override
 	public Simulator clone() throws CloneNotSupportedException {
+        buildRequestedSensorTable();
+        world.freeze();
 		Simulator clone = (Simulator) super.clone();
 		clone.dinghy = new Dinghy(dinghy);
-		System.arraycopy(obstacles, 0, clone.obstacles, 0, obstacles.length);
+        clone.observers = null;
+        clone.sensorCache = new int[SENSOR_COUNT];
+        clone.cachedSensors = 0;
+        clone.sensorCacheHits = 0;
+        clone.sensorCacheMisses = 0;
 		return clone;
 	}
 
+    /**
+     * Returns the simulation to the state it was created in: the dinghy back
+     * at its start position heading north, and able to continue.
+     */
+    public void reset() {
+        dinghy.reset(world.startX, world.startY);
+        canContinue = true;
+        cachedSensors = 0;
+        sensorCacheHits = 0;
+        sensorCacheMisses = 0;
+    }
+
 	/**
 	 * @param terminationFitness    the new goal fitness
 	 */
 	public void setTerminationFitness(int terminationFitness) {
-		this.terminationFitness = terminationFitness;
+        world = world.modifiable();
+		world.terminationFitness = terminationFitness;
 	}
 	
 	/**
 	 * @return the size of the simulation environment.
 	 */
 	public int[] getSize() {
-        return new int[]{sizeX, sizeY};
+        return new int[]{world.sizeX, world.sizeY};
 	}
 	
 	/**
 	 * @return The position of the goal.
 	 */
 	public int[] getGoal() {
-		return goal.getPosition();
+		return world.goal.getPosition();
 	}
 	
 	/**
 	 * @return the array of obstacles.
 	 */
 	public Obstacle[] getObstacles() {
-		return obstacles;
+		return world.obstacles;
 	}
 
+    /**
+     * @return  the number of sensor reads answered from the cache since this
+     * simulator was created or cloned
+     */
+    public long getSensorCacheHits() {
+        return sensorCacheHits;
+    }
+
+    /**
+     * @return  the number of sensor reads that were not answered from the
+     * cache since this simulator was created or cloned
+     */
+    public long getSensorCacheMisses() {
+        return sensorCacheMisses;
+    }
+
     /**
      * @return xy-array of the dinghy's current position
      */
@@ -91,6 +91,20 @@ public class SimulatorFile {
 		
 	}
 
+    /**
+     * Creates and initializes a simulation environment as specified in a
+     * file, and has its sensor readings precomputed when it is first cloned,
+     * if they fit within a memory limit.
+     *
+     * @param filename            the file containing the simulation environment
+     * @param sensorTableLimit    the most memory, in bytes, the precomputed
+     *                            sensor readings may use
+     */
+    public SimulatorFile(File filename, long sensorTableLimit) {
+        this(filename);
+        sim.setSensorTableLimit(sensorTableLimit);
+    }
+
     /**
      * @return the simulator constructed from the file
      */
@@ -0,0 +1,139 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.simulator;
+
+import java.io.Serializable;
+
+/**
+ * The parts of a simulation that do not change as the dinghy moves: the map,
+ * its goal and obstacles, and the indexes built over them.
+ * <p>
+ * A world is built up by the Simulator that created it.  Once a simulator is
+ * cloned, its world is frozen and shared by the clone; a simulator changing a
+ * frozen world first takes a copy of its own, so no simulator sees another's
+ * changes.
+ */
+final class World implements Serializable {
+    private static final long serialVersionUID = 6217093645573390182L;
+
+    /**
+     * The width of the simulation
+     */
+    final int sizeX;
+
+    /**
+     * The height of the simulation
+     */
+    final int sizeY;
+
+    /**
+     * The x-position the dinghy starts from
+     */
+    final int startX;
+
+    /**
+     * The y-position the dinghy starts from
+     */
+    final int startY;
+
+    /**
+     * The goal of the simulation
+     */
+    Goal goal = null;
+
+    /**
+     * Initial start to goal distance
+     */
+    int startToGoalDist = 0;
+
+    /**
+     * The obstacles in the simulation
+     */
+    final Obstacle[] obstacles;
+
+    /**
+     * The obstacles indexed by position
+     */
+    final OccupancyGrid grid;
+
+    /**
+     * Every distance sensor's reading at every position and heading, or null
+     * if they have not been precomputed.  The table is derived from the
+     * obstacles, so it is not serialized, and it may be filled in after the
+     * world is frozen.
+     */
+    transient char[] sensorTable = null;
+
+    /**
+     * The most memory, in bytes, the sensor table may use when it is built on
+     * the next clone, or 0 if it is not to be built then
+     */
+    long sensorTableLimit = 0;
+
+    /**
+     * The fitness at which the simulation ends
+     */
+    int terminationFitness;
+
+    /**
+     * Whether the world is shared and must no longer be changed
+     */
+    private volatile boolean frozen = false;
+
+    /**
+     * @param sizeX                 the width of the simulation
+     * @param sizeY                 the height of the simulation
+     * @param numObstacles          the number of obstacles in the simulation
+     * @param startX                the x-position the dinghy starts from
+     * @param startY                the y-position the dinghy starts from
+     * @param terminationFitness    the fitness at which the simulation ends
+     */
+    World(int sizeX, int sizeY, int numObstacles, int startX, int startY,
+          int terminationFitness) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.startX = startX;
+        this.startY = startY;
+        this.terminationFitness = terminationFitness;
+        obstacles = new Obstacle[numObstacles];
+        grid = new OccupancyGrid(sizeX, sizeY, numObstacles);
+    }
+
+    /**
+     * Copies a world.  The copy is not frozen.
+     *
+     * @param world    the world to copy
+     */
+    private World(World world) {
+        sizeX = world.sizeX;
+        sizeY = world.sizeY;
+        startX = world.startX;
+        startY = world.startY;
+        goal = world.goal;
+        startToGoalDist = world.startToGoalDist;
+        obstacles = world.obstacles.clone();
+        grid = new OccupancyGrid(world.grid);
+        sensorTable = world.sensorTable;
+        sensorTableLimit = world.sensorTableLimit;
+        terminationFitness = world.terminationFitness;
+    }
+
+    /**
+     * Marks the world as shared.
+     */
+    void freeze() {
+        if (!frozen)
+            frozen = true;
+    }
+
+    /**
+     * @return  this world if it may be changed, otherwise a copy that may
+     */
+    World modifiable() {
+        return frozen ? new World(this) : this;
+    }
+}
@@ -6,12 +6,19 @@
 
 package cs412.dinghyprop;
 
+import cs412.dinghyprop.genetics.EvaluationStrategy;
 import cs412.dinghyprop.genetics.GeneticProgram;
 import cs412.dinghyprop.genetics.Program;
 import cs412.dinghyprop.genetics.TournamentSelector;
+import cs412.dinghyprop.interpreter.CompiledProgram;
+import cs412.dinghyprop.interpreter.EffectAnalysis;
 import cs412.dinghyprop.interpreter.Interpreter;
+import cs412.dinghyprop.interpreter.LockstepInterpreter;
 import cs412.dinghyprop.interpreter.ParsingException;
+import cs412.dinghyprop.interpreter.ProgramCache;
+import cs412.dinghyprop.interpreter.Verifier;
 import cs412.dinghyprop.simulator.ISimulator;
+import cs412.dinghyprop.simulator.Simulator;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -20,7 +27,14 @@ import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,6 +50,11 @@ public class SingleRunner extends UnicastRemoteObject implements IMaster {
      */
     private static final int popSize = 100;
 
+    /**
+     * The number of compiled programs kept between generations
+     */
+    private static final int CACHE_CAPACITY = 4 * popSize;
+
     /**
      * The goal fitness
      */
@@ -51,6 +70,11 @@ public class SingleRunner extends UnicastRemoteObject implements IMaster {
      */
     private ISimulator[] simulators;
 
+    /**
+     * Compiled forms of recently evaluated programs
+     */
+    private transient ProgramCache cache;
+
     /**
      * Whether an individual with the goal fitness has been found
      */
@@ -72,13 +96,39 @@ public class SingleRunner extends UnicastRemoteObject implements IMaster {
     private File checkpointDir;
 
     /**
-     * Creates a new single-machine GP runner.
+     * The number of threads evaluating programs
+     */
+    private final int threads;
+
+    /**
+     * The pool evaluating the population, or null when evaluating on the
+     * calling thread
+     */
+    private final transient ExecutorService workers;
+
+    /**
+     * Creates a new single-machine GP runner that evaluates programs on one
+     * thread per available processor.
      *
      * @param gp    the GP object to run
      * @throws RemoteException inherited
      */
     public SingleRunner(GeneticProgram gp, ISimulator[] simulators) throws RemoteException {
+        this(gp, simulators, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new single-machine GP runner.
+     *
+     * @param gp         the GP object to run
+     * @param threads    the number of threads to evaluate programs on
+     * @throws RemoteException inherited
+     */
+    public SingleRunner(GeneticProgram gp, ISimulator[] simulators, int threads)
+            throws RemoteException {
         super(54614);
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive: " + threads);
 
         Registry registry = LocateRegistry.getRegistry();
         registry.rebind("Master", this);
@@ -86,6 +136,10 @@ public class SingleRunner extends UnicastRemoteObject implements IMaster {
         this.gp = gp;
         gp.initialize();
         this.simulators = simulators;
+        this.threads = threads;
+        workers = (threads > 1) ? Executors.newFixedThreadPool(threads) : null;
+        cache = new ProgramCache(CACHE_CAPACITY, Interpreter.configuredMode(),
+                gp.getEvaluationStrategy(), true);
 
         goal = 0;
         for (ISimulator simulator : simulators)
@@ -103,17 +157,22 @@ public class SingleRunner extends UnicastRemoteObject implements IMaster {
      * Runs the genetic program through 1000 generations or until success.
      */
     private void run() {
-        for (int iter = 0; iter < 1000; iter++) {
-            System.out.print("Generation: " + iter + '\t');
-            runGeneration();
-            if (iter % 5 == 0)
-                dump(iter);
+        try {
+            for (int iter = 0; iter < 1000; iter++) {
+                System.out.print("Generation: " + iter + '\t');
+                runGeneration();
+                if (iter % 5 == 0)
+                    dump(iter);
+                if (success)
+                    break;
+                gp.createNextGeneration();
+            }
             if (success)
-                break;
-            gp.createNextGeneration();
+                dump(-1);
+        } finally {
+            if (workers != null)
+                workers.shutdown();
         }
-        if (success)
-            dump(-1);
     }
 
     /**
@@ -143,34 +202,176 @@ public class SingleRunner extends UnicastRemoteObject implements IMaster {
     private void runGeneration() {
         int fitnesses = 0;
         int maxFitness = 0;
+        int[] fitness = new int[popSize];
+        Statistics statistics = evaluatePopulation(fitness);
         for (int i = 0; i < popSize; i++) {
             Program program = gp.getProgram(i);
-            int fitness = evaluateProgram(program);
-            gp.setProgramFitness(i, fitness);
+            gp.setProgramFitness(i, fitness[i]);
 
-            if (fitness > maxFitness) {
-                best = fitness;
+            if (fitness[i] > maxFitness) {
+                best = fitness[i];
                 bestProgram = program;
             }
 
-            fitnesses += fitness;
-            maxFitness = (fitness > maxFitness) ? fitness : maxFitness;
+            fitnesses += fitness[i];
+            maxFitness = (fitness[i] > maxFitness) ? fitness[i] : maxFitness;
         }
         System.out.println("Max: " + maxFitness
-                + "\tAvg: " + (fitnesses / popSize));
+                + "\tAvg: " + (fitnesses / popSize)
+                + "\tSensor cache hits: " + statistics.sensorCacheHits + '/'
+                + (statistics.sensorCacheHits + statistics.sensorCacheMisses)
+                + "\tSkipped: " + statistics.skippedPrograms + '/' + popSize
+                + "\tRejected: " + statistics.rejectedPrograms
+                + "\tNode visits: " + statistics.nodeVisits
+                + "\tOver budget: " + statistics.overBudgetPrograms
+                + "\tCache hit rate: " + String.format("%.2f", cache.getHitRate()));
+        if (Profile.ENABLED)
+            System.out.println("Profile: " + statistics.profile);
         if (best >= goal) {
             success = true;
         }
     }
 
+    /**
+     * Evaluates the population, splitting it into slices evaluated by the
+     * worker threads.  Each slice gets its own counters, which are summed once
+     * every slice is done; the programs are only read while evaluating.
+     *
+     * @param fitness    receives each program's fitness, by index
+     * @return  the work done evaluating the population
+     */
+    private Statistics evaluatePopulation(final int[] fitness) {
+        if (workers == null)
+            return evaluateSlice(0, popSize, fitness);
+
+        int slices = Math.min(popSize, 4 * threads);
+        List<Future<Statistics>> results = new ArrayList<Future<Statistics>>(slices);
+        for (int slice = 0; slice < slices; slice++) {
+            final int from = slice * popSize / slices;
+            final int to = (slice + 1) * popSize / slices;
+            results.add(workers.submit(new Callable<Statistics>() {
+                @Override
+                public Statistics call() {
+                    return evaluateSlice(from, to, fitness);
+                }
+            }));
+        }
+
+        Statistics statistics = new Statistics();
+        try {
+            for (Future<Statistics> result : results)
+                statistics.add(result.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted evaluating the population", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed evaluating the population", e.getCause());
+        }
+        return statistics;
+    }
+
+    /**
+     * Evaluates a range of the population.
+     *
+     * @param from       the index of the first program to evaluate
+     * @param to         the index after the last program to evaluate
+     * @param fitness    receives each program's fitness, by index
+     * @return  the work done evaluating the range
+     */
+    private Statistics evaluateSlice(int from, int to, int[] fitness) {
+        Statistics statistics = new Statistics();
+        for (int i = from; i < to; i++)
+            fitness[i] = evaluateProgram(gp.getProgram(i), statistics);
+        return statistics;
+    }
+
     /**
      * Evaluates a single program in a randomly generated environment.
      *
-     * @param program    the program to evaluate
+     * @param program       the program to evaluate
+     * @param statistics    the counters to record the evaluation's work in
      * @return  the evaluated program's fitness
      */
-    private int evaluateProgram(Program program) {
+    private int evaluateProgram(Program program, Statistics statistics) {
+        int fitness = 0;
+        CompiledProgram compiled;
+        try {
+            compiled = cache.get(program.program);
+        } catch (ParsingException e) {
+            log.log(Level.WARNING, "Program failed to compile or run.", e);
+            log.log(Level.WARNING, program.toString());
+            return fitness;
+        }
+
+        if (compiled.getVerification() != Verifier.RESULT.VALID) {
+            Verifier.logRejection(program.program, compiled.getVerification());
+            statistics.rejectedPrograms++;
+            return fitness;
+        }
+
+        if (EffectAnalysis.classify(compiled) == EffectAnalysis.EFFECT.INERT) {
+            for (ISimulator simulator : simulators)
+                fitness += simulator.getFitness();
+            statistics.skippedPrograms++;
+            return fitness;
+        }
+
+        if (compiled.getMode() == Interpreter.MODE.TREE)
+            return evaluateInLockstep(compiled, statistics);
+        return evaluateInTurn(compiled, statistics);
+    }
+
+    /**
+     * Evaluates a program in batches of simulators run in lockstep.
+     *
+     * @param compiled      the program to evaluate
+     * @param statistics    the counters to record the evaluation's work in
+     * @return  the program's fitness
+     */
+    private int evaluateInLockstep(CompiledProgram compiled, Statistics statistics) {
+        LockstepInterpreter interpreter = new LockstepInterpreter(compiled);
+        if (Profile.ENABLED)
+            interpreter.setProfile(statistics.profile);
+        int fitness = 0;
+        long cost = 0;
+        for (int start = 0; start < simulators.length; start += LockstepInterpreter.MAX_LANES) {
+            ISimulator[] lanes = new ISimulator[Math.min(LockstepInterpreter.MAX_LANES,
+                    simulators.length - start)];
+            try {
+                for (int lane = 0; lane < lanes.length; lane++)
+                    lanes[lane] = simulators[start + lane].clone();
+            } catch (CloneNotSupportedException ignored) {
+                return 0;
+            }
+
+            interpreter.reset(lanes);
+            interpreter.setBudget(Evaluation.NODE_BUDGET - cost);
+            interpreter.run(100);
+            cost += interpreter.getCost();
+            statistics.nodeVisits += interpreter.getCost();
+            for (ISimulator sim : lanes)
+                recordSensorCache(sim, statistics);
+            if (interpreter.isOverBudget()) {
+                statistics.overBudgetPrograms++;
+                return 0;
+            }
+            fitness += interpreter.getFitness();
+        }
+        return fitness;
+    }
+
+    /**
+     * Evaluates a program in one simulator after another, for the modes the
+     * lockstep interpreter does not run.
+     *
+     * @param compiled      the program to evaluate
+     * @param statistics    the counters to record the evaluation's work in
+     * @return  the program's fitness
+     */
+    private int evaluateInTurn(CompiledProgram compiled, Statistics statistics) {
+        Interpreter interpreter = null;
         int fitness = 0;
+        long cost = 0;
         for (ISimulator simulator : simulators) {
             ISimulator sim;
             try {
@@ -179,18 +380,99 @@ public class SingleRunner extends UnicastRemoteObject implements IMaster {
                 return 0;
             }
 
-            try {
-                Interpreter interpreter = new Interpreter(sim, program.program);
-                interpreter.run(100);
-                fitness += interpreter.getFitness();
-            } catch (ParsingException e) {
-                log.log(Level.WARNING, "Program failed to compile or run.", e);
-                log.log(Level.WARNING, program.toString());
+            if (interpreter == null) {
+                interpreter = compiled.bind(sim);
+                if (Profile.ENABLED)
+                    interpreter.setProfile(statistics.profile);
+            } else {
+                interpreter.reset(sim);
+            }
+            interpreter.setBudget(Evaluation.NODE_BUDGET - cost);
+            interpreter.run(100);
+            cost += interpreter.getCost();
+            statistics.nodeVisits += interpreter.getCost();
+            recordSensorCache(sim, statistics);
+            if (interpreter.isOverBudget()) {
+                statistics.overBudgetPrograms++;
+                return 0;
             }
+            fitness += interpreter.getFitness();
         }
         return fitness;
     }
 
+    /**
+     * Adds a simulator's sensor cache counters to the statistics.
+     *
+     * @param sim           the simulator
+     * @param statistics    the counters to add to
+     */
+    private static void recordSensorCache(ISimulator sim, Statistics statistics) {
+        if (sim instanceof Simulator) {
+            statistics.sensorCacheHits += ((Simulator) sim).getSensorCacheHits();
+            statistics.sensorCacheMisses += ((Simulator) sim).getSensorCacheMisses();
+        }
+    }
+
+    /**
+     * Counters for the work done evaluating part of a generation.  Each is
+     * only updated by the thread evaluating that part.
+     */
+    private static final class Statistics {
+        /**
+         * Sensor reads answered from the simulators' caches
+         */
+        long sensorCacheHits = 0;
+
+        /**
+         * Sensor reads that scanned the obstacles
+         */
+        long sensorCacheMisses = 0;
+
+        /**
+         * Programs that were not simulated because they could not affect the
+         * simulation
+         */
+        int skippedPrograms = 0;
+
+        /**
+         * Programs that were rejected because they use symbols the simulators
+         * do not know
+         */
+        int rejectedPrograms = 0;
+
+        /**
+         * Program nodes visited
+         */
+        long nodeVisits = 0;
+
+        /**
+         * Programs that were stopped for exceeding the node-visit budget
+         */
+        int overBudgetPrograms = 0;
+
+        /**
+         * The work done evaluating, or null unless profiling is enabled
+         */
+        final Profile profile = Profile.ENABLED ? new Profile() : null;
+
+        /**
+         * Adds another part's counters to these.
+         *
+         * @param other    the counters to add
+         */
+        void add(Statistics other) {
+            sensorCacheHits += other.sensorCacheHits;
+            sensorCacheMisses += other.sensorCacheMisses;
+            skippedPrograms += other.skippedPrograms;
+            rejectedPrograms += other.rejectedPrograms;
+            nodeVisits += other.nodeVisits;
+            overBudgetPrograms += other.overBudgetPrograms;
+            if (Profile.ENABLED)
+                profile.merge(other.profile);
+        }
+    }
+
     /**
      * Prints the text of the programs with the best fitness.
      */
@@ -209,6 +491,11 @@ public class SingleRunner extends UnicastRemoteObject implements IMaster {
         return simulators;
     }
 
+    @Override
+    public EvaluationStrategy getEvaluationStrategy() throws RemoteException {
+        return gp.getEvaluationStrategy();
+    }
+
     @Override
     public void registerClient(IClient client) throws RemoteException {
     }
@@ -226,28 +513,43 @@ public class SingleRunner extends UnicastRemoteObject implements IMaster {
     /**
      * Runs a GeneticProgram through 1000 generations.
      *
-     * @param args    one optional argument: -t followed by the tournament size
+     * @param args    two optional arguments: -t followed by the tournament
+     *                size, and -s followed by the evaluation strategy, eager
+     *                (the default) or lazy
      *                one required argument: the simulation spec directory path
      */
     public static void main(String[] args) {
-        GeneticProgram gp = new GeneticProgram(popSize,
-                GeneticProgram.INIT_POP_METHOD.RHALF_AND_HALF, 5);
-
-        SimulationDirLoader sdl = null;
-        if (args.length == 3 && args[0].compareTo("-t") == 0) {
-            try {
-                int tournamentSize = Integer.parseInt(args[1]);
-                gp.setSelector(new TournamentSelector(tournamentSize));
-            } catch (NumberFormatException nfe) {
-                System.err.println(nfe.getLocalizedMessage());
+        TournamentSelector selector = null;
+        EvaluationStrategy strategy = EvaluationStrategy.EAGER;
+        int arg = 0;
+        while (arg < args.length - 2) {
+            if (args[arg].compareTo("-t") == 0) {
+                try {
+                    selector = new TournamentSelector(Integer.parseInt(args[arg + 1]));
+                } catch (NumberFormatException nfe) {
+                    System.err.println(nfe.getLocalizedMessage());
+                    usage();
+                }
+            } else if (args[arg].compareTo("-s") == 0) {
+                try {
+                    strategy = EvaluationStrategy.valueOf(args[arg + 1].toUpperCase());
+                } catch (IllegalArgumentException iae) {
+                    System.err.println("Unknown evaluation strategy: " + args[arg + 1]);
+                    usage();
+                }
+            } else {
                 usage();
             }
-            sdl = new SimulationDirLoader(args[2]);
-        } else if (args.length == 1) {
-            sdl = new SimulationDirLoader(args[0]);
-        } else {
-            usage();
+            arg += 2;
         }
+        if (arg != args.length - 1)
+            usage();
+
+        GeneticProgram gp = new GeneticProgram(popSize,
+                GeneticProgram.INIT_POP_METHOD.RHALF_AND_HALF, 5, strategy);
+        if (selector != null)
+            gp.setSelector(selector);
+        SimulationDirLoader sdl = new SimulationDirLoader(args[arg]);
 
         run(gp, sdl.load());
     }
@@ -271,7 +573,7 @@ public class SingleRunner extends UnicastRemoteObject implements IMaster {
      * Prints usage message and exits with an error return.
      */
     private static void usage() {
-        System.err.println("Usage: SingleRunner [-t <tournament_size>] <simulation_dir>");
+        System.err.println("Usage: SingleRunner [-t <tournament_size>] [-s eager|lazy] <simulation_dir>");
         System.exit(-1);
     }
 }
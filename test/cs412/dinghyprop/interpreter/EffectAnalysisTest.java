@@ -0,0 +1,71 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+import cs412.dinghyprop.genetics.GeneticProgram;
+import cs412.dinghyprop.simulator.Simulator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * TestNG for EffectAnalysis
+ */
+public class EffectAnalysisTest {
+    @Test
+    public void testClassify() throws Exception {
+        assertEffect("(+ front (* left 2))", EffectAnalysis.EFFECT.INERT, EvaluationStrategy.EAGER);
+        assertEffect("(if (< front 3) 1 (bogus))", EffectAnalysis.EFFECT.INERT,
+                EvaluationStrategy.EAGER);
+        assertEffect("(+ (move) (turn-left) 3)", EffectAnalysis.EFFECT.MOVEMENT_ONLY,
+                EvaluationStrategy.EAGER);
+        assertEffect("(move)", EffectAnalysis.EFFECT.MOVEMENT_ONLY, EvaluationStrategy.EAGER);
+        assertEffect("(if (< front 3) (turn-left) (move))",
+                EffectAnalysis.EFFECT.SENSOR_DEPENDENT, EvaluationStrategy.EAGER);
+    }
+
+    @Test
+    public void testClassifyOptimized() throws Exception {
+        // the move is only skipped when lazy
+        assertEffect("(if (< 1 2) front (move))", EffectAnalysis.EFFECT.SENSOR_DEPENDENT,
+                EvaluationStrategy.EAGER);
+        assertEffect("(if (< 1 2) front (move))", EffectAnalysis.EFFECT.INERT,
+                EvaluationStrategy.LAZY);
+    }
+
+    @Test
+    public void testInertFitness() throws Exception {
+        GeneticProgram gp = new GeneticProgram(200, GeneticProgram.INIT_POP_METHOD.GROW, 4,
+                EvaluationStrategy.EAGER);
+        gp.initialize();
+        for (EvaluationStrategy strategy : EvaluationStrategy.values()) {
+            for (int i = 0; i < gp.getPopulationSize(); i++) {
+                String program = gp.getProgram(i).program;
+                if (EffectAnalysis.classify(program, strategy) != EffectAnalysis.EFFECT.INERT)
+                    continue;
+                Simulator simulator = createSimulator();
+                int expected = simulator.getFitness();
+                Interpreter interpreter = new Interpreter(simulator, program,
+                        Interpreter.MODE.TREE, strategy);
+                interpreter.run(100);
+                Assert.assertEquals(interpreter.getFitness(), expected, program);
+            }
+        }
+    }
+
+    private void assertEffect(String program, EffectAnalysis.EFFECT expected,
+                              EvaluationStrategy strategy) throws Exception {
+        Assert.assertEquals(EffectAnalysis.classify(program, strategy), expected, program);
+    }
+
+    private Simulator createSimulator() {
+        Simulator simulator = new Simulator(20, 20, 1, 5, 5);
+        simulator.addObstacle(0, 5, 9);
+        simulator.setGoal(5, 8);
+        return simulator;
+    }
+}
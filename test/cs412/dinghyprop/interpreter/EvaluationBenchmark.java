@@ -0,0 +1,105 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.SimulationDirLoader;
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+import cs412.dinghyprop.genetics.GeneticProgram;
+import cs412.dinghyprop.simulator.ISimulator;
+import cs412.dinghyprop.simulator.Simulator;
+
+/**
+ * Compares the time each {@link Interpreter.MODE} takes to evaluate a
+ * population in a suite of simulators, the work a client does for one
+ * generation.  TREE mode is evaluated in lockstep, as the clients do; the
+ * other modes are evaluated one simulator at a time.
+ * <p>
+ * Run with the test classpath: {@code java
+ * cs412.dinghyprop.interpreter.EvaluationBenchmark [rounds [simulation_dir]]}
+ */
+public class EvaluationBenchmark {
+    public static void main(String[] args) throws Exception {
+        int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 10;
+        Simulator[] simulators = new SimulationDirLoader((args.length > 1) ? args[1] : "sims").load();
+        GeneticProgram gp = new GeneticProgram(200, GeneticProgram.INIT_POP_METHOD.RHALF_AND_HALF,
+                6, EvaluationStrategy.EAGER);
+        gp.initialize();
+
+        Interpreter.MODE[] modes = Interpreter.MODE.values();
+        CompiledProgram[][] programs = new CompiledProgram[modes.length][];
+        for (int mode = 0; mode < modes.length; mode++) {
+            programs[mode] = new CompiledProgram[gp.getPopulationSize()];
+            for (int i = 0; i < programs[mode].length; i++)
+                programs[mode][i] = CompiledProgram.compile(gp.getProgram(i).program,
+                        modes[mode], EvaluationStrategy.EAGER, true);
+        }
+
+        long[] expected = new long[gp.getPopulationSize()];
+        for (int i = 0; i < expected.length; i++)
+            expected[i] = evaluate(programs[0][i], simulators);
+        for (int mode = 1; mode < modes.length; mode++) {
+            for (int i = 0; i < expected.length; i++) {
+                if (evaluate(programs[mode][i], simulators) != expected[i])
+                    throw new IllegalStateException(modes[mode] + " disagrees on "
+                            + programs[mode][i].getText());
+            }
+        }
+
+        System.out.println(expected.length + " programs, " + simulators.length + " simulators");
+        for (int round = 0; round < rounds; round++) {
+            StringBuilder line = new StringBuilder();
+            long tree = 0;
+            for (int mode = 0; mode < modes.length; mode++) {
+                long start = System.nanoTime();
+                for (CompiledProgram program : programs[mode])
+                    evaluate(program, simulators);
+                long elapsed = System.nanoTime() - start;
+                if (mode == 0)
+                    tree = elapsed;
+                line.append(String.format("%s: %6.1f ms (%.2fx)   ", modes[mode],
+                        elapsed / 1e6, (double) tree / elapsed));
+            }
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Evaluates a program in every simulator for 100 iterations.
+     *
+     * @return  the total fitness
+     */
+    private static long evaluate(CompiledProgram program, Simulator[] simulators)
+            throws CloneNotSupportedException {
+        if (program.getVerification() != Verifier.RESULT.VALID)
+            return 0;
+        long fitness = 0;
+        if (program.getMode() == Interpreter.MODE.TREE) {
+            LockstepInterpreter lockstep = new LockstepInterpreter(program);
+            for (int start = 0; start < simulators.length; start += LockstepInterpreter.MAX_LANES) {
+                ISimulator[] lanes = new ISimulator[Math.min(LockstepInterpreter.MAX_LANES,
+                        simulators.length - start)];
+                for (int lane = 0; lane < lanes.length; lane++)
+                    lanes[lane] = simulators[start + lane].clone();
+                lockstep.reset(lanes);
+                lockstep.run(100);
+                fitness += lockstep.getFitness();
+            }
+            return fitness;
+        }
+
+        Interpreter interpreter = null;
+        for (Simulator simulator : simulators) {
+            if (interpreter == null)
+                interpreter = program.bind(simulator.clone());
+            else
+                interpreter.reset(simulator.clone());
+            interpreter.run(100);
+            fitness += interpreter.getFitness();
+        }
+        return fitness;
+    }
+}
@@ -94,4 +94,27 @@ public class ExpressionTest {
         Assert.assertTrue(deep0.hashCode() == deep1.hashCode());
         Assert.assertFalse(deep0.hashCode() == main.hashCode());
     }
+
+    @Test
+    public void testOperandsConstructor() throws Exception {
+        Expression built = new Expression("top", new Expression("no-arg"));
+        Assert.assertEquals(built, deep0);
+        Assert.assertEquals(built.hashCode(), deep0.hashCode());
+        Assert.assertEquals(new Expression("+", Value.newInt(1), "front").toString(),
+                "(+ (INTEGER) 1 front)");
+    }
+
+    @Test
+    public void testSizeAndDepth() throws Exception {
+        Assert.assertEquals(main.getSize(), 1);
+        Assert.assertEquals(main.getDepth(), 1);
+        Assert.assertEquals(deep0.getSize(), 2);
+        Assert.assertEquals(deep0.getDepth(), 2);
+
+        Expression tree = Expression.fromString("(+ (^ 1 (/ 2 front)) (* 12 (move)))");
+        Assert.assertEquals(tree.getSize(), 9);
+        Assert.assertEquals(tree.getDepth(), 4);
+        Assert.assertEquals(tree.getOperandCount(), 2);
+        Assert.assertEquals(((Expression) tree.getOperand(1)).getSize(), 3);
+    }
 }
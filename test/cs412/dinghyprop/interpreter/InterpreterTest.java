@@ -0,0 +1,442 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.Profile;
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+import cs412.dinghyprop.genetics.GeneticProgram;
+import cs412.dinghyprop.simulator.ISimulator;
+import cs412.dinghyprop.simulator.Simulator;
+import cs412.dinghyprop.simulator.Symbols;
+import cs412.dinghyprop.simulator.UnknownFunctionException;
+import cs412.dinghyprop.simulator.VariableReferenceException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TestNG for Interpreter
+ */
+public class InterpreterTest {
+    private String[] programs = {
+            "(+ front 1)",
+            "(- 4)",
+            "(- front left 3)",
+            "(* 2 (< 1 2) (move) rear)",
+            "(/ 8 0 2)",
+            "(/ (move) 3)",
+            "(^ 3 0 2)",
+            "(^ heading 2 (== 1 1))",
+            "(< 1 2 3)",
+            "(<= 1 1 (turn-left))",
+            "(> front 1 (move))",
+            "(>= 3 3 2 heading)",
+            "(== 1 1 1)",
+            "(== (< 1 2) (> 2 1))",
+            "(== (move) (turn-left))",
+            "(!= 1 2 3)",
+            "(!= 1 2 1)",
+            "(if (< front 3) (turn-left) (move))",
+            "(if (== 1 1 1) 5 (move))",
+            "(if 0 (== 1 2) 4)",
+            "(if front (move))",
+            "(if (if left 1 (move)) (if rear (< 1 2) 7) (turn-right))",
+            "(== (if front 1 (< 1 2)) (if left 1 (< 1 2)))",
+            "(+ (if front 1 (< 1 2)) (* (if left 3 (move)) 2))",
+            "(foo 1 (move) front)",
+            "(if (!= front left right) (- 2147483647 -3) (* 65536 65536))",
+            "(< 3 (move) front)",
+            "(== 1 1 (move) 2 (turn-left))",
+            "(!= front left (move) front rear)",
+            "(if (> front 0) (if (< left 0) (move) (turn-left) (move)) (turn-right) rear)"
+    };
+
+    @Test
+    public void testModesAgree() throws Exception {
+        List<String> all = new ArrayList<String>();
+        for (String program : programs)
+            all.add(program);
+        GeneticProgram gp = new GeneticProgram(50, GeneticProgram.INIT_POP_METHOD.GROW, 6,
+                EvaluationStrategy.EAGER);
+        gp.initialize();
+        for (int i = 0; i < gp.getPopulationSize(); i++)
+            all.add(gp.getProgram(i).program);
+
+        for (EvaluationStrategy strategy : EvaluationStrategy.values()) {
+            for (String program : all) {
+                String expected = trace(program, Interpreter.MODE.TREE, strategy);
+                for (Interpreter.MODE mode : Interpreter.MODE.values())
+                    Assert.assertEquals(trace(program, mode, strategy), expected,
+                            mode + " " + strategy + ": " + program);
+            }
+        }
+    }
+
+    @Test
+    public void testLazyEvaluation() throws Exception {
+        String[][] cases = {
+                {"(if (< 1 2) (move) (turn-left))", "move  = (NULL) 0\n"},
+                {"(if 0 (move))", " = (NULL) 0\n"},
+                {"(< 2 1 front)", " = (BOOLEAN) 0\n"},
+                {"(< 1 2 front)", "front  = (BOOLEAN) 0\n"},
+                {"(== (move) (turn-left) 1 (move))", "move turn-left  = (BOOLEAN) 0\n"},
+                {"(!= 1 2 (move) 1 front)", "move  = (BOOLEAN) 0\n"}
+        };
+        for (Interpreter.MODE mode : Interpreter.MODE.values()) {
+            for (String[] c : cases) {
+                RecordingSimulator simulator = new RecordingSimulator();
+                Interpreter interpreter = new Interpreter(simulator, c[0], mode,
+                        EvaluationStrategy.LAZY);
+                Value result = Value.unpack(interpreter.evaluate());
+                simulator.trace.append(" = ").append(result).append('\n');
+                Assert.assertEquals(simulator.trace.toString(), c[1], mode + ": " + c[0]);
+            }
+        }
+    }
+
+    @Test
+    public void testRunAgrees() throws Exception {
+        String[] runPrograms = {
+                "(if (< front 3) (turn-left) (move))",
+                "(+ (move) (if (> heading 90) (turn-right) (turn-left)) (move))",
+                "(* (move) (move) (bogus))"
+        };
+        for (String program : runPrograms) {
+            Simulator expected = createSimulator();
+            Interpreter reference = new Interpreter(expected, program);
+            reference.run(100);
+
+            for (Interpreter.MODE mode : Interpreter.MODE.values()) {
+                Simulator simulator = createSimulator();
+                Interpreter interpreter = new Interpreter(simulator, program, mode);
+                interpreter.run(100);
+                Assert.assertEquals(interpreter.getFitness(), reference.getFitness());
+                Assert.assertEquals(simulator.getDinghy(), expected.getDinghy());
+                Assert.assertEquals(interpreter.canContinue(), reference.canContinue());
+            }
+        }
+    }
+
+    @Test
+    public void testResetAgrees() throws Exception {
+        String[] runPrograms = {
+                "(if (< front 3) (turn-left) (move))",
+                "(* (move) (move) (bogus))",
+                "(if (> position-y 6) (bogus) (move))"
+        };
+        for (String program : runPrograms) {
+            for (Interpreter.MODE mode : Interpreter.MODE.values()) {
+                Interpreter reused = CompiledProgram.compile(program, mode,
+                        EvaluationStrategy.EAGER).bind(null);
+                for (int start = 3; start < 8; start++) {
+                    Simulator expected = createSimulator(start);
+                    Interpreter reference = new Interpreter(expected, program, mode);
+                    reference.run(100);
+
+                    Simulator simulator = createSimulator(start);
+                    reused.reset(simulator);
+                    reused.run(100);
+                    Assert.assertEquals(reused.getFitness(), reference.getFitness());
+                    Assert.assertEquals(simulator.getState(), expected.getState());
+                    Assert.assertEquals(reused.canContinue(), reference.canContinue());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRunSkipsCycles() throws Exception {
+        List<String> all = new ArrayList<String>();
+        all.add("(turn-left)");
+        all.add("(+ (move) (turn-right) (move) (turn-right) (move))");
+        all.add("(if (< front 3) (turn-left) (move))");
+        GeneticProgram gp = new GeneticProgram(100, GeneticProgram.INIT_POP_METHOD.GROW, 6,
+                EvaluationStrategy.EAGER);
+        gp.initialize();
+        for (int i = 0; i < gp.getPopulationSize(); i++)
+            all.add(gp.getProgram(i).program);
+
+        for (String program : all) {
+            for (int iterations : new int[] {7, 100}) {
+                Simulator expected = createSimulator();
+                Interpreter reference = new Interpreter(expected, program);
+                for (int i = 0; i < iterations && reference.canContinue(); i++)
+                    reference.execute();
+
+                Simulator simulator = createSimulator();
+                Interpreter interpreter = new Interpreter(simulator, program);
+                interpreter.run(iterations);
+                Assert.assertEquals(interpreter.getFitness(), reference.getFitness(), program);
+                Assert.assertEquals(simulator.getState(), expected.getState(), program);
+                Assert.assertEquals(interpreter.canContinue(), reference.canContinue(), program);
+            }
+        }
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        for (Interpreter.MODE mode : Interpreter.MODE.values()) {
+            Interpreter interpreter = CompiledProgram.compile("(+ front (move))", mode,
+                    EvaluationStrategy.EAGER).bind(new RecordingSimulator());
+            interpreter.run(100);
+            Assert.assertEquals(interpreter.getCost(), 300L, mode.toString());
+            Assert.assertFalse(interpreter.isOverBudget(), mode.toString());
+            Assert.assertEquals(interpreter.getFitness(), 100, mode.toString());
+
+            interpreter.setBudget(300);
+            interpreter.reset(new RecordingSimulator());
+            interpreter.run(100);
+            Assert.assertEquals(interpreter.getCost(), 300L, mode.toString());
+            Assert.assertFalse(interpreter.isOverBudget(), mode.toString());
+
+            RecordingSimulator simulator = new RecordingSimulator();
+            interpreter.setBudget(10);
+            interpreter.reset(simulator);
+            interpreter.run(100);
+            Assert.assertEquals(interpreter.getCost(), 9L, mode.toString());
+            Assert.assertEquals(simulator.getFitness(), 3, mode.toString());
+            Assert.assertTrue(interpreter.isOverBudget(), mode.toString());
+            Assert.assertFalse(interpreter.canContinue(), mode.toString());
+            Assert.assertEquals(interpreter.getFitness(), 0, mode.toString());
+        }
+    }
+
+    @Test
+    public void testProfile() throws Exception {
+        String program = "(if (< front 3) (turn-left) (move))";
+        for (Interpreter.MODE mode : Interpreter.MODE.values()) {
+            Profile profile = new Profile();
+            Interpreter interpreter = CompiledProgram.compile(program, mode,
+                    EvaluationStrategy.EAGER).bind(new RecordingSimulator());
+            interpreter.setProfile(profile);
+            interpreter.execute();
+            interpreter.execute();
+            if (!Profile.ENABLED) {
+                Assert.assertEquals(profile.getTicks(), 0L, mode.toString());
+                continue;
+            }
+            Assert.assertEquals(profile.getTicks(), 2L, mode.toString());
+            Assert.assertEquals(profile.getNodes(), 12L, mode.toString());
+            Assert.assertEquals(profile.getOperatorCount("if"), 2L, mode.toString());
+            Assert.assertEquals(profile.getOperatorCount("<"), 2L, mode.toString());
+            Assert.assertEquals(profile.getOperatorCount("+"), 0L, mode.toString());
+            Assert.assertEquals(profile.getSensorCount(Symbols.FRONT), 2L, mode.toString());
+            Assert.assertEquals(profile.getActionCount(Symbols.MOVE), 2L, mode.toString());
+            Assert.assertEquals(profile.getActionCount(Symbols.TURN_LEFT), 2L, mode.toString());
+        }
+
+        Profile total = new Profile();
+        Profile part = new Profile();
+        part.countTick();
+        part.countNode();
+        part.countOperator("if");
+        part.countOperator("foo");
+        part.countSensor(Symbols.HEADING);
+        part.countAction(Symbols.TURN_RIGHT);
+        total.merge(part);
+        total.merge(part);
+        Assert.assertEquals(total.getTicks(), 2L);
+        Assert.assertEquals(total.getOperatorCount("if"), 2L);
+        Assert.assertEquals(total.getOperatorCount("bar"), 2L);
+        Assert.assertEquals(total.toString(),
+                "ticks=2 nodes=2 operators{ if=2 ?=2 } sensors{ heading=2 } actions{ turn-right=2 }");
+        total.clear();
+        Assert.assertEquals(total.toString(), "ticks=0 nodes=0 operators{ } sensors{ } actions{ }");
+    }
+
+    @Test
+    public void testConfiguredMode() throws Exception {
+        String previous = System.getProperty(Interpreter.MODE_PROPERTY);
+        try {
+            System.clearProperty(Interpreter.MODE_PROPERTY);
+            Assert.assertEquals(Interpreter.configuredMode(), Interpreter.MODE.TREE);
+            System.setProperty(Interpreter.MODE_PROPERTY, "lowered");
+            Assert.assertEquals(Interpreter.configuredMode(), Interpreter.MODE.LOWERED);
+            System.setProperty(Interpreter.MODE_PROPERTY, "COMPILED");
+            Assert.assertEquals(Interpreter.configuredMode(), Interpreter.MODE.COMPILED);
+            System.setProperty(Interpreter.MODE_PROPERTY, "bogus");
+            try {
+                Interpreter.configuredMode();
+                Assert.fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException expected) { }
+        } finally {
+            if (previous == null)
+                System.clearProperty(Interpreter.MODE_PROPERTY);
+            else
+                System.setProperty(Interpreter.MODE_PROPERTY, previous);
+        }
+    }
+
+    @Test
+    public void testEvaluationDoesNotAllocate() throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return;
+        com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+        if (!allocation.isThreadAllocatedMemorySupported())
+            return;
+        allocation.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        for (EvaluationStrategy strategy : EvaluationStrategy.values()) {
+            for (Interpreter.MODE mode : Interpreter.MODE.values()) {
+                for (String program : programs) {
+                    Interpreter interpreter = new Interpreter(new ConstantSimulator(),
+                            program, mode, strategy);
+                    for (int i = 0; i < 20000; i++)
+                        interpreter.evaluate();
+
+                    // the JVM occasionally allocates on the thread's behalf,
+                    // so only repeated allocation fails
+                    long allocated = Long.MAX_VALUE;
+                    for (int attempt = 0; attempt < 3 && allocated != 0; attempt++) {
+                        long before = allocation.getThreadAllocatedBytes(thread);
+                        for (int i = 0; i < 1000; i++)
+                            interpreter.evaluate();
+                        allocated = allocation.getThreadAllocatedBytes(thread) - before;
+                    }
+                    Assert.assertEquals(allocated, 0L, mode + " " + strategy + ": " + program);
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates a program a few times, recording the values and simulator
+     * calls.
+     */
+    private String trace(String program, Interpreter.MODE mode,
+                         EvaluationStrategy strategy) throws Exception {
+        RecordingSimulator simulator = new RecordingSimulator();
+        Interpreter interpreter = new Interpreter(simulator, program, mode, strategy);
+        for (int i = 0; i < 3; i++)
+            simulator.trace.append(" = ").append(Value.unpack(interpreter.evaluate())).append('\n');
+        return simulator.trace.toString();
+    }
+
+    private Simulator createSimulator() {
+        return createSimulator(5);
+    }
+
+    private Simulator createSimulator(int startY) {
+        Simulator simulator = new Simulator(20, 20, 3, 5, startY);
+        simulator.addObstacle(0, 5, 9);
+        simulator.addObstacle(1, 8, 5);
+        simulator.addObstacle(2, 2, 5);
+        simulator.setGoal(5, 8);
+        return simulator;
+    }
+
+    /**
+     * Simulator stand-in that does nothing and never allocates.
+     */
+    static class ConstantSimulator implements ISimulator {
+        private static final long serialVersionUID = -4387215902265317740L;
+
+        @Override
+        public void invoke(String function) {}
+
+        @Override
+        public int reference(String variable) {
+            return 3;
+        }
+
+        @Override
+        public void invoke(int functionId) {}
+
+        @Override
+        public int reference(int variableId) {
+            return variableId;
+        }
+
+        @Override
+        public int getFitness() {
+            return 0;
+        }
+
+        @Override
+        public long getState() {
+            return 0;
+        }
+
+        @Override
+        public boolean canContinue() {
+            return true;
+        }
+
+        @Override
+        public int getTerminationFitness() {
+            return 100;
+        }
+
+        @Override
+        public ISimulator clone() throws CloneNotSupportedException {
+            return (ISimulator) super.clone();
+        }
+    }
+
+    /**
+     * Simulator stand-in that records calls and returns varying sensor values.
+     */
+    static class RecordingSimulator implements ISimulator {
+        private static final long serialVersionUID = 5812036647190522384L;
+
+        final StringBuilder trace = new StringBuilder();
+        private int calls = 0;
+
+        @Override
+        public void invoke(String function) throws UnknownFunctionException {
+            trace.append(function).append(' ');
+        }
+
+        @Override
+        public int reference(String variable) throws VariableReferenceException {
+            calls++;
+            trace.append(variable).append(' ');
+            return (calls * 7) % 11 - 5;
+        }
+
+        @Override
+        public void invoke(int functionId) throws UnknownFunctionException {
+            invoke(Symbols.functionName(functionId));
+        }
+
+        @Override
+        public int reference(int variableId) throws VariableReferenceException {
+            return reference(Symbols.variableName(variableId));
+        }
+
+        @Override
+        public int getFitness() {
+            return calls;
+        }
+
+        @Override
+        public long getState() {
+            return trace.length();
+        }
+
+        @Override
+        public boolean canContinue() {
+            return true;
+        }
+
+        @Override
+        public int getTerminationFitness() {
+            return 100;
+        }
+
+        @Override
+        public ISimulator clone() throws CloneNotSupportedException {
+            return (ISimulator) super.clone();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+import cs412.dinghyprop.genetics.GeneticProgram;
+import cs412.dinghyprop.simulator.Simulator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * TestNG for IntronStripper
+ */
+public class IntronStripperTest {
+    @Test
+    public void testDiscardedValues() throws Exception {
+        assertStrips("(+ front (move) (* heading 2))", "(+ front (move))", EvaluationStrategy.EAGER);
+        assertStrips("(* (- position-x 3) (turn-left))", "(turn-left)", EvaluationStrategy.EAGER);
+        assertStrips("(+ 1 heading)", "(+ 0)", EvaluationStrategy.EAGER);
+        assertStrips("(foo heading goal-position-y)", "(+ 0)", EvaluationStrategy.EAGER);
+        assertStrips("(bar)", "(bar)", EvaluationStrategy.EAGER);
+        assertStrips("(+ bogus 1)", "(+ bogus)", EvaluationStrategy.EAGER);
+    }
+
+    @Test
+    public void testLazyControlFlow() throws Exception {
+        assertStrips("(if (< front 3) (+ heading 1) (move))", "(if (< front 3) 0 (move))",
+                EvaluationStrategy.LAZY);
+        assertStrips("(if (< front 3) (+ heading 1) (move))", "(+ front (move))",
+                EvaluationStrategy.EAGER);
+        assertStrips("(if (< front 3) (move) heading)", "(if (< front 3) (move))",
+                EvaluationStrategy.LAZY);
+        assertStrips("(if (< front 3) heading position-y)", "(+ front)", EvaluationStrategy.LAZY);
+        assertStrips("(< front left (move))", "(< front left (move))", EvaluationStrategy.LAZY);
+        assertStrips("(< front left heading)", "(+ front left)", EvaluationStrategy.LAZY);
+    }
+
+    @Test
+    public void testInputUnchanged() throws Exception {
+        Expression program = new Parser("(+ front (move) (* heading 2))").parse();
+        Expression copy = new Parser("(+ front (move) (* heading 2))").parse();
+        IntronStripper.strip(program, EvaluationStrategy.EAGER);
+        Assert.assertEquals(program, copy);
+    }
+
+    @Test
+    public void testBehaviorPreserved() throws Exception {
+        GeneticProgram gp = new GeneticProgram(200, GeneticProgram.INIT_POP_METHOD.RHALF_AND_HALF, 6,
+                EvaluationStrategy.EAGER);
+        gp.initialize();
+
+        for (EvaluationStrategy strategy : EvaluationStrategy.values()) {
+            for (int i = 0; i < gp.getPopulationSize(); i++) {
+                String program = gp.getProgram(i).program;
+                CompiledProgram original = CompiledProgram.compile(program,
+                        Interpreter.MODE.TREE, strategy);
+                CompiledProgram stripped = CompiledProgram.compile(program,
+                        Interpreter.MODE.TREE, strategy, true);
+                Assert.assertTrue(stripped.getTree().getSize() <= original.getTree().getSize(),
+                        program);
+
+                for (int start = 2; start < 8; start++) {
+                    Simulator expected = createSimulator(start);
+                    Interpreter reference = original.bind(expected);
+                    reference.run(100);
+
+                    Simulator simulator = createSimulator(start);
+                    Interpreter interpreter = stripped.bind(simulator);
+                    interpreter.run(100);
+                    String message = strategy + " " + start + ": " + program;
+                    Assert.assertEquals(interpreter.getFitness(), reference.getFitness(), message);
+                    Assert.assertEquals(simulator.getState(), expected.getState(), message);
+                    Assert.assertEquals(interpreter.canContinue(), reference.canContinue(), message);
+                }
+            }
+        }
+    }
+
+    private void assertStrips(String program, String expected,
+                              EvaluationStrategy strategy) throws Exception {
+        Expression stripped = CompiledProgram.compile(program, Interpreter.MODE.TREE,
+                strategy, true).getTree();
+        Assert.assertEquals(stripped, new Parser(expected).parse(), stripped.toString());
+    }
+
+    private Simulator createSimulator(int startY) {
+        Simulator simulator = new Simulator(12, 12, 4, 5, startY);
+        simulator.addObstacle(0, 5, 9);
+        simulator.addObstacle(1, 8, 5);
+        simulator.addObstacle(2, 2, 5);
+        simulator.addObstacle(3, 6, 3);
+        simulator.setGoal(5, 8);
+        return simulator;
+    }
+}
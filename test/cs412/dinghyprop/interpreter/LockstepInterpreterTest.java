@@ -0,0 +1,156 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.Profile;
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+import cs412.dinghyprop.genetics.GeneticProgram;
+import cs412.dinghyprop.simulator.ISimulator;
+import cs412.dinghyprop.simulator.Simulator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TestNG for LockstepInterpreter
+ */
+public class LockstepInterpreterTest {
+    private String[] programs = {
+            "(+ front 1)",
+            "(* 2 (< 1 2) (move) rear)",
+            "(> front 1 (move))",
+            "(== (move) (turn-left))",
+            "(!= front left (move) front rear)",
+            "(if (< front 3) (turn-left) (move))",
+            "(if (if left 1 (move)) (if rear (< 1 2) 7) (turn-right))",
+            "(+ (if front 1 (< 1 2)) (* (if left 3 (move)) 2))",
+            "(foo 1 (move) front)",
+            "(< 3 (move) front)",
+            "(== 1 1 (move) 2 (turn-left))",
+            "(if (> front 0) (if (< left 0) (move) (turn-left) (move)) (turn-right) rear)",
+            "(* (move) (move) (bogus))",
+            "(if (> position-y 6) (bogus) (move))",
+            "(if (< position-x 5) (+ (move) bogus) (turn-left))"
+    };
+
+    @Test
+    public void testValuesAgree() throws Exception {
+        for (EvaluationStrategy strategy : EvaluationStrategy.values()) {
+            for (String program : allPrograms()) {
+                CompiledProgram compiled = CompiledProgram.compile(program,
+                        Interpreter.MODE.TREE, strategy);
+                LockstepInterpreter lockstep = new LockstepInterpreter(compiled);
+                InterpreterTest.RecordingSimulator[] lanes = new InterpreterTest.RecordingSimulator[3];
+                for (int lane = 0; lane < lanes.length; lane++)
+                    lanes[lane] = new InterpreterTest.RecordingSimulator();
+                lockstep.reset(lanes);
+
+                InterpreterTest.RecordingSimulator simulator = new InterpreterTest.RecordingSimulator();
+                Interpreter interpreter = compiled.bind(simulator);
+                for (int i = 0; i < 3; i++) {
+                    lockstep.evaluate(7L);
+                    long value = interpreter.evaluate();
+                    simulator.trace.append(" = ").append(Value.unpack(value));
+                    for (int lane = 0; lane < lanes.length; lane++)
+                        lanes[lane].trace.append(" = ").append(Value.unpack(lockstep.result(lane)));
+                }
+                for (InterpreterTest.RecordingSimulator lane : lanes)
+                    Assert.assertEquals(lane.trace.toString(), simulator.trace.toString(),
+                            strategy + ": " + program);
+            }
+        }
+    }
+
+    @Test
+    public void testRunAgrees() throws Exception {
+        for (EvaluationStrategy strategy : EvaluationStrategy.values()) {
+            for (String program : allPrograms()) {
+                CompiledProgram compiled = CompiledProgram.compile(program,
+                        Interpreter.MODE.TREE, strategy);
+                Simulator[] lanes = new Simulator[6];
+                for (int lane = 0; lane < lanes.length; lane++)
+                    lanes[lane] = createSimulator(lane + 2);
+                LockstepInterpreter lockstep = new LockstepInterpreter(compiled);
+                Profile lockstepProfile = new Profile();
+                lockstep.setProfile(lockstepProfile);
+                lockstep.reset(lanes);
+                lockstep.run(100);
+
+                Profile profile = new Profile();
+                long cost = 0;
+                int fitness = 0;
+                for (int lane = 0; lane < lanes.length; lane++) {
+                    Simulator expected = createSimulator(lane + 2);
+                    Interpreter reference = compiled.bind(expected);
+                    reference.setProfile(profile);
+                    reference.run(100);
+                    cost += reference.getCost();
+                    fitness += reference.getFitness();
+
+                    String message = strategy + " " + lane + ": " + program;
+                    Assert.assertEquals(lockstep.getFitness(lane), reference.getFitness(), message);
+                    Assert.assertEquals(lanes[lane].getState(), expected.getState(), message);
+                    Assert.assertEquals(lockstep.canContinue(lane), reference.canContinue(), message);
+                }
+                Assert.assertEquals(lockstep.getFitness(), fitness, program);
+                Assert.assertEquals(lockstep.getCost(), cost, program);
+                Assert.assertEquals(lockstepProfile.toString(), profile.toString(), program);
+            }
+        }
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        CompiledProgram compiled = CompiledProgram.compile("(+ front (move))",
+                Interpreter.MODE.TREE, EvaluationStrategy.EAGER);
+        LockstepInterpreter lockstep = new LockstepInterpreter(compiled);
+        ISimulator[] lanes = {
+                new InterpreterTest.RecordingSimulator(), new InterpreterTest.RecordingSimulator()
+        };
+        lockstep.setBudget(20);
+        lockstep.reset(lanes);
+        lockstep.run(100);
+        Assert.assertTrue(lockstep.isOverBudget());
+        Assert.assertEquals(lockstep.getCost(), 18L);
+        Assert.assertEquals(lanes[0].getFitness(), 3);
+        Assert.assertEquals(lockstep.getFitness(), 0);
+        Assert.assertFalse(lockstep.canContinue(1));
+
+        lockstep.setBudget(600);
+        lockstep.reset(new ISimulator[] {
+                new InterpreterTest.RecordingSimulator(), new InterpreterTest.RecordingSimulator()
+        });
+        lockstep.run(100);
+        Assert.assertFalse(lockstep.isOverBudget());
+        Assert.assertEquals(lockstep.getCost(), 600L);
+        Assert.assertEquals(lockstep.getFitness(), 200);
+    }
+
+    private List<String> allPrograms() {
+        List<String> all = new ArrayList<String>();
+        for (String program : programs)
+            all.add(program);
+        GeneticProgram gp = new GeneticProgram(100, GeneticProgram.INIT_POP_METHOD.RHALF_AND_HALF, 6,
+                EvaluationStrategy.EAGER);
+        gp.initialize();
+        for (int i = 0; i < gp.getPopulationSize(); i++)
+            all.add(gp.getProgram(i).program);
+        return all;
+    }
+
+    private Simulator createSimulator(int startY) {
+        Simulator simulator = new Simulator(12, 12, 4, 5, startY);
+        simulator.addObstacle(0, 5, 9);
+        simulator.addObstacle(1, 8, 5);
+        simulator.addObstacle(2, 2, 5);
+        simulator.addObstacle(3, 6, 3);
+        simulator.setGoal(5, 8);
+        return simulator;
+    }
+}
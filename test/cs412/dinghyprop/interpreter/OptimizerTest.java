@@ -0,0 +1,122 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+import cs412.dinghyprop.genetics.GeneticProgram;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TestNG for Optimizer
+ */
+public class OptimizerTest {
+    private String[] programs = {
+            "(+ 1 (* 2 3))",
+            "(+ front 0)",
+            "(+ front 2 left 3)",
+            "(- front 0 (< 1 2))",
+            "(- 4 front 4)",
+            "(* 1 (- left 0))",
+            "(* front 0 (move))",
+            "(/ front 1 (< 1 2))",
+            "(/ front 0 left)",
+            "(/ (< 1 2))",
+            "(^ front 3 0 (move) 0)",
+            "(^ (< front 1) 2)",
+            "(if (< 1 2) front (move))",
+            "(if (> 1 2) (move) (+ 1 2) front)",
+            "(if (> 1 2) (move))",
+            "(if (< 1 2) (< front 1) 3 4)",
+            "(if front 1 2 3 (move))",
+            "(< 2 1 (move))",
+            "(!= 1 1 front)",
+            "(== 1 1 front 2)",
+            "(+ (< 1 2) front)",
+            "(foo 1 (move) 2)",
+            "(foo 1 2)",
+            "(bar)"
+    };
+
+    @Test
+    public void testFolding() throws Exception {
+        assertOptimizes("(+ 1 (* 2 3))", "(if 1 7)", EvaluationStrategy.EAGER);
+        assertOptimizes("(- front (+ 1 2) left 3)", "(- front left 6)", EvaluationStrategy.EAGER);
+        assertOptimizes("(* (+ front 0) 1)", "(if 1 front)", EvaluationStrategy.EAGER);
+        assertOptimizes("(/ 8 0 2)", "(if 1 0)", EvaluationStrategy.EAGER);
+        assertOptimizes("(^ front 0 2 0)", "(^ front 0)", EvaluationStrategy.EAGER);
+    }
+
+    @Test
+    public void testIdentitiesKeepTypes() throws Exception {
+        // (+ x 0) is only x when x is an integer
+        assertOptimizes("(+ (< front 1) 0)", "(+ (< front 1))", EvaluationStrategy.EAGER);
+        assertOptimizes("(* (- front 1) 1)", "(- front 1)", EvaluationStrategy.EAGER);
+    }
+
+    @Test
+    public void testDeadBranches() throws Exception {
+        assertOptimizes("(+ 1 (if (< 1 2) front 5))", "(+ front 1)", EvaluationStrategy.EAGER);
+        // the untaken branch has effects, so it must stay when eager
+        assertOptimizes("(+ 1 (if (- 2 1) front (move)))", "(+ (if 1 front (move)) 1)",
+                EvaluationStrategy.EAGER);
+        assertOptimizes("(+ 1 (if (- 2 1) front (move)))", "(+ front 1)", EvaluationStrategy.LAZY);
+        assertOptimizes("(< 2 1 (move))", "(< 2 1 (move))", EvaluationStrategy.EAGER);
+        assertOptimizes("(+ 1 (< 2 1 (move)))", "(if 1 1)", EvaluationStrategy.LAZY);
+    }
+
+    @Test
+    public void testInputUnchanged() throws Exception {
+        Expression program = new Parser("(+ 1 (if (< 1 2) front 5))").parse();
+        Expression copy = new Parser("(+ 1 (if (< 1 2) front 5))").parse();
+        Optimizer.optimize(program, EvaluationStrategy.EAGER);
+        Assert.assertEquals(program, copy);
+    }
+
+    @Test
+    public void testBehaviorPreserved() throws Exception {
+        List<String> all = new ArrayList<String>();
+        for (String program : programs)
+            all.add(program);
+        GeneticProgram gp = new GeneticProgram(50, GeneticProgram.INIT_POP_METHOD.GROW, 6,
+                EvaluationStrategy.EAGER);
+        gp.initialize();
+        for (int i = 0; i < gp.getPopulationSize(); i++)
+            all.add(gp.getProgram(i).program);
+
+        for (EvaluationStrategy strategy : EvaluationStrategy.values()) {
+            for (String program : all) {
+                Expression parsed = new Parser(program).parse();
+                String expected = trace(parsed, strategy);
+                Assert.assertEquals(trace(Optimizer.optimize(parsed, strategy), strategy),
+                        expected, strategy + ": " + program);
+            }
+        }
+    }
+
+    private void assertOptimizes(String program, String expected,
+                                 EvaluationStrategy strategy) throws Exception {
+        Expression optimized = Optimizer.optimize(new Parser(program).parse(), strategy);
+        Assert.assertEquals(optimized, new Parser(expected).parse(), optimized.toString());
+    }
+
+    /**
+     * Walks a program's AST as given a few times, recording the values and
+     * simulator calls.
+     */
+    private String trace(Expression program, EvaluationStrategy strategy) throws Exception {
+        InterpreterTest.RecordingSimulator simulator = new InterpreterTest.RecordingSimulator();
+        Interpreter interpreter = new CompiledProgram(program, program.toString(),
+                Interpreter.MODE.TREE, strategy).bind(simulator);
+        for (int i = 0; i < 3; i++)
+            simulator.trace.append(" = ").append(Value.unpack(interpreter.evaluate())).append('\n');
+        return simulator.trace.toString();
+    }
+}
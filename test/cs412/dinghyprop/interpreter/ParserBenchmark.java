@@ -0,0 +1,115 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+import cs412.dinghyprop.genetics.GeneticProgram;
+
+import java.io.*;
+import java.util.Stack;
+
+/**
+ * Compares the throughput of Parser with the StreamTokenizer-based parser it
+ * replaced.
+ * <p>
+ * Run with the test classpath: {@code java
+ * cs412.dinghyprop.interpreter.ParserBenchmark [rounds]}
+ */
+public class ParserBenchmark {
+    public static void main(String[] args) throws Exception {
+        int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 20;
+        GeneticProgram gp = new GeneticProgram(500, GeneticProgram.INIT_POP_METHOD.RHALF_AND_HALF,
+                6, EvaluationStrategy.EAGER);
+        gp.initialize();
+        String[] programs = new String[gp.getPopulationSize()];
+        long characters = 0;
+        for (int i = 0; i < programs.length; i++) {
+            programs[i] = gp.getProgram(i).program;
+            characters += programs[i].length();
+        }
+
+        for (String program : programs) {
+            if (!new Parser(program).parse().equals(parseWithStreamTokenizer(program)))
+                throw new IllegalStateException("Parsers disagree on " + program);
+        }
+
+        System.out.println(programs.length + " programs, "
+                + (characters / programs.length) + " characters on average");
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (String program : programs)
+                parseWithStreamTokenizer(program);
+            long tokenizer = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (String program : programs)
+                new Parser(program).parse();
+            long lexer = System.nanoTime() - start;
+
+            System.out.printf("StreamTokenizer: %8.0f programs/s   Lexer: %8.0f programs/s   (%.1fx)%n",
+                    rate(programs.length, tokenizer), rate(programs.length, lexer),
+                    (double) tokenizer / lexer);
+        }
+    }
+
+    private static double rate(int count, long nanos) {
+        return count * 1e9 / nanos;
+    }
+
+    /**
+     * The parser as it was before Lexer: the program text is copied into a
+     * byte array and read through a StreamTokenizer, and numbers are told
+     * from symbols by catching NumberFormatException.
+     */
+    static Expression parseWithStreamTokenizer(String program) throws ParsingException, IOException {
+        Reader r = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(program.getBytes())));
+        StreamTokenizer lexer = new StreamTokenizer(r);
+        lexer.resetSyntax();
+        lexer.eolIsSignificant(false);
+        lexer.whitespaceChars(0, ' ');
+        lexer.wordChars('!', '!');
+        lexer.wordChars('*', 'z');
+
+        if (lexer.nextToken() != '(' || lexer.nextToken() != StreamTokenizer.TT_WORD)
+            throw new ParsingException("Bad start");
+
+        Stack<Expression> stack = new Stack<Expression>();
+        Expression expr = new Expression(lexer.sval);
+        int t = lexer.nextToken();
+        while (t != StreamTokenizer.TT_EOF) {
+            switch (t) {
+                case ')':
+                    if (stack.empty()) {
+                        if (lexer.nextToken() != StreamTokenizer.TT_EOF)
+                            throw new ParsingException("Expected end of input.");
+                        return expr;
+                    }
+                    stack.peek().addOperand(expr);
+                    expr = stack.pop();
+                    break;
+                case '(':
+                    stack.push(expr);
+                    if (lexer.nextToken() != StreamTokenizer.TT_WORD)
+                        throw new ParsingException("Expected symbol.");
+                    expr = new Expression(lexer.sval);
+                    break;
+                case StreamTokenizer.TT_WORD:
+                    try {
+                        expr.addOperand(Value.newInt(Integer.parseInt(lexer.sval)));
+                    } catch (NumberFormatException ignored) {
+                        expr.addOperand(lexer.sval);
+                    }
+                    break;
+                default:
+                    throw new ParsingException("Unknown token type: " + lexer.ttype);
+            }
+            t = lexer.nextToken();
+        }
+        throw new ParsingException("Expected end of input.");
+    }
+}
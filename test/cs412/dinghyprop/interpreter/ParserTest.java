@@ -9,6 +9,8 @@ package cs412.dinghyprop.interpreter;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+
 /**
  * TestNG for Parser
  */
@@ -60,6 +62,54 @@ public class ParserTest {
         Assert.assertTrue(add.equals(p.parse()));
     }
 
+    @Test
+    public void testParseInstructions() throws Exception {
+        Parser p = new Parser("(if (< front 3) (move) (- 2 left front))");
+        Instructions instructions = p.parseInstructions();
+        Assert.assertEquals(instructions.toString(),
+                "sensor front\npush 3\n< 2\naction move\npush 2\n" +
+                "sensor left\nsensor front\n- 3\nif 3\n");
+        Assert.assertEquals(instructions.maxStack, 5);
+        Assert.assertEquals(instructions.symbols.length, 0);
+
+        instructions = new Parser("(foo bar (baz) bar)").parseInstructions();
+        Assert.assertEquals(instructions.toString(),
+                "reference bar\ninvoke baz\nreference bar\ndiscard 3\n");
+        Assert.assertEquals(instructions.symbols.length, 2);
+    }
+
+    @Test
+    public void testParseWords() throws Exception {
+        Expression expression = new Expression("-");
+        expression.addOperand("-");
+        expression.addOperand(Value.newInt(5));
+        expression.addOperand(Value.newInt(Integer.MIN_VALUE));
+        expression.addOperand("2147483648");
+        expression.addOperand("1a");
+        expression.addOperand(Value.newInt(7));
+        expression.addOperand("goal-position-x");
+
+        Expression parsed = new Parser("(- - +5 -2147483648 2147483648 1a 007 goal-position-x)").parse();
+        Assert.assertEquals(parsed, expression);
+        Assert.assertSame(parsed.getOperand(6), "goal-position-x");
+    }
+
+    @Test
+    public void testParseSlice() throws Exception {
+        String text = "junk(+ 1 (move))junk";
+        Expression expression = new Expression("+");
+        expression.addOperand(Value.newInt(1));
+        expression.addOperand(new Expression("move"));
+        Assert.assertEquals(new Parser(text, 4, text.length() - 4).parse(), expression);
+        Assert.assertEquals(new Parser(new StringBuilder(text), 4, 16).parse(), expression);
+    }
+
+    @Test
+    public void testParseStream() throws Exception {
+        Parser p = new Parser(new ByteArrayInputStream("(hey there (brother) 6)".getBytes()));
+        Assert.assertEquals(p.parse(), new Parser(exprs[0]).parse());
+    }
+
     @Test
     public void testParseThrows() throws Exception {
         String exprThrows = "(+ 1 (- 1 3)";
@@ -71,4 +121,15 @@ public class ParserTest {
         }
         Assert.fail("Parser should fail on 'exprThrows'.");
     }
+
+    @Test
+    public void testParseRejects() throws Exception {
+        String[] bad = {"", "foo", "(+ 1 2))", "(+ 1 {2})", "((+ 1 2))", "(+ 1 ())"};
+        for (String program : bad) {
+            try {
+                new Parser(program).parse();
+                Assert.fail("Parser should fail on '" + program + "'.");
+            } catch (ParsingException expected) { }
+        }
+    }
 }
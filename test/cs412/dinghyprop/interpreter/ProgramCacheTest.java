@@ -0,0 +1,56 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * TestNG for ProgramCache
+ */
+public class ProgramCacheTest {
+    @Test
+    public void testHits() throws Exception {
+        ProgramCache cache = new ProgramCache(4, Interpreter.MODE.TREE, EvaluationStrategy.EAGER);
+        CompiledProgram first = cache.get("(+ front 1)");
+        Assert.assertSame(cache.get("(+ front 1)"), first);
+        Assert.assertSame(cache.get(new String("(+ front 1)")), first);
+        Assert.assertEquals(first.getText(), "(+ front 1)");
+        Assert.assertEquals(cache.getHits(), 2);
+        Assert.assertEquals(cache.getMisses(), 1);
+        Assert.assertEquals(cache.getHitRate(), 2.0 / 3.0, 1e-9);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        ProgramCache cache = new ProgramCache(2, Interpreter.MODE.STACK_MACHINE,
+                EvaluationStrategy.LAZY);
+        CompiledProgram a = cache.get("(move)");
+        cache.get("(turn-left)");
+        cache.get("(move)");
+        cache.get("(turn-right)");   // evicts (turn-left), the least recently used
+
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertEquals(cache.getEvictions(), 1);
+        Assert.assertSame(cache.get("(move)"), a);
+        Assert.assertEquals(cache.getMisses(), 3);
+        cache.get("(turn-left)");
+        Assert.assertEquals(cache.getMisses(), 4);
+        Assert.assertEquals(a.getMode(), Interpreter.MODE.STACK_MACHINE);
+    }
+
+    @Test
+    public void testParseFailure() throws Exception {
+        ProgramCache cache = new ProgramCache(2, Interpreter.MODE.TREE, EvaluationStrategy.EAGER);
+        try {
+            cache.get("(+ 1");
+            Assert.fail("ProgramCache should not cache unparseable programs.");
+        } catch (ParsingException expected) { }
+        Assert.assertEquals(cache.size(), 0);
+    }
+}
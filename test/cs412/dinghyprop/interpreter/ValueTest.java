@@ -153,4 +153,20 @@ public class ValueTest {
         Assert.assertTrue(Value.newInt(0).hashCode() == Value.newInt(0).hashCode());
         Assert.assertFalse(Value.newInt(0).hashCode() == Value.newInt(1).hashCode());
     }
+
+    @Test
+    public void testPack() throws Exception {
+        Value[] all = {Value.NULL_VALUE, Value.TRUE_VALUE, Value.FALSE_VALUE,
+                Value.newInt(Integer.MIN_VALUE), Value.newInt(-1),
+                Value.newInt(0), Value.newInt(1), Value.newInt(Integer.MAX_VALUE)};
+        for (Value value : all) {
+            long packed = Value.pack(value);
+            Assert.assertEquals(Value.unpack(packed), value);
+            Assert.assertEquals(Value.addend(packed), value.addend());
+            Assert.assertEquals(Value.multiplicand(packed), value.multiplicand());
+            Assert.assertEquals(Value.bool(packed), value.bool());
+            for (Value other : all)
+                Assert.assertEquals(packed == Value.pack(other), value.equals(other));
+        }
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.interpreter;
+
+import cs412.dinghyprop.genetics.EvaluationStrategy;
+import cs412.dinghyprop.simulator.Simulator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * TestNG for Verifier
+ */
+public class VerifierTest {
+    private String[] invalid = {
+            "(+ front bogus)",
+            "(if (< front 3) (turn-left) (bogus))",
+            "(< (move) 2 (bogus) front)",
+            "(foo 1 (bar))"
+    };
+
+    @Test
+    public void testVerify() throws Exception {
+        assertResult("(if (< front 3) (turn-left) (move))", Verifier.RESULT.VALID,
+                EvaluationStrategy.EAGER);
+        assertResult("(foo front (move))", Verifier.RESULT.VALID, EvaluationStrategy.EAGER);
+        assertResult("(+ front bogus)", Verifier.RESULT.UNKNOWN_VARIABLE, EvaluationStrategy.EAGER);
+        assertResult("(* (move) (bogus))", Verifier.RESULT.UNKNOWN_FUNCTION,
+                EvaluationStrategy.EAGER);
+    }
+
+    @Test
+    public void testVerifyLazy() throws Exception {
+        // branches and later comparison operands are not always evaluated
+        assertResult("(if (< front 3) (turn-left) (bogus))", Verifier.RESULT.VALID,
+                EvaluationStrategy.LAZY);
+        assertResult("(< (move) 2 (bogus) front)", Verifier.RESULT.VALID, EvaluationStrategy.LAZY);
+        assertResult("(if (< front bogus) (turn-left) (move))", Verifier.RESULT.UNKNOWN_VARIABLE,
+                EvaluationStrategy.LAZY);
+        assertResult("(< (bogus) 2 front)", Verifier.RESULT.UNKNOWN_FUNCTION,
+                EvaluationStrategy.LAZY);
+    }
+
+    @Test
+    public void testInvalidProgramsRaise() throws Exception {
+        for (String program : invalid) {
+            Assert.assertTrue(CompiledProgram.compile(program, Interpreter.MODE.TREE,
+                    EvaluationStrategy.EAGER).getVerification() != Verifier.RESULT.VALID, program);
+
+            Simulator simulator = new Simulator(20, 20, 0, 5, 5);
+            simulator.setGoal(5, 15);
+            Interpreter interpreter = new Interpreter(simulator, program);
+            interpreter.execute();
+            Assert.assertFalse(interpreter.canContinue(), program);
+            Assert.assertEquals(interpreter.getFitness(), 0, program);
+        }
+    }
+
+    @Test
+    public void testRejectedProgramsScoreZero() throws Exception {
+        // The simulator ignores unknown symbols once the episode has ended, so
+        // unverified, this program reaches the goal before (bar) and keeps
+        // its fitness; verified, it is rejected and scores 0 everywhere.
+        String program = "(+ (move) (bar))";
+        Simulator simulator = new Simulator(20, 20, 0, 5, 5);
+        simulator.setGoal(5, 6);
+        Interpreter interpreter = new Interpreter(simulator, program);
+        interpreter.run(100);
+        Assert.assertFalse(interpreter.canContinue());
+        Assert.assertEquals(interpreter.getFitness(), 100);
+
+        for (EvaluationStrategy strategy : EvaluationStrategy.values()) {
+            CompiledProgram compiled = CompiledProgram.compile(program, Interpreter.MODE.TREE,
+                    strategy);
+            Assert.assertEquals(compiled.getVerification(), Verifier.RESULT.UNKNOWN_FUNCTION,
+                    strategy.toString());
+        }
+    }
+
+    private void assertResult(String program, Verifier.RESULT expected,
+                              EvaluationStrategy strategy) throws Exception {
+        Expression tree = new Parser(program).parse();
+        Assert.assertEquals(Verifier.verify(tree, strategy), expected, program);
+    }
+}
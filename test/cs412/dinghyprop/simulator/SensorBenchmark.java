@@ -0,0 +1,337 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.simulator;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+/**
+ * Compares the latency and allocation of the per-obstacle sensor tests in
+ * Dinghy with the int[]-based geometry they replaced.
+ * <p>
+ * Run with the test classpath: {@code java
+ * cs412.dinghyprop.simulator.SensorBenchmark [rounds]}
+ */
+public class SensorBenchmark {
+    private static final int SIZE = 100;
+    private static final int PASSES = 50;
+
+    public static void main(String[] args) throws Exception {
+        int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 20;
+        Random random = new Random(412);
+        Obstacle[] obstacles = new Obstacle[SIZE * SIZE / 100];
+        for (int i = 0; i < obstacles.length; i++)
+            obstacles[i] = new Obstacle(random.nextInt(SIZE + 1), random.nextInt(SIZE + 1));
+        Dinghy[] dinghies = new Dinghy[256];
+        LegacyDinghy[] legacy = new LegacyDinghy[dinghies.length];
+        for (int i = 0; i < dinghies.length; i++) {
+            dinghies[i] = new Dinghy(random.nextInt(SIZE + 1), random.nextInt(SIZE + 1));
+            for (int turn = random.nextInt(4); turn > 0; turn--)
+                dinghies[i].turnRight();
+            legacy[i] = new LegacyDinghy(dinghies[i]);
+        }
+
+        for (int i = 0; i < dinghies.length; i++) {
+            for (int sensor = 0; sensor <= Symbols.REAR; sensor++) {
+                if (readKernel(dinghies[i], obstacles, sensor)
+                        != readArrays(legacy[i], obstacles, sensor))
+                    throw new IllegalStateException("Sensor paths disagree");
+            }
+        }
+
+        com.sun.management.ThreadMXBean allocation = allocationBean();
+        long thread = Thread.currentThread().getId();
+        int reads = PASSES * dinghies.length * (Symbols.REAR + 1);
+        System.out.println(obstacles.length + " obstacles, " + reads + " sensor reads per round");
+        for (int round = 0; round < rounds; round++) {
+            long bytes = allocatedBytes(allocation, thread);
+            long start = System.nanoTime();
+            int sink = 0;
+            for (int pass = 0; pass < PASSES; pass++) {
+                for (LegacyDinghy dinghy : legacy) {
+                    for (int sensor = 0; sensor <= Symbols.REAR; sensor++)
+                        sink += readArrays(dinghy, obstacles, sensor);
+                }
+            }
+            long arrays = System.nanoTime() - start;
+            long arrayBytes = allocatedBytes(allocation, thread) - bytes;
+
+            bytes = allocatedBytes(allocation, thread);
+            start = System.nanoTime();
+            for (int pass = 0; pass < PASSES; pass++) {
+                for (Dinghy dinghy : dinghies) {
+                    for (int sensor = 0; sensor <= Symbols.REAR; sensor++)
+                        sink += readKernel(dinghy, obstacles, sensor);
+                }
+            }
+            long kernel = System.nanoTime() - start;
+            long kernelBytes = allocatedBytes(allocation, thread) - bytes;
+
+            System.out.printf("int[]: %7.0f ns/read %7d B/read   kernel: %7.0f ns/read %7d B/read   (%.1fx)%s%n",
+                    (double) arrays / reads, arrayBytes / reads,
+                    (double) kernel / reads, kernelBytes / reads,
+                    (double) arrays / kernel, (sink == 42) ? " " : "");
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return null;
+        com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+        if (!allocation.isThreadAllocatedMemorySupported())
+            return null;
+        allocation.setThreadAllocatedMemoryEnabled(true);
+        return allocation;
+    }
+
+    private static long allocatedBytes(com.sun.management.ThreadMXBean allocation, long thread) {
+        return (allocation == null) ? 0 : allocation.getThreadAllocatedBytes(thread);
+    }
+
+    /**
+     * Reads a sensor as Simulator scans the obstacles, through Dinghy.
+     */
+    private static int readKernel(Dinghy dinghy, Obstacle[] obstacles, int sensor) {
+        int upperBound = 2 * SIZE;
+        for (Obstacle obstacle : obstacles) {
+            int temp;
+            switch (sensor) {
+                case Symbols.FRONT:
+                    temp = dinghy.getDistanceFront(obstacle);
+                    break;
+                case Symbols.SHORT_LEFT:
+                    temp = dinghy.getDistanceShortLeft(obstacle);
+                    break;
+                case Symbols.SHORT_RIGHT:
+                    temp = dinghy.getDistanceShortRight(obstacle);
+                    break;
+                case Symbols.LEFT:
+                    temp = dinghy.getDistanceLeft(obstacle);
+                    break;
+                case Symbols.RIGHT:
+                    temp = dinghy.getDistanceRight(obstacle);
+                    break;
+                default:
+                    temp = dinghy.getDistanceRear(obstacle);
+                    break;
+            }
+            if (temp < upperBound && temp != -1 && temp != 0)
+                return temp;
+        }
+        return upperBound;
+    }
+
+    /**
+     * Reads a sensor as Simulator scans the obstacles, through the Dinghy
+     * geometry as it was before it used primitive accessors.
+     */
+    private static int readArrays(LegacyDinghy dinghy, Obstacle[] obstacles, int sensor) {
+        int upperBound = 2 * SIZE;
+        for (Obstacle obstacle : obstacles) {
+            int temp;
+            switch (sensor) {
+                case Symbols.FRONT:
+                    temp = dinghy.getDistanceFront(obstacle);
+                    break;
+                case Symbols.SHORT_LEFT:
+                    temp = dinghy.getDistanceShortLeft(obstacle);
+                    break;
+                case Symbols.SHORT_RIGHT:
+                    temp = dinghy.getDistanceShortRight(obstacle);
+                    break;
+                case Symbols.LEFT:
+                    temp = dinghy.getDistanceLeft(obstacle);
+                    break;
+                case Symbols.RIGHT:
+                    temp = dinghy.getDistanceRight(obstacle);
+                    break;
+                default:
+                    temp = dinghy.getDistanceRear(obstacle);
+                    break;
+            }
+            if (temp < upperBound && temp != -1 && temp != 0)
+                return temp;
+        }
+        return upperBound;
+    }
+
+    /**
+     * Dinghy's sensor geometry as it was before it used primitive accessors:
+     * positions are copied into new arrays for every test, distances are
+     * taken with Math.pow, and slopes with integer division.
+     */
+    private static class LegacyDinghy extends Point {
+        private static final long serialVersionUID = 1739520483561280967L;
+
+        private enum Direction { NORTH, EAST, SOUTH, WEST }
+
+        private Direction direc;
+
+        LegacyDinghy(Dinghy dinghy) {
+            super(dinghy.getPosition()[0], dinghy.getPosition()[1]);
+            direc = Direction.values()[dinghy.getDirection() / 90];
+        }
+
+        private Direction leftDirection() {
+            switch (direc) {
+                case NORTH:
+                    return Direction.WEST;
+                case EAST:
+                    return Direction.NORTH;
+                case SOUTH:
+                    return Direction.EAST;
+                case WEST:
+                default:
+                    return Direction.SOUTH;
+            }
+        }
+
+        private Direction rightDirection() {
+            switch (direc) {
+                case NORTH:
+                    return Direction.EAST;
+                case EAST:
+                    return Direction.SOUTH;
+                case SOUTH:
+                    return Direction.WEST;
+                case WEST:
+                default:
+                    return Direction.NORTH;
+            }
+        }
+
+        private Direction rearDirection() {
+            switch (direc) {
+                case NORTH:
+                    return Direction.SOUTH;
+                case EAST:
+                    return Direction.WEST;
+                case SOUTH:
+                    return Direction.WEST;
+                case WEST:
+                default:
+                    return Direction.NORTH;
+            }
+        }
+
+        int getDistanceInDirection(Direction direction, Obstacle obst) {
+            int[] obstPos = obst.getPosition();
+            int[] dinghyPos = this.getPosition();
+            int result = 0;
+            int temp;
+            switch(direction) {
+                case NORTH:
+                    temp = obstPos[1] - dinghyPos[1];
+                    if(temp >= 0 && (obstPos[0] - dinghyPos[0]) == 0)
+                        result = temp;
+                    else
+                        result = -1;
+                    break;
+                case EAST:
+                    temp = obstPos[0] - dinghyPos[0];
+                    if(temp >= 0 && (obstPos[1] - dinghyPos[1]) == 0)
+                        result = temp;
+                    else
+                        result = -1;
+                    break;
+                case SOUTH:
+                    temp = dinghyPos[1] - obstPos[1];
+                    if(temp >= 0 && (dinghyPos[0] - obstPos[0]) == 0)
+                        result = temp;
+                    else
+                        result = -1;
+                    break;
+                case WEST:
+                    temp = dinghyPos[0] - obstPos[0];
+                    if(temp >= 0 && (dinghyPos[1] - obstPos[1]) == 0)
+                        result = temp;
+                    else
+                        result = -1;
+                    break;
+            }
+            return result;
+        }
+
+        int getDistanceFront(Obstacle obst) {
+            return getDistanceInDirection(direc, obst);
+        }
+
+        int getDistanceLeft(Obstacle obst) {
+            return getDistanceInDirection(leftDirection(), obst);
+        }
+
+        int getDistanceRight(Obstacle obst) {
+            return getDistanceInDirection(rightDirection(), obst);
+        }
+
+        int getDistanceRear(Obstacle obst) {
+            return getDistanceInDirection(rearDirection(), obst);
+        }
+
+        int getDistanceShortLeft(Obstacle obst) {
+            int[] obstaclePosition = obst.getPosition();
+            int[] dinghyPosition = this.getPosition();
+
+            if (direc == Direction.NORTH && checkConditions(obstaclePosition, dinghyPosition, -1, '>'))
+                return distance(obst);
+            if (direc == Direction.EAST && checkConditions(obstaclePosition, dinghyPosition, 1, '>'))
+                return distance(obst);
+            if (direc == Direction.SOUTH && checkConditions(obstaclePosition, dinghyPosition, -1, '<'))
+                return distance(obst);
+            if (direc == Direction.WEST && checkConditions(obstaclePosition, dinghyPosition, 1, '<'))
+                return distance(obst);
+
+            return -1;
+        }
+
+        int getDistanceShortRight(Obstacle obst) {
+            int[] obstaclePosition = obst.getPosition();
+            int[] dinghyPosition = this.getPosition();
+
+            if (direc == Direction.NORTH && checkConditions(obstaclePosition, dinghyPosition, 1, '>'))
+                return distance(obst);
+            if (direc == Direction.EAST && checkConditions(obstaclePosition, dinghyPosition, -1, '<'))
+                return distance(obst);
+            if (direc == Direction.SOUTH && checkConditions(obstaclePosition, dinghyPosition, 1, '<'))
+                return distance(obst);
+            if (direc == Direction.WEST && checkConditions(obstaclePosition, dinghyPosition, -1, '>'))
+                return distance(obst);
+
+            return -1;
+        }
+
+        private boolean checkConditions(int[] obstaclePos, int[] dinghyPos, int expectedVal, char oper) {
+            if (oper == '<')
+                return getSlope(obstaclePos, dinghyPos) == expectedVal && obstaclePos[1] < dinghyPos[1];
+            else // oper == '>'
+                return getSlope(obstaclePos, dinghyPos) == expectedVal && obstaclePos[1] > dinghyPos[1];
+        }
+
+        private int getSlope(int[] obstaclePosition, int[] dinghyPosition) {
+            int result = 0;
+            int numerator = obstaclePosition[1] - dinghyPosition[1];
+            int denominator = obstaclePosition[0] - dinghyPosition[0];
+            if(denominator != 0) {
+                result = numerator / denominator;
+            }
+
+            return result;
+        }
+
+        private int distance(Point p) {
+            int[] pos = p.getPosition();
+            int[] here = getPosition();
+
+            int distX = pos[0] - here[0];
+            int distY = pos[1] - here[1];
+
+            return (int) Math.sqrt(Math.pow(distX, 2) + Math.pow(distY, 2));
+        }
+    }
+}
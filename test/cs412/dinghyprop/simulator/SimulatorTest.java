@@ -0,0 +1,332 @@
+/*
+ * Brian Guthrie and Kevin Reuter
+ * DinghyProp
+ * CS412 - Summer 2012
+ */
+
+package cs412.dinghyprop.simulator;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+/**
+ * TestNG for Simulator
+ */
+public class SimulatorTest {
+    private static final int[] SENSORS = {
+            Symbols.FRONT, Symbols.SHORT_LEFT, Symbols.SHORT_RIGHT,
+            Symbols.LEFT, Symbols.RIGHT, Symbols.REAR
+    };
+
+    @Test
+    public void testSensorsMatchScan() throws Exception {
+        Random random = new Random(412);
+        for (int map = 0; map < 20; map++) {
+            int[][] obstacles = createObstacles(random, 0);
+            int sizeX = obstacles[0][0];
+            int sizeY = obstacles[0][1];
+            for (int x = 0; x <= sizeX; x++) {
+                for (int y = 0; y <= sizeY; y++) {
+                    for (int heading = 0; heading < 4; heading++) {
+                        for (int sensor : SENSORS) {
+                            Simulator simulator = createSimulator(obstacles, x, y, heading);
+                            int[] expected = scan(obstacles, x, y, heading, sensor);
+                            String message = map + " (" + x + ", " + y + ") "
+                                    + heading + ": " + Symbols.variableName(sensor);
+                            Assert.assertEquals(simulator.reference(sensor), expected[0], message);
+                            Assert.assertEquals(simulator.canContinue(), expected[1] == 0, message);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCollisionsMatchScan() throws Exception {
+        Random random = new Random(412);
+        for (int map = 0; map < 20; map++) {
+            int[][] obstacles = createObstacles(random, 0);
+            int sizeX = obstacles[0][0];
+            int sizeY = obstacles[0][1];
+            for (int x = 0; x <= sizeX; x++) {
+                for (int y = 0; y <= sizeY; y++) {
+                    for (int heading = 0; heading < 4; heading++) {
+                        Simulator simulator = createSimulator(obstacles, x, y, heading);
+                        simulator.invoke(Symbols.MOVE);
+
+                        Dinghy dinghy = createDinghy(x, y, heading);
+                        dinghy.move();
+                        dinghy.wrap(sizeX, sizeY);
+                        boolean collided = false;
+                        for (int i = 1; i < obstacles.length; i++)
+                            collided |= dinghy.getDistanceFront(
+                                    new Obstacle(obstacles[i][0], obstacles[i][1])) == 0;
+                        Assert.assertEquals(simulator.canContinue(), !collided,
+                                map + " (" + x + ", " + y + ") " + heading);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testObstaclesOffMap() throws Exception {
+        Random random = new Random(412);
+        int[][] obstacles = createObstacles(random, 3);
+        int sizeX = obstacles[0][0];
+        int sizeY = obstacles[0][1];
+        for (int x = 0; x <= sizeX; x++) {
+            for (int heading = 0; heading < 4; heading++) {
+                for (int sensor : SENSORS) {
+                    Simulator simulator = createSimulator(obstacles, x, 2, heading);
+                    int[] expected = scan(obstacles, x, 2, heading, sensor);
+                    Assert.assertEquals(simulator.reference(sensor), expected[0]);
+                    Assert.assertEquals(simulator.canContinue(), expected[1] == 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMovedObstacle() throws Exception {
+        int[][] obstacles = {{8, 8}, {3, 5}, {3, 5}, {3, 7}};
+        Simulator simulator = createSimulator(obstacles, 3, 2, 0);
+        Assert.assertEquals(simulator.reference(Symbols.FRONT), 3);
+
+        simulator = createSimulator(obstacles, 3, 2, 0);
+        simulator.addObstacle(0, 0, 0);
+        Assert.assertEquals(simulator.reference(Symbols.FRONT), 3);
+        simulator.addObstacle(1, 0, 0);
+        Assert.assertEquals(simulator.reference(Symbols.FRONT), 5);
+        simulator.addObstacle(2, 3, 2);
+        Assert.assertEquals(simulator.reference(Symbols.FRONT), 16);
+        Assert.assertFalse(simulator.canContinue());
+    }
+
+    @Test
+    public void testPrecomputedSensors() throws Exception {
+        Random random = new Random(412);
+        for (int map = 0; map < 10; map++) {
+            int[][] obstacles = createObstacles(random, 0);
+            int sizeX = obstacles[0][0];
+            int sizeY = obstacles[0][1];
+            for (int x = 0; x <= sizeX; x++) {
+                for (int y = 0; y <= sizeY; y++) {
+                    for (int heading = 0; heading < 4; heading++) {
+                        Simulator template = createSimulator(obstacles, x, y, heading);
+                        Assert.assertTrue(template.precomputeSensors(
+                                Simulator.DEFAULT_SENSOR_TABLE_LIMIT));
+                        for (int sensor : SENSORS) {
+                            Simulator precomputed = template.clone();
+                            Simulator live = createSimulator(obstacles, x, y, heading);
+                            String message = map + " (" + x + ", " + y + ") "
+                                    + heading + ": " + Symbols.variableName(sensor);
+                            Assert.assertEquals(precomputed.reference(sensor), live.reference(sensor),
+                                    message);
+                            Assert.assertEquals(precomputed.canContinue(), live.canContinue(), message);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSensorTableLimit() throws Exception {
+        int[][] obstacles = {{9, 4}, {3, 3}, {5, 1}};
+        Simulator simulator = createSimulator(obstacles, 1, 1, 0);
+        long bytes = 2 * 4 * 6 * 10 * 5;
+        Assert.assertFalse(simulator.precomputeSensors(bytes - 1));
+        Assert.assertEquals(simulator.getSensorTableBytes(), 0L);
+        Assert.assertTrue(simulator.precomputeSensors(bytes));
+        Assert.assertEquals(simulator.getSensorTableBytes(), bytes);
+        Assert.assertEquals(simulator.clone().getSensorTableBytes(), bytes);
+
+        simulator.addObstacle(1, 3, 9);
+        Assert.assertEquals(simulator.getSensorTableBytes(), 0L);
+        Assert.assertFalse(simulator.precomputeSensors(bytes));
+        Assert.assertEquals(simulator.reference(Symbols.FRONT), 13);
+    }
+
+    @Test
+    public void testSensorTableBuiltOnClone() throws Exception {
+        int[][] obstacles = {{9, 4}, {3, 3}, {5, 1}};
+        Simulator simulator = createSimulator(obstacles, 1, 1, 0);
+        long bytes = 2 * 4 * 6 * 10 * 5;
+        simulator.setSensorTableLimit(bytes);
+        Assert.assertEquals(simulator.getSensorTableBytes(), 0L);
+
+        Simulator received = serializeCopy(simulator);
+        Assert.assertEquals(received.getSensorTableBytes(), 0L);
+        Assert.assertEquals(received.clone().getSensorTableBytes(), bytes);
+        Assert.assertEquals(received.getSensorTableBytes(), bytes);
+        Assert.assertEquals(serializeCopy(received).getSensorTableBytes(), 0L);
+        Assert.assertEquals(simulator.getSensorTableBytes(), 0L);
+
+        Simulator tooSmall = createSimulator(obstacles, 1, 1, 0);
+        tooSmall.setSensorTableLimit(bytes - 1);
+        Assert.assertEquals(tooSmall.clone().getSensorTableBytes(), 0L);
+    }
+
+    @Test
+    public void testClonesShareNoChanges() throws Exception {
+        int[][] obstacles = {{8, 8}, {3, 5}, {3, 7}};
+        Simulator simulator = createSimulator(obstacles, 3, 2, 0);
+        Simulator clone = simulator.clone();
+        clone.addObstacle(0, 0, 0);
+        Assert.assertEquals(simulator.reference(Symbols.FRONT), 3);
+        Assert.assertEquals(clone.reference(Symbols.FRONT), 5);
+
+        simulator.addObstacle(1, 0, 1);
+        Assert.assertEquals(simulator.reference(Symbols.FRONT), 3);
+        Assert.assertEquals(simulator.clone().reference(Symbols.FRONT), 3);
+        Assert.assertEquals(clone.clone().reference(Symbols.FRONT), 5);
+        Assert.assertEquals(simulator.getObstacles()[1].getPosition(), new int[] {0, 1});
+        Assert.assertEquals(clone.getObstacles()[1].getPosition(), new int[] {3, 7});
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        int[][] obstacles = {{8, 8}, {3, 5}, {6, 2}};
+        Simulator simulator = createSimulator(obstacles, 3, 2, 0);
+        long start = simulator.getState();
+        Simulator episode = simulator.clone();
+        episode.invoke(Symbols.TURN_RIGHT);
+        episode.invoke(Symbols.MOVE);
+        episode.invoke(Symbols.MOVE);
+        Assert.assertEquals(episode.reference(Symbols.FRONT), 1);
+        episode.invoke(Symbols.MOVE);
+        Assert.assertFalse(episode.canContinue());
+
+        episode.reset();
+        Assert.assertEquals(episode.getState(), start);
+        Assert.assertTrue(episode.canContinue());
+        Assert.assertEquals(episode.getFitness(), simulator.getFitness());
+        Assert.assertEquals(episode.reference(Symbols.FRONT), 3);
+        Assert.assertEquals(episode.getSensorCacheMisses(), 1L);
+    }
+
+    @Test
+    public void testStepObservers() throws Exception {
+        int[][] obstacles = {{8, 8}, {6, 2}};
+        Simulator simulator = createSimulator(obstacles, 3, 2, 0);
+        final StringBuilder steps = new StringBuilder();
+        IStepObserver observer = new IStepObserver() {
+            @Override
+            public void stepped(int action, int x, int y, int heading) {
+                steps.append(Symbols.functionName(action)).append(' ')
+                        .append(x).append(',').append(y).append(',').append(heading).append(';');
+            }
+        };
+        simulator.addStepObserver(observer);
+        simulator.addStepObserver(observer);
+        simulator.invoke(Symbols.MOVE);
+        simulator.invoke(Symbols.TURN_RIGHT);
+        simulator.clone().invoke(Symbols.MOVE);
+        simulator.invoke(Symbols.MOVE);
+        Assert.assertEquals(steps.toString(), "move 3,3,0;turn-right 3,3,90;move 4,3,90;");
+
+        simulator.removeStepObserver(observer);
+        simulator.invoke(Symbols.MOVE);
+        Assert.assertEquals(steps.toString(), "move 3,3,0;turn-right 3,3,90;move 4,3,90;");
+    }
+
+    /**
+     * Creates a random map.  Obstacles are listed in no particular order and
+     * may share cells.
+     *
+     * @param random     the source of randomness
+     * @param offMap     the number of obstacles to place off the map
+     * @return  the map's size followed by its obstacles' positions
+     */
+    private int[][] createObstacles(Random random, int offMap) {
+        int sizeX = 4 + random.nextInt(12);
+        int sizeY = 4 + random.nextInt(12);
+        int[][] obstacles = new int[2 + random.nextInt(sizeX * sizeY / 4) + offMap][];
+        obstacles[0] = new int[] {sizeX, sizeY};
+        for (int i = 1; i < obstacles.length; i++)
+            obstacles[i] = new int[] {random.nextInt(sizeX + 1), random.nextInt(sizeY + 1)};
+        for (int i = 0; i < offMap; i++)
+            obstacles[1 + random.nextInt(obstacles.length - 1)][1] = sizeY + 1 + i;
+        return obstacles;
+    }
+
+    private Simulator createSimulator(int[][] obstacles, int x, int y,
+                                      int heading) throws Exception {
+        Simulator simulator = new Simulator(obstacles[0][0], obstacles[0][1],
+                obstacles.length - 1, x, y);
+        simulator.setGoal(obstacles[0][0] + 5, obstacles[0][1] + 5);
+        for (int i = 0; i < heading; i++)
+            simulator.invoke(Symbols.TURN_RIGHT);
+        for (int i = 1; i < obstacles.length; i++)
+            simulator.addObstacle(i - 1, obstacles[i][0], obstacles[i][1]);
+        return simulator;
+    }
+
+    private Dinghy createDinghy(int x, int y, int heading) {
+        Dinghy dinghy = new Dinghy(x, y);
+        for (int i = 0; i < heading; i++)
+            dinghy.turnRight();
+        return dinghy;
+    }
+
+    /**
+     * Copies a simulator through serialization, as RMI sends it.
+     */
+    private Simulator serializeCopy(Simulator simulator) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(simulator);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        return (Simulator) in.readObject();
+    }
+
+    /**
+     * Reads a sensor the way the simulator did before it indexed obstacles,
+     * testing each obstacle in turn.
+     *
+     * @return  the reading, and 1 if the read would end the simulation
+     */
+    private int[] scan(int[][] obstacles, int x, int y, int heading, int sensor) {
+        Dinghy dinghy = createDinghy(x, y, heading);
+        int upperBound = obstacles[0][0] + obstacles[0][1];
+        int ended = 0;
+        for (int i = 1; i < obstacles.length; i++) {
+            Obstacle obstacle = new Obstacle(obstacles[i][0], obstacles[i][1]);
+            int temp;
+            switch (sensor) {
+                case Symbols.FRONT:
+                    temp = dinghy.getDistanceFront(obstacle);
+                    break;
+                case Symbols.SHORT_LEFT:
+                    temp = dinghy.getDistanceShortLeft(obstacle);
+                    break;
+                case Symbols.SHORT_RIGHT:
+                    temp = dinghy.getDistanceShortRight(obstacle);
+                    break;
+                case Symbols.LEFT:
+                    temp = dinghy.getDistanceLeft(obstacle);
+                    break;
+                case Symbols.RIGHT:
+                    temp = dinghy.getDistanceRight(obstacle);
+                    break;
+                default:
+                    temp = dinghy.getDistanceRear(obstacle);
+                    break;
+            }
+            if (temp == 0)
+                ended = 1;
+            if (temp < upperBound && temp != -1 && temp != 0)
+                return new int[] {temp, ended};
+        }
+        return new int[] {upperBound, ended};
+    }
+}